@@ -0,0 +1,80 @@
+package electricity;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the solver's hot paths, on circuits from CircuitGenerator of every shape and size.
+ * Build with mvn -B -Pjmh package, then java -jar target/benchmarks.jar -prof gc for the
+ * allocation rate along with the time, -p shape=ladder -p size=1000 -p op=plan to pick cases.
+ * The operations are the ones Benchmark times, see there for what each does. stepwise and the
+ * rest aren't in the default op list, stepwise copies the whole circuit every step and only
+ * goes up to 1000 resistors.
+ * JMH won't run benchmarks in the default package, where the solver is, and code in a package
+ * can't name default package classes. So the state looks up Benchmark.operation() once by
+ * reflection in its setup, and what's measured is a plain call through the DoubleSupplier it makes.
+ * @author Isaac Assegai
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+	/* Public Methods */
+
+	@Benchmark
+	public double solve(Generated circuit){
+		return circuit.work.getAsDouble();
+	}
+
+	/* Public Classes */
+
+	/**
+	 * A circuit made by CircuitGenerator, and the operation set up on it.
+	 * Each fork gets its own, so nothing carries over between shapes and sizes.
+	 */
+	@State(Scope.Thread)
+	public static class Generated {
+		@Param({"chain", "fan", "ladder", "tree", "random"})
+		public String shape;
+
+		@Param({"100", "1000", "10000", "100000"})
+		public int size;
+
+		@Param({"simplify", "nodal", "plan", "parallel", "update"})
+		public String op;
+
+		DoubleSupplier work; //The operation, ready to run.
+
+		@Setup(Level.Trial)
+		public void setup() throws ReflectiveOperationException{
+			Method operation = Class.forName("Benchmark").getMethod("operation", String.class, String.class, int.class);
+			try{
+				work = (DoubleSupplier)operation.invoke(null, op, shape, size);
+			}catch(InvocationTargetException e){
+				if(e.getCause() instanceof RuntimeException){
+					throw (RuntimeException)e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A batch of circuits handed to a BatchSolver. The results come back in the order the
+ * circuits finish, not the order they were submitted, so the caller can start on the first
+ * ones while the rest are still solving. BatchResult.getIndex() says which circuit it was.
+ * @author Isaac Assegai
+ *
+ */
+public class Batch implements Iterator<BatchResult> {
+	/* Member Variables */
+	private CompletionService<BatchResult> completed;
+	private ArrayList<Future<BatchResult>> futures;
+	private int taken; //Results handed out so far.
+
+	/**
+	 * Constructor - Used by BatchSolver once every circuit has been submitted.
+	 */
+	Batch(CompletionService<BatchResult> completed, ArrayList<Future<BatchResult>> futures){
+		this.completed = completed;
+		this.futures = futures;
+		taken = 0;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * The number of circuits in the batch.
+	 */
+	public int size(){
+		return futures.size();
+	}
+
+	public boolean hasNext(){
+		return taken < futures.size();
+	}
+
+	/**
+	 * Wait for the next circuit to finish.
+	 * @return Its result, the circuit may or may not have solved.
+	 */
+	public BatchResult next(){
+		if(!hasNext()){
+			throw new NoSuchElementException("every circuit in the batch has been returned");
+		}
+		try{
+			BatchResult result = completed.take().get();
+			taken++;
+			return result;
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted waiting for the batch", e);
+		}catch(ExecutionException e){
+			//solve tasks catch their own failures, so this is an Error or a bug
+			throw new IllegalStateException("a batch task failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Wait for every circuit and return the results in the order they were submitted.
+	 */
+	public BatchResult[] awaitAll(){
+		BatchResult[] results = new BatchResult[futures.size()];
+		while(hasNext()){
+			BatchResult r = next();
+			results[r.getIndex()] = r;
+		}
+		return results;
+	}
+
+	/**
+	 * Stop solving circuits that haven't started yet. Circuits already solving are left to finish.
+	 */
+	public void cancel(){
+		for(int i = 0; i < futures.size(); i++){
+			futures.get(i).cancel(false);
+		}
+		taken = futures.size();
+	}
+}
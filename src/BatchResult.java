@@ -0,0 +1,61 @@
+/**
+ * The outcome of solving one circuit in a batch. The circuit itself holds the voltages,
+ * amps and watts, this just says which circuit it was, the supply current, and whether it worked.
+ * @author Isaac Assegai
+ *
+ */
+public class BatchResult {
+	/* Member Variables */
+	private int index; //Where the circuit was in the batch.
+	private Circuit circuit;
+	private double supplyAmps; //NaN if solving failed.
+	private RuntimeException error; //Why solving failed, null if it worked.
+	private long nanos; //How long the solve took.
+
+	/**
+	 * Constructor - A circuit that was solved.
+	 */
+	public BatchResult(int index, Circuit circuit, double supplyAmps, long nanos){
+		this.index = index;
+		this.circuit = circuit;
+		this.supplyAmps = supplyAmps;
+		this.error = null;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Constructor - A circuit that couldn't be solved.
+	 */
+	public BatchResult(int index, Circuit circuit, RuntimeException error, long nanos){
+		this.index = index;
+		this.circuit = circuit;
+		this.supplyAmps = Double.NaN;
+		this.error = error;
+		this.nanos = nanos;
+	}
+
+	/* Public Methods */
+	public int getIndex(){
+		return index;
+	}
+
+	public Circuit getCircuit(){
+		return circuit;
+	}
+
+	public double getSupplyAmps(){
+		return supplyAmps;
+	}
+
+	public boolean isSolved(){
+		return error == null;
+	}
+
+	public RuntimeException getError(){
+		return error;
+	}
+
+	public long getNanos(){
+		return nanos;
+	}
+}
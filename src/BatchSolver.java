@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Solves lots of independent circuits at once, like Monte Carlo runs of one topology.
+ * Every circuit is its own task on an executor. A task only touches its own circuit and the
+ * Reducer or NodalSolver it makes for it, so the workers share nothing and need no locks.
+ * By default we use a ForkJoinPool with one thread per core, but any executor works,
+ * including a virtual thread per task executor.
+ * @author Isaac Assegai
+ *
+ */
+public class BatchSolver {
+	/* Member Variables */
+	private ExecutorService executor;
+	private boolean ownsExecutor; //We made the executor, so we shut it down.
+	private boolean nodal; //Solve with nodal analysis instead of series/parallel reduction.
+
+	/**
+	 * Constructor - Solve on a ForkJoinPool with a thread for every core.
+	 */
+	public BatchSolver(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor - Solve on a ForkJoinPool with this many threads.
+	 */
+	public BatchSolver(int threads){
+		if(threads < 1){
+			throw new IllegalArgumentException("a batch solver needs at least 1 thread, not " + threads);
+		}
+		executor = new ForkJoinPool(threads);
+		ownsExecutor = true;
+		nodal = false;
+	}
+
+	/**
+	 * Constructor - Solve on an executor someone else owns, it's left running on shutdown().
+	 */
+	public BatchSolver(ExecutorService executor){
+		this.executor = executor;
+		ownsExecutor = false;
+		nodal = false;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Use nodal analysis, for circuits that aren't all series and parallel.
+	 */
+	public void setNodal(boolean nodal){
+		this.nodal = nodal;
+	}
+
+	public boolean isNodal(){
+		return nodal;
+	}
+
+	/**
+	 * Start solving every circuit. No two circuits in a batch can share nodes or resistors.
+	 * @return The batch, take the results from it as they finish.
+	 */
+	public Batch submit(Collection<Circuit> circuits){
+		CompletionService<BatchResult> completed = new ExecutorCompletionService<BatchResult>(executor);
+		ArrayList<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>(circuits.size());
+		for(Circuit c : circuits){
+			futures.add(completed.submit(new SolveTask(futures.size(), c, nodal)));
+		}
+		return new Batch(completed, futures);
+	}
+
+	/**
+	 * Solve every circuit and wait for all of them.
+	 * @return The results, in the order the circuits were given.
+	 */
+	public BatchResult[] solveAll(Collection<Circuit> circuits){
+		return submit(circuits).awaitAll();
+	}
+
+	/**
+	 * Shut down the executor if we made it.
+	 */
+	public void shutdown(){
+		if(ownsExecutor){
+			executor.shutdown();
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * Solves one circuit. A failure is returned as a result, so one bad circuit doesn't stop the batch.
+	 */
+	private static class SolveTask implements Callable<BatchResult> {
+		private int index;
+		private Circuit circuit;
+		private boolean nodal;
+
+		SolveTask(int index, Circuit circuit, boolean nodal){
+			this.index = index;
+			this.circuit = circuit;
+			this.nodal = nodal;
+		}
+
+		public BatchResult call(){
+			long start = System.nanoTime();
+			try{
+				double amps;
+				if(nodal){
+					amps = circuit.solveNodal();
+				}else{
+					circuit.simplify();
+					amps = circuit.getSupplyAmps();
+				}
+				return new BatchResult(index, circuit, amps, System.nanoTime() - start);
+			}catch(RuntimeException e){
+				return new BatchResult(index, circuit, e, System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,215 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Times the hot paths on generated circuits of growing size, so a change can be measured
+ * instead of guessed at. For every shape in CircuitGenerator.SHAPES and every size from 10 up to
+ * the largest asked for, each operation is warmed up, then run for a while, and we print:
+ *   ops/s, microseconds per op, nanoseconds per resistor (flat means linear scaling),
+ *   and bytes allocated per op, from the JVM's per thread allocation counter.
+ * Usage: java Benchmark [largest size, default 100000] [seconds per measurement, default 1]
+ *        [operations, comma separated, default all]
+ * The operations are:
+ *   simplify   Circuit.simplify(), the indexed reduction and back substitution.
+ *   metered    simplify() with SolverStats recording, the difference is what metrics cost.
+ *   find       getSeriesResistors() and getParallelResistors().
+ *   copy       One combine through the copy constructor, copyNodes/copyResistors.
+ *   stepwise   simplifyStepwise(), only up to 1000 resistors, every step is a full copy.
+ *   nodal      solveNodal(), the sparse Cholesky solve.
+ *   plan       ReductionPlan.execute() on a compiled plan.
+ *   parallel   ParallelReducer.execute() on the same plan, on the common ForkJoinPool.
+ *   update     IncrementalSolver.setOhms() and getSupplyAmps() on one resistor.
+ * The same operations are what the JMH benchmarks in jmh/ measure, through operation(), for
+ * numbers with proper forks and warmup, and allocation rates from -prof gc.
+ * @author Isaac Assegai
+ *
+ */
+public class Benchmark {
+	/* Member Variables */
+	private static final String[] OPERATIONS = {"simplify", "metered", "find", "copy", "stepwise", "nodal", "plan", "parallel", "update"};
+	private static final int STEPWISE_LIMIT = 1000;
+
+	private long nanos; //How long each measurement runs.
+	private com.sun.management.ThreadMXBean threads; //null if this JVM can't count allocations.
+	private double sink; //Results go here so the JIT can't throw the work away.
+
+	public Benchmark(double seconds){
+		nanos = (long)(seconds*1e9);
+		threads = null;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean)bean;
+			if(sun.isThreadAllocatedMemorySupported()){
+				sun.setThreadAllocatedMemoryEnabled(true);
+				threads = sun;
+			}
+		}
+	}
+
+	public static void main(String[] args){
+		int largest = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+		String[] operations = args.length > 2 ? args[2].split(",") : OPERATIONS;
+		Benchmark b = new Benchmark(seconds);
+		System.out.format("%-8s %9s %-9s %14s %14s %12s %14s%n", "shape", "size", "op", "ops/s", "us/op", "ns/resistor", "bytes/op");
+		for(String shape : CircuitGenerator.SHAPES){
+			for(int size = 10; size <= largest; size *= 10){
+				Circuit c = CircuitGenerator.make(shape, size, 42);
+				for(String op : operations){
+					b.run(shape, size, op, c);
+				}
+			}
+		}
+		System.out.println("(checksum " + b.sink + ")");
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Measure one operation on one circuit and print a line for it.
+	 */
+	public void run(String shape, int size, String op, Circuit c){
+		if(op.equals("stepwise") && size > STEPWISE_LIMIT){
+			return;
+		}
+		final DoubleSupplier work = operation(op, c);
+		Runnable task = new Runnable(){
+			public void run(){
+				sink += work.getAsDouble();
+			}
+		};
+		measure(task, nanos/4); //warm up
+		long[] result = measure(task, nanos);
+		long ops = result[0];
+		double seconds = result[1]/1e9;
+		double usPerOp = result[1]/1e3/ops;
+		String bytes = result[2] < 0 ? "n/a" : Long.toString(result[2]/ops);
+		System.out.format("%-8s %9d %-9s %14.1f %14.3f %12.2f %14s%n",
+				shape, size, op, ops/seconds, usPerOp, result[1]/(double)ops/size, bytes);
+	}
+
+	/**
+	 * One of the operations on a generated circuit, made by CircuitGenerator with seed 42.
+	 */
+	public static DoubleSupplier operation(String op, String shape, int size){
+		if(op.equals("stepwise") && size > STEPWISE_LIMIT){
+			throw new IllegalArgumentException("stepwise only goes up to " + STEPWISE_LIMIT + " resistors, not " + size);
+		}
+		return operation(op, CircuitGenerator.make(shape, size, 42));
+	}
+
+	/**
+	 * One of the operations on a circuit, set up and ready to run over and over.
+	 * Each run returns something from the result, so the JIT can't throw the work away.
+	 */
+	public static DoubleSupplier operation(String op, final Circuit c){
+		if(op.equals("simplify")){
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					c.simplify();
+					return c.getSupplyAmps();
+				}
+			};
+		}else if(op.equals("metered")){
+			final SolverStats stats = new SolverStats();
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					c.setMetrics(stats);
+					c.simplify();
+					c.setMetrics(SolverMetrics.NONE);
+					return c.getSupplyAmps();
+				}
+			};
+		}else if(op.equals("find")){
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					ArrayList<Resistor>series = c.getSeriesResistors();
+					ArrayList<Resistor>parallel = c.getParallelResistors();
+					return (series == null ? 0 : 1) + (parallel == null ? 0 : 2);
+				}
+			};
+		}else if(op.equals("copy")){
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					ArrayList<Resistor>pair = c.getSeriesResistors();
+					boolean isSeries = pair != null;
+					if(pair == null){
+						pair = c.getParallelResistors();
+					}
+					if(pair == null){
+						return 0;
+					}
+					return new Circuit(c, pair, isSeries).getResistors().size();
+				}
+			};
+		}else if(op.equals("stepwise")){
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					return c.simplifyStepwise().getResistors().get(0).getOhms();
+				}
+			};
+		}else if(op.equals("nodal")){
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					return c.solveNodal();
+				}
+			};
+		}else if(op.equals("plan")){
+			final ReductionPlan plan = c.compile();
+			final PlanWorkspace ws = plan.newWorkspace();
+			final double[] ohms = new double[plan.getResistorCount()];
+			System.arraycopy(c.getGraph().getOhmsArray(), 0, ohms, 0, ohms.length);
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					return plan.execute(ohms, 10, ws);
+				}
+			};
+		}else if(op.equals("parallel")){
+			final ReductionPlan plan = c.compile();
+			final ParallelReducer reducer = new ParallelReducer(plan, ForkJoinPool.commonPool());
+			final PlanWorkspace ws = plan.newWorkspace();
+			final double[] ohms = new double[plan.getResistorCount()];
+			System.arraycopy(c.getGraph().getOhmsArray(), 0, ohms, 0, ohms.length);
+			return new DoubleSupplier(){
+				public double getAsDouble(){
+					return reducer.execute(ohms, 10, ws);
+				}
+			};
+		}else if(op.equals("update")){
+			final IncrementalSolver solver = new IncrementalSolver(c);
+			final int slot = c.getResistors().size()/2;
+			final double ohms = c.getGraph().getOhms(slot);
+			return new DoubleSupplier(){
+				int flip = 0;
+				public double getAsDouble(){
+					solver.setOhms(slot, ohms*(1 + 0.01*(flip++ & 1)));
+					return solver.getSupplyAmps();
+				}
+			};
+		}
+		throw new IllegalArgumentException("no operation called " + op);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Run the task until the time is up.
+	 * @return The number of runs, the nanoseconds they took, and the bytes allocated or -1.
+	 */
+	private long[] measure(Runnable task, long budget){
+		long id = Thread.currentThread().getId();
+		long allocated = threads == null ? 0 : threads.getThreadAllocatedBytes(id);
+		long start = System.nanoTime();
+		long ops = 0;
+		long elapsed;
+		do{
+			task.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		}while(elapsed < budget);
+		long bytes = threads == null ? -1 : threads.getThreadAllocatedBytes(id) - allocated;
+		return new long[]{ops, elapsed, bytes};
+	}
+}
@@ -46,8 +46,12 @@ public class BuildTest {
 		//ArrayList<Resistor>series = c1.getSeriesResistors(); //this should return null at this point
 		c1.print();
 		
+		System.out.println("Supply Amps: " + c1.solveNodal());
+		c1.print();
+		
 		c1.simplify();
-		System.out.println(c1);
+		System.out.println("Supply Amps: " + c1.getSupplyAmps());
+		c1.print();
 		System.out.println("Test");
 		
 	}
@@ -0,0 +1,80 @@
+import java.util.Random;
+
+/**
+ * A capacitor stores charge between its two nodes, its current is C dv/dt.
+ * Only the TransientSolver uses capacitors, simplify() and solveNodal() work at DC
+ * where a capacitor is an open circuit, so they leave them out.
+ * The voltage across it is its state: set it before a transient run for the starting charge,
+ * after the run it's where the run left off.
+ * @author Isaac Assegai
+ *
+ */
+public class Capacitor extends Element{
+	Double farads;
+	Node nodeA;
+	Node nodeB;
+	Double volts; //voltage(nodeA) - voltage(nodeB), 0 unless it starts charged.
+	Double amps; //The current flowing from nodeA through it to nodeB, null until a transient run.
+	
+	/**
+	 * Create a new unconnected, uncharged capacitor.
+	 */
+	public Capacitor(Double f){
+		this(f, null);
+	}
+	
+	public Capacitor(Double f, Random r){
+		super(r);
+		farads = f;
+		nodeA = null;
+		nodeB = null;
+		volts = 0.0;
+		amps = null;
+	}
+
+	/* public methods. */
+	protected String getPrefix(){
+		return "C";
+	}
+	
+	public Double getFarads(){
+		return farads;
+	}
+	
+	public void setFarads(Double f){
+		farads = f;
+	}
+	
+	public void setNodeA(Node n){
+		nodeA = n;
+	}
+	
+	public void setNodeB(Node n){
+		nodeB = n;
+	}
+	
+	public Node getNodeA(){
+		return nodeA;
+	}
+	
+	public Node getNodeB(){
+		return nodeB;
+	}
+	
+	public Double getVolts(){
+		return volts;
+	}
+	
+	public void setVolts(Double v){
+		volts = v;
+	}
+	
+	public Double getAmps(){
+		return amps;
+	}
+	
+	public void setAmps(Double a){
+		amps = a;
+	}
+	
+}
@@ -1,15 +1,17 @@
-import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Random;
 
 
 
 /**
  * A circuit represents an actual electrical circuit.
  * We model ours with nodes, resistances and power supplies.
- * A circuit will have 1 power supply, 1 or more resistances, and 2 or more nodes
+ * A circuit will have 1 or more power supplies, 1 or more resistances, and 2 or more nodes
  * connecting the power supplies and resistances.
+ * Series/parallel reduction works on circuits with 1 supply, solveNodal() works with any number.
+ * A network used over and over can be made a SubCircuit and placed with addSubCircuit(), simplify()
+ * solves each different one once and reuses it through an EquivalentCache.
+ * Capacitors and inductors can be added too, but simplify() and solveNodal() are DC and leave them
+ * out, a TransientSolver runs the circuit through time with them.
  * @author Isaac Assegai
  *
  */
@@ -19,19 +21,46 @@ public class Circuit {
 	private Circuit complicatedCircuit; // In order to simplify circuits we will have to remember the previous ones.
 	private ArrayList<Node>nodes; // A List of all the nodes in the circuit.
 	private ArrayList<Resistor>resistors; // An list of all the resistors in the circuit.
-	private PowerSupply supply; // The power supply of the circuit.
-	Random random;
+	private ArrayList<PowerSupply>supplies; // The power supplies of the circuit, in the order they were added.
+	private ArrayList<Capacitor>capacitors; // Only the TransientSolver looks at these.
+	private ArrayList<Inductor>inductors;
+	private Resistor equivalent; // The single resistor this circuit simplifies to, after simplify().
+	private ArrayList<Replacement>reductionLog; // Every combine simplify() did, in order, so we can backtrack.
+	private Double supplyAmps; // The current drawn from the first supply, once solved.
+	private int step; // How many combines this circuit is away from the one that was built by hand.
+	private CircuitGraph graph; // Where the numbers for all our nodes and resistors actually live.
+	private int nextElementId; // The id the next resistor or supply gets.
+	private ArrayList<Node>nodeById; // node id -> the node in this circuit, or null once it's removed.
+	private CircuitTracer tracer; // Told about every combine, CircuitTracer.NONE unless someone wants to watch.
+	private SolverMetrics metrics; // Told what each solve did and how long it took.
+	private static volatile SolverMetrics defaultMetrics = SolverMetrics.NONE; // What new circuits start with.
+	private Replacement made; // The combine that made this circuit out of complicatedCircuit, if it's a step.
+	private ArrayList<SubCircuitInstance>subCircuits; // The sub-circuit copies placed with addSubCircuit().
+	private EquivalentCache equivalentCache; // Where simplify() looks sub-circuit copies up, null to reduce them resistor by resistor.
+	private static volatile EquivalentCache defaultEquivalentCache = new EquivalentCache(); // Shared by every circuit unless set otherwise.
 	
 	/** Constructor
 	 * Create a new empty circuit.
 	 */
 	public Circuit(){
-		random = new Random(System.currentTimeMillis());
-		name = newName();
+		name = null;
+		step = 0;
+		graph = new CircuitGraph();
+		nextElementId = 0;
+		nodeById = new ArrayList<Node>();
+		tracer = CircuitTracer.NONE;
+		metrics = defaultMetrics;
+		subCircuits = new ArrayList<SubCircuitInstance>();
+		equivalentCache = defaultEquivalentCache;
 		complicatedCircuit = null;
 		nodes = new ArrayList<Node>();
 		resistors = new ArrayList<Resistor>();
-		supply = null;
+		supplies = new ArrayList<PowerSupply>();
+		capacitors = new ArrayList<Capacitor>();
+		inductors = new ArrayList<Inductor>();
+		equivalent = null;
+		reductionLog = null;
+		supplyAmps = null;
 	}
 	
 	/**
@@ -44,8 +73,16 @@ public class Circuit {
 	 * @param isSeries True for Series resistors, false and these are parallel resistors
 	 */
 	public Circuit(Circuit oldCircuit, ArrayList<Resistor> toCombine, Boolean isSeries) {
-		random = new Random(System.currentTimeMillis());
-		name = newName();
+		name = null;
+		step = oldCircuit.step + 1;
+		graph = new CircuitGraph(oldCircuit.resistors.size(), oldCircuit.graph.getNodeCount());
+		graph.ensureNodes(oldCircuit.graph.getNodeCount());
+		nextElementId = oldCircuit.nextElementId;
+		nodeById = new ArrayList<Node>(oldCircuit.nodeById.size());
+		tracer = oldCircuit.tracer;
+		metrics = oldCircuit.metrics;
+		subCircuits = new ArrayList<SubCircuitInstance>(); //steps are reduced resistor by resistor
+		equivalentCache = oldCircuit.equivalentCache;
 		complicatedCircuit = oldCircuit;
 		Resistor r1 = toCombine.get(0);
 		Resistor r2 = toCombine.get(1);
@@ -56,7 +93,7 @@ public class Circuit {
 			 * 2. Find the 1 common, and 2 uncommon nodes.
 			 * 3. Tell the new Resistor what it is replaceing, 2 resistors and a node.
 			 * 4. Copy nodes and resistors, and powerSupply from old circuit
-			 * 5. Remove toCombine resistors from the copy.
+			 * 5. Leave the toCombine resistors out of the copy.
 			 * 5A. Remove commonNode from copy
 			 * 5B. Remove all nodes references to toCombine resistors from copy
 			 * 6. Wire up new resistors node references
@@ -66,7 +103,8 @@ public class Circuit {
 			 * */
 			
 			//1. Create a new resistor using r=r1+r2
-			Resistor r = new Resistor(r1.getOhms() + r2.getOhms(), random);
+			Resistor r = new Resistor(r1.getOhms() + r2.getOhms());
+			r.setId(newElementId());
 			
 			//2. Find the 1 common, and 2 uncommon nodes.
 			Node commonNode = r1.getCommonNode(r2);
@@ -74,32 +112,35 @@ public class Circuit {
 			Node uncommonNodeR2 = r2.getUncommonNode(r1);
 			
 			//3. Tell new resistor it is replacing 2 old resistors, and an old node.
-			r.setReplacement(new Replacement(r1, r2, commonNode, isSeries));
+			Replacement replacement = new Replacement(r1, r2, commonNode, isSeries);
+			replacement.result = r;
+			r.setReplacement(replacement);
+			made = replacement;
 			
 			//4. Copy nodes and resistors from oldCircuit
+			//5. Leaving out the toCombine Resistors.
 			nodes = copyNodes(oldCircuit.nodes);
-			resistors = copyResistors(oldCircuit.resistors);
-			supply = copyPowerSupply(oldCircuit.supply);
-			
-			//5. Remove toCombine Resistors from copy.
-			removeResistor(r1, resistors);
-			removeResistor(r2, resistors);
+			resistors = copyResistors(oldCircuit.resistors, toCombine);
+			supplies = copyPowerSupplies(oldCircuit.supplies);
+			capacitors = new ArrayList<Capacitor>(); //simplifying is DC, the steps have no capacitors or inductors
+			inductors = new ArrayList<Inductor>();
 			
 			//5A. Remove commonNode from copy
-			nodes.remove(commonNode);
+			removeNode(commonNode);
 			
 			//5B. Remove all node references to the toCombine resistors from the copy
-			removeResistorFromNodeConnections(r1, nodes);
-			removeResistorFromNodeConnections(r2, nodes);
+			removeResistorFromNodeConnections(r1);
+			removeResistorFromNodeConnections(r2);
 			
 			//6. Wire up new Resistors Node references. then nodes, resistor connections
 			r.setNodeA(uncommonNodeR1);
 			r.setNodeB(uncommonNodeR2);
 			
 			//6A. Wire up new resistors neighbors to new resistor
-			addNeighborConnections(r, nodes);
+			addNeighborConnections(r);
 			
 			//7. Add new resistor to this new copy
+			r.attach(graph);
 			this.resistors.add(r);
 			
 					
@@ -109,83 +150,314 @@ public class Circuit {
 			 * 1. Create new Resistor, using ohm (r1*r2)/(r1+r2)
 			 * 2. Tell new resistor what it is replacing.
 			 * 3. Copy nodes and resistors, and ps from oldCircuit
-			 * 4. Remove toCombine resistors from copy.
+			 * 4. Leave toCombine resistors out of the copy.
 			 * 5. Add new resistor to copy, wire up both sides
 			 * 6. Add this to copy.complicatedCircuit
 			 * At this point the copy will be 1 step more simplified than the current circuit(this)
 			 */
 			Double resistance = (r1.getOhms()*r2.getOhms())/(r1.getOhms()+r2.getOhms());
-			Resistor r = new Resistor(resistance, random);
-			r.setReplacement(new Replacement(r1, r2, isSeries));
+			Resistor r = new Resistor(resistance);
+			r.setId(newElementId());
+			Replacement replacement = new Replacement(r1, r2, isSeries);
+			replacement.result = r;
+			r.setReplacement(replacement);
+			made = replacement;
 			nodes = copyNodes(oldCircuit.nodes); 
-			resistors = copyResistors(oldCircuit.resistors);
-			supply = copyPowerSupply(oldCircuit.supply);
-			
-			removeResistor(r1, resistors); //will remove the same resistors name from resistors as r1.name
-			removeResistor(r2, resistors);
+			resistors = copyResistors(oldCircuit.resistors, toCombine); //leaves out r1 and r2
+			supplies = copyPowerSupplies(oldCircuit.supplies);
+			capacitors = new ArrayList<Capacitor>(); //simplifying is DC, the steps have no capacitors or inductors
+			inductors = new ArrayList<Inductor>();
 			
-			removeResistorFromNodeConnections(r1, nodes);
-			removeResistorFromNodeConnections(r2, nodes);
+			removeResistorFromNodeConnections(r1);
+			removeResistorFromNodeConnections(r2);
 			
 			//wire up new resistor
 			r.setNodeA(r1.getNodeA()); //since this is parallel, nodeA, and nodeB, will the same as both n1 and n2
 			r.setNodeB(r1.getNodeB());
 			
 			//wire up new Resistors Nodes
-			addNeighborConnections(r, nodes);
+			addNeighborConnections(r);
 			
+			r.attach(graph);
 			resistors.add(r);
 		}
 	}
 	
-	private static void addNeighborConnections(Resistor r, ArrayList<Node>nodes){
-		//our neighbor connections no longer work by using straight references, because we've been copying a lot of stuff
-		//we need to check by
-		
-		Node nodeA = r.getNodeA();
-		Node nodeB = r.getNodeB();
-		
-		//first we find the neighbor nodes of r, by searching for names
-		for(int i = 0; i < nodes.size(); i++){
-			Node changeNode = nodes.get(i);
-			if(changeNode.getName().equals(nodeA.getName())){
-				changeNode.addConnection(r);
-			}else if(changeNode.getName().equals(nodeB.getName())){
-				changeNode.addConnection(r);
+	/**
+	 * The constructor used by combine() when nothing is in series or parallel. We copy the circuit,
+	 * leaving out node eliminated and the resistors on it.
+	 * If there was only 1 resistor on it, it was dangling and carried nothing, so that's all.
+	 * Otherwise the resistors on it form a star, and each pair of them is replaced by a resistor
+	 * between their far ends with R = R1*R2*(1/R1 + 1/R2 + ... ), the star-mesh transform.
+	 * @param oldCircuit The complicatedCircuit we are simplifying.
+	 * @param eliminated An ordinary node of oldCircuit, from Reducer.findDangling() or findStar().
+	 */
+	private Circuit(Circuit oldCircuit, Node eliminated){
+		name = null;
+		step = oldCircuit.step + 1;
+		graph = new CircuitGraph(oldCircuit.resistors.size(), oldCircuit.graph.getNodeCount());
+		graph.ensureNodes(oldCircuit.graph.getNodeCount());
+		nextElementId = oldCircuit.nextElementId;
+		nodeById = new ArrayList<Node>(oldCircuit.nodeById.size());
+		tracer = oldCircuit.tracer;
+		metrics = oldCircuit.metrics;
+		subCircuits = new ArrayList<SubCircuitInstance>(); //steps are reduced resistor by resistor
+		equivalentCache = oldCircuit.equivalentCache;
+		complicatedCircuit = oldCircuit;
+		ArrayList<Resistor>star = new ArrayList<Resistor>();
+		for(int i = 0; i < oldCircuit.resistors.size(); i++){
+			Resistor r = oldCircuit.resistors.get(i);
+			if(r.getNodeA().getId() == eliminated.getId() || r.getNodeB().getId() == eliminated.getId()){
+				star.add(r);
 			}
-			
+		}
+		nodes = copyNodes(oldCircuit.nodes);
+		resistors = copyResistors(oldCircuit.resistors, star);
+		supplies = copyPowerSupplies(oldCircuit.supplies);
+		capacitors = new ArrayList<Capacitor>();
+		inductors = new ArrayList<Inductor>();
+		for(int i = 0; i < star.size(); i++){
+			removeResistorFromNodeConnections(star.get(i));
+		}
+		removeNode(eliminated);
+		if(star.size() == 1){
+			made = new Replacement(star.get(0), eliminated);
+			return;
+		}
+		double conductance = 0;
+		Node[] far = new Node[star.size()];
+		for(int i = 0; i < star.size(); i++){
+			Resistor r = star.get(i);
+			far[i] = r.getNodeA().getId() == eliminated.getId() ? r.getNodeB() : r.getNodeA();
+			conductance += 1/r.getOhms();
+		}
+		Resistor[] mesh = new Resistor[star.size()*(star.size()-1)/2];
+		int k = 0;
+		for(int i = 0; i < star.size(); i++){
+			for(int j = i+1; j < star.size(); j++){
+				Resistor r = new Resistor(star.get(i).getOhms()*star.get(j).getOhms()*conductance);
+				r.setId(newElementId());
+				r.setNodeA(far[i]);
+				r.setNodeB(far[j]);
+				addNeighborConnections(r);
+				r.attach(graph);
+				resistors.add(r);
+				mesh[k++] = r;
+			}
+		}
+		made = new Replacement(star.toArray(new Resistor[star.size()]), mesh, eliminated);
+		for(int i = 0; i < mesh.length; i++){
+			mesh[i].setReplacement(made);
 		}
 	}
 	
-	private void removeResistorFromNodeConnections(Resistor r, ArrayList<Node>nodes){
-		//loop through all nodes, check each connection in the nodes to see if the name equals r.name
-		for(int i = 0; i < nodes.size(); i++){
-			Node n = nodes.get(i);
-			for(int j = 0; j < n.getConnections().size(); j++){
-				Element connection = n.getConnections().get(j);
-				if(connection.getName().equals(r.getName())){ //this nodes connections name is the same name as the resistor
-					//remove the connection
-					n.getConnections().remove(connection);
-				}
-			}
+	/**
+	 * Connect a resistor to our copies of its nodes, looked up by id.
+	 */
+	private void addNeighborConnections(Resistor r){
+		getNode(r.getNodeA().getId()).addConnection(r);
+		getNode(r.getNodeB().getId()).addConnection(r);
+	}
+	
+	/**
+	 * Disconnect a resistor from our copies of its nodes, looked up by id,
+	 * so only the two nodes it touches are searched.
+	 */
+	private void removeResistorFromNodeConnections(Resistor r){
+		Node a = getNode(r.getNodeA().getId());
+		Node b = getNode(r.getNodeB().getId());
+		if(a != null){
+			a.removeConnection(r);
+		}
+		if(b != null && b != a){
+			b.removeConnection(r);
 		}
 	}
-
+	
+	private void putNode(Node n){
+		while(nodeById.size() <= n.getId()){
+			nodeById.add(null);
+		}
+		nodeById.set(n.getId(), n);
+	}
+	
+	private static int idOf(Node n){
+		return n == null ? -1 : n.getId();
+	}
+	
+	private void removeNode(Node n){
+		Node ours = getNode(n.getId());
+		if(ours != null){
+			nodes.remove(ours);
+			nodeById.set(n.getId(), null);
+		}
+	}
+	
 	/* Public Methods */
 	public void addComplicatedCircuit(Circuit c){
 		complicatedCircuit = c;
 	}
 	
+	/**
+	 * Add a node and give it the next node id.
+	 * A node belongs to one circuit, adding it to another gives it a new id.
+	 */
 	public void addNode(Node n){
+		n.attach(graph, graph.addNode());
+		putNode(n);
 		nodes.add(n);
 	}
 	
 	public void addResistor(Resistor r){
+		r.setId(newElementId());
+		r.attach(graph);
 		resistors.add(r);
 	}
 	
+	/**
+	 * Add a power supply, a circuit can have any number of them.
+	 */
 	public void addSupply(PowerSupply s){
-		supply = s;
+		s.setId(newElementId());
+		supplies.add(s);
+	}
+	
+	/**
+	 * Add a capacitor, it's only used by the TransientSolver.
+	 */
+	public void addCapacitor(Capacitor c){
+		c.setId(newElementId());
+		capacitors.add(c);
+	}
+	
+	/**
+	 * Add an inductor, it's only used by the TransientSolver.
+	 */
+	public void addInductor(Inductor l){
+		l.setId(newElementId());
+		inductors.add(l);
+	}
+	
+	/**
+	 * Place a copy of a sub-circuit, its terminals on plus and minus and new nodes for everything inside it.
+	 * simplify() reduces the copy as one resistor, looked up in the EquivalentCache, so don't change the
+	 * ohms of its resistors afterwards or connect anything to its inner nodes, if you do it's reduced
+	 * resistor by resistor like the rest of the circuit.
+	 * @return The copy, its resistors and node ids.
+	 */
+	public SubCircuitInstance addSubCircuit(SubCircuit sub, Node plus, Node minus){
+		if(getNode(plus.getId()) != plus || getNode(minus.getId()) != minus){
+			throw new IllegalArgumentException("a sub-circuit's terminals have to be nodes of circuit " + getName());
+		}
+		int[] nodeIds = new int[sub.getNodeCount()];
+		for(int j = 0; j < nodeIds.length; j++){
+			if(j == sub.getPlus()){
+				nodeIds[j] = plus.getId();
+			}else if(j == sub.getMinus()){
+				nodeIds[j] = minus.getId();
+			}else{
+				nodeIds[j] = newNode().getId();
+			}
+		}
+		int first = resistors.size();
+		for(int i = 0; i < sub.getResistorCount(); i++){
+			newResistor(sub.getOhms(i), getNode(nodeIds[sub.getNodeA(i)]), getNode(nodeIds[sub.getNodeB(i)]));
+		}
+		SubCircuitInstance instance = new SubCircuitInstance(sub, first, sub.getResistorCount(), nodeIds, plus, minus);
+		subCircuits.add(instance);
+		return instance;
+	}
+	
+	/**
+	 * Add a new node straight into our graph, without the node having a graph of its own first.
+	 * Loaders building very large circuits use this.
+	 */
+	Node newNode(){
+		Node n = new Node(graph, graph.addNode());
+		putNode(n);
+		nodes.add(n);
+		return n;
+	}
+	
+	/**
+	 * Add a new resistor between two of our nodes straight into our graph, and connect it to them.
+	 */
+	Resistor newResistor(double o, Node a, Node b){
+		int s = graph.addResistor(o);
+		graph.setEndpoints(s, a.getId(), b.getId());
+		Resistor r = new Resistor(graph, s);
+		r.setId(newElementId());
+		r.connect(a, b);
+		a.addConnection(r);
+		b.addConnection(r);
+		resistors.add(r);
+		return r;
+	}
+	
+	/**
+	 * Watch this circuit being simplified, pass CircuitTracer.NONE (the default) to stop.
+	 * Copies made by simplifyStepwise() use the same tracer.
+	 */
+	public void setTracer(CircuitTracer tracer){
+		this.tracer = tracer == null ? CircuitTracer.NONE : tracer;
+	}
+	
+	public CircuitTracer getTracer(){
+		return tracer;
+	}
+	
+	/**
+	 * Count and time this circuit's solves, pass SolverMetrics.NONE to stop.
+	 * Copies made by simplifyStepwise() use the same metrics.
+	 */
+	public void setMetrics(SolverMetrics metrics){
+		this.metrics = metrics == null ? SolverMetrics.NONE : metrics;
+	}
+	
+	public SolverMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * The metrics every circuit made from now on starts with, so a service can watch all its solves
+	 * without setting them on each circuit. SolverMetrics.NONE, the default, turns them off.
+	 */
+	public static void setDefaultMetrics(SolverMetrics metrics){
+		defaultMetrics = metrics == null ? SolverMetrics.NONE : metrics;
+	}
+	
+	public static SolverMetrics getDefaultMetrics(){
+		return defaultMetrics;
+	}
+	
+	/**
+	 * Where simplify() looks up the equivalents of placed sub-circuits, null reduces each copy resistor by resistor.
+	 */
+	public void setEquivalentCache(EquivalentCache cache){
+		equivalentCache = cache;
+	}
+	
+	public EquivalentCache getEquivalentCache(){
+		return equivalentCache;
+	}
+	
+	/**
+	 * The cache every circuit made from now on starts with, so identical sub-circuits are only solved once
+	 * across all of them. null turns caching off for new circuits.
+	 */
+	public static void setDefaultEquivalentCache(EquivalentCache cache){
+		defaultEquivalentCache = cache;
+	}
+	
+	public static EquivalentCache getDefaultEquivalentCache(){
+		return defaultEquivalentCache;
+	}
+	
+	/**
+	 * The sub-circuit copies placed with addSubCircuit(), in the order they were placed.
+	 */
+	public ArrayList<SubCircuitInstance>getSubCircuits(){
+		return subCircuits;
 	}
 	
 	public void setName(String name){
@@ -193,39 +465,262 @@ public class Circuit {
 	}
 	
 	public String getName(){
-		return name;
+		if(name != null){
+			return name;
+		}
+		return "C" + step;
+	}
+	
+	/**
+	 * Look a node up by id.
+	 * @return The node, or null if there is no node in this circuit with that id.
+	 */
+	public Node getNode(int id){
+		if(id < 0 || id >= nodeById.size()){
+			return null;
+		}
+		return nodeById.get(id);
+	}
+	
+	/**
+	 * Node ids run from 0 up to, but not including, this.
+	 */
+	public int getNodeIdCount(){
+		return graph.getNodeCount();
+	}
+	
+	/**
+	 * The compact store behind this circuit's nodes and resistors, resistor slots are in the
+	 * same order as getResistors(). The nodeA/nodeB ids are brought up to date first.
+	 */
+	public CircuitGraph getGraph(){
+		if(graph.areEndpointsStale()){
+			for(int i = 0; i < resistors.size(); i++){
+				Resistor r = resistors.get(i);
+				graph.setEndpoints(r.getIndex(), idOf(r.getNodeA()), idOf(r.getNodeB()));
+			}
+			graph.clearEndpointsStale();
+		}
+		return graph;
+	}
+	
+	/**
+	 * Hand out the next element id, the reducer uses this for the resistors it makes.
+	 */
+	int newElementId(){
+		return nextElementId++;
+	}
+	
+	public ArrayList<Node>getNodes(){
+		return nodes;
+	}
+	
+	public ArrayList<Resistor>getResistors(){
+		return resistors;
 	}
 	
 	/**
-	 * Recursively simplify by finding first series or parallel resistors
-	 * then create new circuit combining said resistors, and simplify that
+	 * The first power supply, the one series/parallel reduction works with, or null if there are none.
+	 */
+	public PowerSupply getSupply(){
+		return supplies.isEmpty() ? null : supplies.get(0);
+	}
+	
+	public ArrayList<PowerSupply>getSupplies(){
+		return supplies;
+	}
+	
+	public ArrayList<Capacitor>getCapacitors(){
+		return capacitors;
+	}
+	
+	public ArrayList<Inductor>getInductors(){
+		return inductors;
+	}
+	
+	/**
+	 * Solve the circuit with nodal analysis instead of simplifying it.
+	 * This works on any network of resistors, bridges included, with any number of supplies, and
+	 * fills in every node's voltage, every resistor's amps, voltage drop and watts, and every supply's amps.
+	 * @return The current drawn from the first power supply.
+	 */
+	public double solveNodal(){
+		long start = 0;
+		long bytes = 0;
+		if(metrics != SolverMetrics.NONE){
+			start = System.nanoTime();
+			bytes = SolveSample.allocatedBytes();
+		}
+		NodalSolver solver = new NodalSolver(this);
+		solver.solve();
+		if(metrics != SolverMetrics.NONE){
+			long end = System.nanoTime();
+			metrics.solvedNodal(end - start, bytes == -1 ? -1 : SolveSample.allocatedBytes() - bytes);
+		}
+		for(int k = 0; k < supplies.size(); k++){
+			supplies.get(k).setAmps(solver.getSupplyAmps(k));
+		}
+		supplyAmps = solver.getSupplyAmps();
+		return supplyAmps;
+	}
+	
+	/**
+	 * Solve the circuit with nodal analysis in a session, reusing whatever the session kept from
+	 * solving circuits like this one: the reduction plan for its topology, or the factorization of
+	 * a base circuit it's only a few resistors away from. See SolverSession.
+	 * @return The current drawn from the first power supply.
+	 */
+	public double solveNodal(SolverSession session){
+		long start = 0;
+		long bytes = 0;
+		if(metrics != SolverMetrics.NONE){
+			start = System.nanoTime();
+			bytes = SolveSample.allocatedBytes();
+		}
+		session.solve(this);
+		if(metrics != SolverMetrics.NONE){
+			long end = System.nanoTime();
+			metrics.solvedNodal(end - start, bytes == -1 ? -1 : SolveSample.allocatedBytes() - bytes);
+		}
+		for(int k = 0; k < supplies.size(); k++){
+			supplies.get(k).setAmps(session.getSupplyAmps(k));
+		}
+		supplyAmps = session.getSupplyAmps(0);
+		return supplyAmps;
+	}
+	
+	/**
+	 * Solve the circuit with nodal analysis, iteratively with preconditioned conjugate gradient.
+	 * It holds no more than the matrix and a few vectors, so it works on meshes far too big to factor.
+	 * Use ConjugateGradientSolver directly to pick the preconditioner or thread pool.
+	 * @param tolerance Stop when the residual is this small relative to the right hand side.
+	 * @param maxIterations Give up after this many, 0 for as many as there are unknowns.
+	 * @return The current drawn from the power supply.
+	 */
+	public double solveIterative(double tolerance, int maxIterations){
+		ConjugateGradientSolver solver = new ConjugateGradientSolver(this);
+		solver.setTolerance(tolerance);
+		solver.setMaxIterations(maxIterations);
+		if(!solver.solve()){
+			throw new IllegalStateException("circuit " + getName() + " didn't converge in " + solver.getIterations()
+					+ " iterations, the residual is " + solver.getResidual());
+		}
+		supplyAmps = solver.getSupplyAmps();
+		return supplyAmps;
+	}
+	
+	/**
+	 * Fail every resistor open and then short, one at a time, on a thread per core.
+	 * The circuit is solved once with nodal analysis and each fault worked out from that with a
+	 * rank one update, see FaultAnalysis to set power ratings or the thread count.
+	 * The circuit itself isn't changed.
+	 * @return A row for each fault.
+	 */
+	public FaultTable analyzeFaults(){
+		FaultAnalysis analysis = new FaultAnalysis(this);
+		try{
+			return analysis.run();
+		}finally{
+			analysis.shutdown();
+		}
+	}
+	
+	/**
+	 * Simplify the circuit in place. A single Reducer works on one index of this circuit,
+	 * combining series and parallel resistors until one is left, bridges are broken up with the
+	 * star-mesh transform and dangling resistors dropped. Nothing is copied, each combine
+	 * just leaves a Replacement in the reduction log, then solve() backtracks through it in reverse
+	 * filling in the voltage, amps and watts of every node and resistor.
+	 * Sub-circuit copies placed with addSubCircuit() go in as a single resistor from the EquivalentCache.
+	 * With metrics set, each phase is timed and the sample handed to them.
 	 */
 	public void simplify(){
-		//first we check if this is the most simple circuit possible, if so, we can go on to solve simple circuit.
-		//we know it's the most simple circuit, if there is only 1 resistor
-		if(resistors.size() <= 1){
-			solve();
-		}else{
-			combine();
+		if(metrics != SolverMetrics.NONE){
+			simplifyMeasured();
+			return;
+		}
+		Reducer reducer = new Reducer(this, equivalentCache);
+		equivalent = reducer.reduce();
+		reductionLog = reducer.getLog();
+		solve();
+	}
+	
+	/**
+	 * Simplify one step at a time, each step is a full copy of the circuit with two resistors
+	 * combined, linked back to the step before through complicatedCircuit.
+	 * Only use this when you want to look at each step, simplify() is much cheaper.
+	 * Each step is handed to the tracer, set a ConsoleTracer to print them.
+	 * This loops rather than recursing, so it works on circuits of any depth.
+	 * The copies add up to O(N^2) for N resistors, simplifyHistory() keeps the same steps in O(N log N).
+	 * @return The last step, a circuit with a single resistor.
+	 */
+	public Circuit simplifyStepwise(){
+		Circuit current = this;
+		while(current.resistors.size() > 1){
+			metrics.copied(current.resistors.size());
+			current = current.combine();
+			tracer.stepped(current);
 		}
+		return current;
+	}
+	
+	/**
+	 * Simplify the circuit, and keep every step of the reduction to look at afterwards.
+	 * Each step shares all but what its combine changed with the step before, so this is
+	 * simplify() plus O(log N) per step, not a full copy of the circuit each time.
+	 * @return The steps, from this circuit down to its equivalent resistor.
+	 */
+	public CircuitHistory simplifyHistory(){
+		simplify();
+		return new CircuitHistory(this);
+	}
+	
+	/**
+	 * The single resistor simplify() reduced this circuit to.
+	 */
+	public Resistor getEquivalent(){
+		return equivalent;
+	}
+	
+	/**
+	 * Every combine simplify() did, in order.
+	 */
+	public ArrayList<Replacement>getReductionLog(){
+		return reductionLog;
+	}
+	
+	/**
+	 * The current drawn from the first power supply, or null if the circuit hasn't been solved.
+	 * After solveNodal() each supply's own current is PowerSupply.getAmps().
+	 */
+	public Double getSupplyAmps(){
+		return supplyAmps;
 	}
 	
 	/**
 	 * Find the first Series, or Parallel resisistors, combine them and create a new
-	 * circuit using the combined resistors, then simplify that one.
+	 * circuit using the combined resistors. If there are none, drop a dangling resistor, or
+	 * eliminate the node with the fewest resistors with the star-mesh transform.
+	 * @return The new circuit, one step simpler than this one.
 	 */
-	private void combine(){
+	private Circuit combine(){
 		Boolean isSeries = null;
-		ArrayList<Resistor>toCombine = getSeriesResistors(); //If series resistors exists, this will return them, otherwise toCombine will be null.
+		Reducer reducer = new Reducer(this);
+		ArrayList<Resistor>toCombine = reducer.findSeries(); //If series resistors exists, this will return them, otherwise toCombine will be null.
 		if(toCombine == null){ //There are no simple series resistors in this circuit.
-			toCombine = getParallelResistors(); // If parallel resistors exists, this will return them, otherwise toCombine will be null
+			toCombine = reducer.findParallel(); // If parallel resistors exists, this will return them, otherwise toCombine will be null
 			if(toCombine == null){
-				//we only get to this point if there are no series, or parallel resistors in circuit.
-				//However, we only call combine if there are more than 1 resistor, therefore something
-				//must be in series, or in parallel, therefore something is wrong and there is an error somewhere in 
-				//the algorithm.
-				System.out.println("ERROR: resistors.size() == " + resistors.size() + ", however, no series or parallel resistors were found.");
-				System.exit(1);
+				//no series, or parallel resistors, it's a bridge or something dangles.
+				Node eliminated = reducer.findDangling();
+				if(eliminated == null){
+					eliminated = reducer.findStar();
+				}
+				if(eliminated == null){
+					throw new IllegalStateException("circuit " + getName() + " has " + resistors.size() + " resistors left, however, nothing more could be reduced.");
+				}
+				Circuit c2 = new Circuit(this, eliminated);
+				tracer.combined(c2.made);
+				return c2;
 			}else{
 				isSeries = false; //We know that toCombine are resistors in parallel, so isSeries is false
 			}
@@ -235,50 +730,179 @@ public class Circuit {
 		
 		/* At this point toCombine is guaranteed not to be null, it has two elements. */
 		Circuit c2 = new Circuit(this, toCombine, isSeries);
-		c2.print();
+		tracer.combined(c2.made);
+		return c2;
+	}
+	
+	/**
+	 * Solve the simplified circuit, then backtrack.
+	 * 1. The supply's +node sits at the supply voltage and its -node at 0.
+	 * 2. The equivalent resistor spans the supply, so ohm's law gives the supply current.
+	 * 3. Walk the reduction log backwards, every Replacement hands its result's voltages down
+	 *    to the two resistors it replaced. A series Replacement also gets the voltage of the
+	 *    node between them: V = V(nodeA) - amps*ohms of the resistor on the nodeA side.
+	 *    A star-mesh gets the voltage of the node it eliminated from the star's far ends, no current
+	 *    leaves the node so V = (V1/R1 + V2/R2 + ...)/(1/R1 + 1/R2 + ...). A dangling resistor's
+	 *    loose end sits at the voltage of the end that's connected. A sub-circuit copy's inner nodes
+	 *    sit their cached ratio of the way from its -terminal to its +terminal.
+	 * When we're done every resistor and node in the original circuit has its values.
+	 * If nothing connects the supply's nodes, no current flows and there's no equivalent resistor.
+	 */
+	private void solve(){
+		supplyAmps = 0.0;
+		PowerSupply supply = getSupply();
+		if(supply == null || supply.getPosNode() == null || supply.getNegNode() == null){
+			throw new IllegalStateException("circuit " + getName() + " has no connected power supply");
+		}
+		int pos = supply.getPosNode().getId();
+		int neg = supply.getNegNode().getId();
+		graph.setVoltage(pos, supply.getVoltage());
+		graph.setVoltage(neg, 0);
+		if(equivalent != null){
+			int a = equivalent.getNodeA().getId();
+			int b = equivalent.getNodeB().getId();
+			if(!((a == pos && b == neg) || (a == neg && b == pos))){
+				throw new IllegalStateException("circuit " + getName() + " does not reduce to a single resistor across its supply");
+			}
+			applyOhmsLaw(equivalent);
+			supplyAmps = Math.abs(equivalent.getGraph().getAmps(equivalent.getIndex()));
+		}
 		
-		c2.simplify();
+		for(int i = reductionLog.size()-1; i >= 0; i--){
+			Replacement replacement = reductionLog.get(i);
+			Resistor r = replacement.result;
+			if(replacement.kind == Replacement.STAR){
+				double conductance = 0;
+				double current = 0;
+				for(int j = 0; j < replacement.star.length; j++){
+					Resistor s = replacement.star[j];
+					double g = 1/s.getGraph().getOhms(s.getIndex());
+					conductance += g;
+					current += g*graph.getVoltage(farEnd(s, replacement.node));
+				}
+				graph.setVoltage(replacement.node.getId(), current/conductance);
+				for(int j = 0; j < replacement.star.length; j++){
+					applyOhmsLaw(replacement.star[j]);
+				}
+				continue;
+			}
+			if(replacement.kind == Replacement.DANGLING){
+				graph.setVoltage(replacement.node.getId(), graph.getVoltage(farEnd(replacement.a, replacement.node)));
+				applyOhmsLaw(replacement.a);
+				continue;
+			}
+			if(replacement.kind == Replacement.INSTANCE){
+				SubCircuitInstance instance = replacement.instance;
+				int[] order = instance.sub.getOrder();
+				double high = graph.getVoltage(instance.plus.getId());
+				double low = graph.getVoltage(instance.minus.getId());
+				for(int j = 0; j < order.length; j++){
+					graph.setVoltage(instance.nodeIds[order[j]], low + replacement.ratios[j]*(high - low));
+				}
+				for(int k = 0; k < instance.count; k++){
+					applyOhmsLaw(resistors.get(instance.first+k));
+				}
+				continue;
+			}
+			if(replacement.isSeries){
+				//replacement.a runs from r's nodeA to the middle node
+				double amps = r.getGraph().getAmps(r.getIndex());
+				double ohmsA = replacement.a.getGraph().getOhms(replacement.a.getIndex());
+				graph.setVoltage(replacement.node.getId(), graph.getVoltage(r.getNodeA().getId()) - amps*ohmsA);
+			}
+			applyOhmsLaw(replacement.a);
+			applyOhmsLaw(replacement.b);
+		}
 		
+		//resistors with both ends on one node were never reduced, they carry nothing
+		for(int i = 0; i < resistors.size(); i++){
+			Resistor r = resistors.get(i);
+			if(r.getNodeA() == r.getNodeB() && !Double.isNaN(graph.getVoltage(r.getNodeA().getId()))){
+				applyOhmsLaw(r);
+			}
+		}
 	}
 	
-	private void solve(){
-		System.out.println("THIS IS WHERE WE WILL SOLVE!");
+	/**
+	 * simplify(), with the clock read between each phase.
+	 */
+	private void simplifyMeasured(){
+		SolveSample sample = new SolveSample();
+		sample.resistors = resistors.size();
+		long bytes = SolveSample.allocatedBytes();
+		long start = System.nanoTime();
+		Reducer reducer = new Reducer(this, equivalentCache);
+		long indexed = System.nanoTime();
+		equivalent = reducer.reduce();
+		reductionLog = reducer.getLog();
+		long reduced = System.nanoTime();
+		solve();
+		long end = System.nanoTime();
+		sample.allocatedBytes = bytes == -1 ? -1 : SolveSample.allocatedBytes() - bytes;
+		sample.indexNanos = indexed - start;
+		sample.reduceNanos = reduced - indexed;
+		sample.backNanos = end - reduced;
+		sample.totalNanos = end - start;
+		sample.seriesMerges = reducer.getSeriesMerges();
+		sample.parallelMerges = reducer.getParallelMerges();
+		sample.starEliminations = reducer.getStarEliminations();
+		sample.danglingDrops = reducer.getDanglingDrops();
+		sample.staleCandidates = reducer.getStaleCandidates();
+		metrics.simplified(sample);
+	}
+	
+	/**
+	 * The id of the node at the other end of r from node.
+	 */
+	private static int farEnd(Resistor r, Node node){
+		return r.getNodeA().getId() == node.getId() ? r.getNodeB().getId() : r.getNodeA().getId();
+	}
+	
+	/**
+	 * Fill in a resistor's voltage drop, amps and watts from the voltages at its nodes.
+	 * Amps are positive when the current flows from nodeA to nodeB.
+	 * The resistor may be one the reducer made, so its numbers can live in another graph than our voltages.
+	 * A resistor the supply doesn't reach has no voltages, it carries nothing, the same as solveNodal() says.
+	 */
+	private void applyOhmsLaw(Resistor r){
+		CircuitGraph g = r.getGraph();
+		int i = r.getIndex();
+		double drop = graph.getVoltage(r.getNodeA().getId()) - graph.getVoltage(r.getNodeB().getId());
+		if(Double.isNaN(drop)){
+			drop = 0;
+		}
+		double amps = drop/g.getOhms(i);
+		g.setVoltageDrop(i, drop);
+		g.setAmps(i, amps);
+		g.setWatts(i, drop*amps);
+	}
+	
+	/**
+	 * Reduce the circuit to a single equivalent resistor using the indexed Reducer.
+	 * This circuit's own resistors and nodes are left as they are, the returned resistor
+	 * remembers what it replaced through its Replacement.
+	 * @return The equivalent resistor.
+	 */
+	public Resistor reduce(){
+		return new Reducer(this).reduce();
+	}
+
+	/**
+	 * Compile this circuit's topology into a plan, for solving it over and over with different
+	 * ohms or supply voltages without searching for series and parallel resistors each time.
+	 * @return The plan, it doesn't change when this circuit does.
+	 */
+	public ReductionPlan compile(){
+		return new ReductionPlan(this);
 	}
 	
 	/**
 	 * Parallel resistors are known because they
-	 * share the same extraordinary nodes.
-	 * @return
+	 * share the same two nodes.
+	 * @return An ArrayList containing the two resistors in parallel.
 	 */
 	public ArrayList<Resistor>getParallelResistors(){
-		ArrayList<Resistor>results = null;
-		System.out.print("Checking parallel Resistors: ");
-		for(int i = 0; i < resistors.size(); i++){
-			for(int j = i+1; j < resistors.size(); j++){
-				Resistor r1 = resistors.get(i);
-				Resistor r2 = resistors.get(j);
-				if(r1.getNodeA().isExtraOrdinary() && r1.getNodeB().isExtraOrdinary() 
-						&& r2.getNodeA().isExtraOrdinary() && r2.getNodeB().isExtraOrdinary()){ //Both nodes, from both resistors must be extraordinary
-					if(r1.getNodeA() == r2.getNodeA() && r1.getNodeB() == r2.getNodeB()){ //nodes match
-						results = new ArrayList<Resistor>();
-						results.add(r1);
-						results.add(r2);
-						System.out.println("Parallels Found1");
-						return results;
-					}else if(r1.getNodeA() == r2.getNodeB() && r1.getNodeB() == r2.getNodeA()){ //nodes match
-						results = new ArrayList<Resistor>();
-						results.add(r1);
-						results.add(r2);
-						System.out.println("Parallels Found2");
-						return results;
-					}else{ //nodes don't match
-						//do nothing and keep going through loop
-					}
-				}
-			}
-		}
-		System.out.println(" No Parrallels found ");
-		return results;
+		return new Reducer(this).findParallel();
 	}
 	
 	/**
@@ -286,48 +910,7 @@ public class Circuit {
 	 * @return An ArrayList containing the two resistors in series.
 	 */
 	public ArrayList<Resistor>getSeriesResistors(){
-		ArrayList<Resistor>results = null;
-		System.out.print(" Checking Series Resistors ");
-		for(int i = 0; i < resistors.size(); i++){
-			for(int j = i+1; j < resistors.size(); j++){
-				Resistor r1 = resistors.get(i);
-				Resistor r2 = resistors.get(j);
-				if ( r1.getNodeA() == r2.getNodeA()  && !r1.getNodeA().isExtraOrdinary()){ //r1 and r2 are series
-					results = new ArrayList<Resistor>();
-					results.add(r1);
-					results.add(r2);
-					System.out.println("Series Found1");
-					return results;
-				}else if(r1.getNodeA() == r2.getNodeB()  && !r1.getNodeA().isExtraOrdinary()){
-					results = new ArrayList<Resistor>();
-					results.add(r1);
-					results.add(r2);
-					System.out.println("Series Found2");
-					return results;
-				}
-				
-				
-				
-				if(r1.getNodeB() == r2.getNodeA() && !r1.getNodeB().isExtraOrdinary()){ //r1 and r2 are series
-					results = new ArrayList<Resistor>();
-					results.add(r1);
-					results.add(r2);
-					System.out.println("Series Found3");
-					return results;
-				}else if(r1.getNodeB() == r2.getNodeB()  && !r1.getNodeB().isExtraOrdinary()){
-					results = new ArrayList<Resistor>();
-					results.add(r1);
-					results.add(r2);
-					System.out.println("Series Found4");
-					return results;
-				}else{//nothing is in series.
-				
-					//do nothing for this loop
-				}
-			}
-		}
-		System.out.println(" No Series Found");
-		return results; //this will alway be null, if a value appears it will be returned in the double loop
+		return new Reducer(this).findSeries();
 	}
 	
 	/**
@@ -339,11 +922,13 @@ public class Circuit {
 		ArrayList<Node>copyNodes = new ArrayList<Node>();
 		for(int i = 0; i < nodes.size(); i++){
 			Node oldNode = nodes.get(i);
-			Node newNode = new Node(random);
-			newNode.setName(oldNode.getName());
+			Node newNode = new Node();
+			newNode.copyIdentity(oldNode);
 			newNode.setConnections(oldNode.getConnections());
 			newNode.setVoltage(oldNode.getVoltage());
+			newNode.attach(graph, oldNode.getId());
 			copyNodes.add(newNode);
+			putNode(newNode);
 		}
 		return copyNodes;
 	}
@@ -351,44 +936,55 @@ public class Circuit {
 	/**
 	 * We want to copy all the info for the resistors, but not use the same objects themselves.
 	 * @param oldResistors
+	 * @param leaveOut Resistors not to copy, matched by id.
 	 * @return
 	 */
-	private ArrayList<Resistor> copyResistors(ArrayList<Resistor>oldResistors){
+	private ArrayList<Resistor> copyResistors(ArrayList<Resistor>oldResistors, ArrayList<Resistor>leaveOut){
 		ArrayList<Resistor>newResistors = new ArrayList<Resistor>();
 		for(int i = 0; i < oldResistors.size(); i++){
 			Resistor oldResistor = oldResistors.get(i);
+			if(containsId(leaveOut, oldResistor.getId())){
+				continue;
+			}
 			Resistor newResistor = new Resistor(oldResistor.getOhms(), oldResistor.getRandom());
-			newResistor.setName(oldResistor.getName());
+			newResistor.copyIdentity(oldResistor);
 			newResistor.setAmps(oldResistor.getAmps());
 			newResistor.setVoltageDrop(oldResistor.getVoltageDrop());
 			newResistor.setWatts(oldResistor.getWatts());
 			newResistor.setNodeA(oldResistor.getNodeA());
 			newResistor.setNodeB(oldResistor.getNodeB());
+			newResistor.setReplacement(oldResistor.getReplacement());
+			newResistor.attach(graph);
 			newResistors.add(newResistor);
 		}
 		return newResistors;
 	}
 	
-	private PowerSupply copyPowerSupply(PowerSupply oldSupply){
-		PowerSupply newSupply = new PowerSupply(oldSupply.getVoltage(), oldSupply.getRandom());
-		newSupply.setName(oldSupply.getName());
-		newSupply.setVoltage(oldSupply.getVoltage());
-		newSupply.setPosNode(oldSupply.getPosNode());
-		newSupply.setNegNode(oldSupply.getNegNode());
-		return newSupply;
+	private ArrayList<PowerSupply> copyPowerSupplies(ArrayList<PowerSupply>oldSupplies){
+		ArrayList<PowerSupply>newSupplies = new ArrayList<PowerSupply>(oldSupplies.size());
+		for(int i = 0; i < oldSupplies.size(); i++){
+			PowerSupply oldSupply = oldSupplies.get(i);
+			PowerSupply newSupply = new PowerSupply(oldSupply.getVoltage(), oldSupply.getRandom());
+			newSupply.copyIdentity(oldSupply);
+			newSupply.setVoltage(oldSupply.getVoltage());
+			newSupply.setPosNode(oldSupply.getPosNode());
+			newSupply.setNegNode(oldSupply.getNegNode());
+			newSupplies.add(newSupply);
+		}
+		return newSupplies;
 	}
 	
-	private static void removeResistor(Resistor r, ArrayList<Resistor>resistors){
+	private static boolean containsId(ArrayList<Resistor>resistors, int id){
 		for(int i = 0; i < resistors.size(); i++){
-			Resistor testResistor = resistors.get(i);
-			if(testResistor.getName().equals(r.getName())){//testResistor has same name as r, remove it from resistors
-				resistors.remove(testResistor);
+			if(resistors.get(i).getId() == id){
+				return true;
 			}
 		}
+		return false;
 	}
 	
 	public void print(){
-		System.out.println("C: " + name);
+		System.out.println("C: " + getName());
 		printComplicatedCircuit();
 		printNodes();
 		printResistors();
@@ -410,10 +1006,6 @@ public class Circuit {
 		
 	}
 	
-	private String newName(){
-		return new BigInteger(16, random).toString(16);
-	}
-	
 	private void printNodes(){
 		for(int i = 0; i < nodes.size(); i++){
 			Node n = nodes.get(i);
@@ -460,29 +1052,48 @@ public class Circuit {
 			}
 			
 			System.out.format("%-2s", "Replacement: ");
-			if(r.getReplacement() != null){
-				System.out.format("%8s", "A: " + r.getReplacement().a.getName()+" ");
-				System.out.format("%8s", "B: " + r.getReplacement().b.getName()+" ");
-				System.out.format("%8s", "isSeries?: " + r.getReplacement().isSeries+"\n");
-			}else{
+			Replacement replacement = r.getReplacement();
+			if(replacement == null){
 				System.out.format("%-2s", "NULL \n");
+			}else if(replacement.kind == Replacement.STAR){
+				//a mesh resistor, star and mesh are the resistors the star-mesh took out and put in
+				System.out.print("Star: " + replacement.node.getName() + " ->");
+				for(int j = 0; j < replacement.star.length; j++){
+					System.out.print(" " + replacement.star[j].getName());
+				}
+				System.out.print(" Mesh:");
+				for(int j = 0; j < replacement.mesh.length; j++){
+					System.out.print(" " + replacement.mesh[j].getName());
+				}
+				System.out.println();
+			}else if(replacement.kind == Replacement.INSTANCE){
+				System.out.format("%8s", "Sub-Circuit: " + replacement.instance.sub.getKey()+"\n");
+			}else{
+				System.out.format("%8s", "A: " + replacement.a.getName()+" ");
+				if(replacement.b != null){
+					System.out.format("%8s", "B: " + replacement.b.getName()+" ");
+				}
+				System.out.format("%8s", "isSeries?: " + replacement.isSeries+"\n");
 			}
 			
 		}
 	}
 	
 	private void printPowerSupplies(){
-		System.out.format("%-1s", "PowerSupply: ");
-		System.out.format("%6s", supply.getName()+" ");
-		
-		System.out.format("%-1s", "Voltage: ");
-		System.out.format("%6s", supply.getVoltage()+" ");
-		
-		System.out.format("%-1s", "+Node: ");
-		System.out.format("%6s", supply.getPosNode().getName()+" ");
-		
-		System.out.format("%-1s", "-Node: ");
-		System.out.format("%6s", supply.getNegNode().getName()+"\n");
+		for(int i = 0; i < supplies.size(); i++){
+			PowerSupply supply = supplies.get(i);
+			System.out.format("%-1s", "PowerSupply: ");
+			System.out.format("%6s", supply.getName()+" ");
+			
+			System.out.format("%-1s", "Voltage: ");
+			System.out.format("%6s", supply.getVoltage()+" ");
+			
+			System.out.format("%-1s", "+Node: ");
+			System.out.format("%6s", supply.getPosNode().getName()+" ");
+			
+			System.out.format("%-1s", "-Node: ");
+			System.out.format("%6s", supply.getNegNode().getName()+"\n");
+		}
 	}
 	
 	
@@ -0,0 +1,171 @@
+import java.util.Random;
+
+/**
+ * Makes circuits of any size for benchmarks and checks. Every circuit has a 10 volt supply
+ * across its two end nodes and resistors between 1 and 100 ohms, picked from a seeded Random
+ * so the same arguments always give the same circuit. All of them are series/parallel, so
+ * simplify() can solve them.
+ * The builders loop rather than recurse, a million resistors is fine.
+ * @author Isaac Assegai
+ *
+ */
+public class CircuitGenerator {
+	/* Member Variables */
+	public static final String[] SHAPES = {"chain", "fan", "ladder", "tree", "random"};
+
+	private Circuit circuit;
+	private Random random;
+
+	private CircuitGenerator(long seed){
+		circuit = new Circuit();
+		random = new Random(seed);
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Make a circuit by name, one of SHAPES.
+	 */
+	public static Circuit make(String shape, int resistors, long seed){
+		if(shape.equals("chain")){
+			return chain(resistors, seed);
+		}else if(shape.equals("fan")){
+			return fan(resistors, seed);
+		}else if(shape.equals("ladder")){
+			return ladder(resistors, seed);
+		}else if(shape.equals("tree")){
+			return tree(resistors, seed);
+		}else if(shape.equals("random")){
+			return randomSeriesParallel(resistors, seed);
+		}
+		throw new IllegalArgumentException("no circuit shape called " + shape);
+	}
+
+	/**
+	 * Resistors end to end.
+	 */
+	public static Circuit chain(int resistors, long seed){
+		CircuitGenerator g = new CircuitGenerator(seed);
+		Node first = g.circuit.newNode();
+		Node last = first;
+		for(int i = 0; i < resistors; i++){
+			Node next = g.circuit.newNode();
+			g.resistor(last, next);
+			last = next;
+		}
+		return g.finish(first, last);
+	}
+
+	/**
+	 * Resistors all across the same two nodes.
+	 */
+	public static Circuit fan(int resistors, long seed){
+		CircuitGenerator g = new CircuitGenerator(seed);
+		Node top = g.circuit.newNode();
+		Node bottom = g.circuit.newNode();
+		for(int i = 0; i < resistors; i++){
+			g.resistor(top, bottom);
+		}
+		return g.finish(top, bottom);
+	}
+
+	/**
+	 * A ladder, each rung is a resistor along the top and one down to the bottom rail.
+	 * With an odd count the last resistor goes straight down to the bottom rail, so nothing dangles.
+	 */
+	public static Circuit ladder(int resistors, long seed){
+		CircuitGenerator g = new CircuitGenerator(seed);
+		Node first = g.circuit.newNode();
+		Node bottom = g.circuit.newNode();
+		Node last = first;
+		for(int i = 0; i < resistors; i++){
+			if(i % 2 == 0 && i < resistors-1){
+				Node next = g.circuit.newNode();
+				g.resistor(last, next);
+				last = next;
+			}else{
+				g.resistor(last, bottom);
+			}
+		}
+		return g.finish(first, bottom);
+	}
+
+	/**
+	 * A balanced tree, every level splits its resistors in half, alternating series and parallel.
+	 */
+	public static Circuit tree(int resistors, long seed){
+		return splitting(resistors, seed, false);
+	}
+
+	/**
+	 * A random series/parallel network, every split is a random size and randomly series or parallel.
+	 */
+	public static Circuit randomSeriesParallel(int resistors, long seed){
+		return splitting(resistors, seed, true);
+	}
+
+	/* Private Methods */
+	private void resistor(Node a, Node b){
+		circuit.newResistor(1 + 99*random.nextDouble(), a, b);
+	}
+
+	private Circuit finish(Node plus, Node minus){
+		PowerSupply s = new PowerSupply(10.0);
+		s.setPosNode(plus);
+		s.setNegNode(minus);
+		plus.addConnection(s);
+		minus.addConnection(s);
+		circuit.addSupply(s);
+		return circuit;
+	}
+
+	/**
+	 * Build a network between two nodes by splitting it into two smaller networks, in series
+	 * through a new node or in parallel across the same nodes, until each piece is one resistor.
+	 * The pieces still to build are kept on a stack instead of recursing.
+	 */
+	private static Circuit splitting(int resistors, long seed, boolean randomly){
+		CircuitGenerator g = new CircuitGenerator(seed);
+		Node top = g.circuit.newNode();
+		Node bottom = g.circuit.newNode();
+		int capacity = Math.max(1, resistors);
+		Node[] from = new Node[capacity];
+		Node[] to = new Node[capacity];
+		int[] count = new int[capacity];
+		int[] level = new int[capacity];
+		int size = 0;
+		if(resistors > 0){
+			from[0] = top;
+			to[0] = bottom;
+			count[0] = resistors;
+			level[0] = 0;
+			size = 1;
+		}
+		while(size > 0){
+			size--;
+			Node a = from[size];
+			Node b = to[size];
+			int k = count[size];
+			int depth = level[size];
+			if(k == 1){
+				g.resistor(a, b);
+				continue;
+			}
+			int first = randomly ? 1 + g.random.nextInt(k-1) : k/2;
+			boolean series = randomly ? g.random.nextBoolean() : depth % 2 == 0;
+			Node middle = b;
+			if(series){
+				middle = g.circuit.newNode();
+			}
+			from[size] = a;
+			to[size] = middle;
+			count[size] = first;
+			level[size++] = depth+1;
+			from[size] = series ? middle : a;
+			to[size] = b;
+			count[size] = k-first;
+			level[size++] = depth+1;
+		}
+		return g.finish(top, bottom);
+	}
+}
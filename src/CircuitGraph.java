@@ -0,0 +1,308 @@
+/**
+ * A CircuitGraph is the compact backing store for a circuit. Instead of one object per
+ * resistor holding boxed Doubles, every resistor is a slot in a set of parallel primitive arrays:
+ * ohms, amps, watts, voltage drop, and the ids of the nodes at either end. Node voltages are
+ * another array indexed by node id. Resistor and Node objects are thin views over a slot,
+ * and the solvers loop over the arrays directly.
+ * Values that aren't known yet (amps before solving, a floating node's voltage) are NaN.
+ * The node -> resistor incidence is kept in compressed (CSR) form, built when first asked for.
+ * @author Isaac Assegai
+ *
+ */
+public class CircuitGraph {
+	/* Member Variables */
+	private int resistorCount; //Resistor slots in use.
+	private double[] ohms;
+	private double[] amps; //Positive when current flows from nodeA to nodeB.
+	private double[] watts;
+	private double[] vdrop; //voltage(nodeA) - voltage(nodeB)
+	private int[] nodeA; //Node id at each resistor's nodeA, -1 if not connected.
+	private int[] nodeB;
+
+	private int nodeCount; //Node ids run from 0 to nodeCount-1.
+	private double[] voltage;
+
+	private int[] incStart; //Resistors at node n are incident[incStart[n]..incStart[n+1]-1], null when stale.
+	private int[] incident;
+	private boolean endpointsStale; //Someone moved a resistor's node, the Circuit needs to resync nodeA/nodeB.
+
+	/**
+	 * Constructor - An empty graph.
+	 */
+	public CircuitGraph(){
+		this(16, 16);
+	}
+
+	/**
+	 * Constructor - An empty graph with room for this many resistors and nodes before it has to grow.
+	 */
+	public CircuitGraph(int resistorCapacity, int nodeCapacity){
+		resistorCapacity = Math.max(1, resistorCapacity);
+		nodeCapacity = Math.max(1, nodeCapacity);
+		resistorCount = 0;
+		ohms = new double[resistorCapacity];
+		amps = new double[resistorCapacity];
+		watts = new double[resistorCapacity];
+		vdrop = new double[resistorCapacity];
+		nodeA = new int[resistorCapacity];
+		nodeB = new int[resistorCapacity];
+		nodeCount = 0;
+		voltage = new double[nodeCapacity];
+		incStart = null;
+		incident = null;
+		endpointsStale = false;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Add an unconnected resistor, its amps, watts and voltage drop are unknown.
+	 * @return The resistor's slot.
+	 */
+	public int addResistor(double o){
+		if(resistorCount == ohms.length){
+			growResistors(2*ohms.length);
+		}
+		int r = resistorCount++;
+		ohms[r] = o;
+		amps[r] = Double.NaN;
+		watts[r] = Double.NaN;
+		vdrop[r] = Double.NaN;
+		nodeA[r] = -1;
+		nodeB[r] = -1;
+		incStart = null;
+		return r;
+	}
+
+	/**
+	 * Add a node with an unknown voltage.
+	 * @return The node's id.
+	 */
+	public int addNode(){
+		ensureNodes(nodeCount+1);
+		return nodeCount-1;
+	}
+
+	/**
+	 * Make sure node ids 0..count-1 exist, new nodes have an unknown voltage.
+	 */
+	public void ensureNodes(int count){
+		if(count > voltage.length){
+			double[] grown = new double[Math.max(count, 2*voltage.length)];
+			System.arraycopy(voltage, 0, grown, 0, nodeCount);
+			voltage = grown;
+		}
+		for(int n = nodeCount; n < count; n++){
+			voltage[n] = Double.NaN;
+		}
+		if(count > nodeCount){
+			nodeCount = count;
+			incStart = null;
+		}
+	}
+
+	/**
+	 * Make room for at least capacity resistors, so the arrays don't move while they are added.
+	 */
+	public void reserveResistors(int capacity){
+		if(capacity > ohms.length){
+			growResistors(capacity);
+		}
+	}
+
+	public int getResistorCount(){
+		return resistorCount;
+	}
+
+	public int getNodeCount(){
+		return nodeCount;
+	}
+
+	public double getOhms(int r){
+		return ohms[r];
+	}
+
+	public void setOhms(int r, double o){
+		ohms[r] = o;
+	}
+
+	public double getAmps(int r){
+		return amps[r];
+	}
+
+	public void setAmps(int r, double a){
+		amps[r] = a;
+	}
+
+	public double getWatts(int r){
+		return watts[r];
+	}
+
+	public void setWatts(int r, double w){
+		watts[r] = w;
+	}
+
+	public double getVoltageDrop(int r){
+		return vdrop[r];
+	}
+
+	public void setVoltageDrop(int r, double v){
+		vdrop[r] = v;
+	}
+
+	public int getNodeA(int r){
+		return nodeA[r];
+	}
+
+	public int getNodeB(int r){
+		return nodeB[r];
+	}
+
+	/**
+	 * Connect a resistor between two node ids, -1 leaves that end unconnected.
+	 */
+	public void setEndpoints(int r, int a, int b){
+		nodeA[r] = a;
+		nodeB[r] = b;
+		incStart = null;
+	}
+
+	public double getVoltage(int n){
+		return voltage[n];
+	}
+
+	public void setVoltage(int n, double v){
+		voltage[n] = v;
+	}
+
+	/**
+	 * Fill in a resistor's voltage drop, amps and watts from the voltages at its nodes.
+	 */
+	public void applyOhmsLaw(int r){
+		double drop = voltage[nodeA[r]] - voltage[nodeB[r]];
+		double a = drop/ohms[r];
+		vdrop[r] = drop;
+		amps[r] = a;
+		watts[r] = drop*a;
+	}
+
+	/**
+	 * The raw arrays, for solver loops. They are only good until the graph grows.
+	 */
+	public double[] getOhmsArray(){
+		return ohms;
+	}
+
+	public double[] getAmpsArray(){
+		return amps;
+	}
+
+	public double[] getWattsArray(){
+		return watts;
+	}
+
+	public double[] getVoltageDropArray(){
+		return vdrop;
+	}
+
+	public int[] getNodeAArray(){
+		return nodeA;
+	}
+
+	public int[] getNodeBArray(){
+		return nodeB;
+	}
+
+	public double[] getVoltageArray(){
+		return voltage;
+	}
+
+	/**
+	 * Where each node's resistors start in getIncident(), getIncidentStart()[nodeCount] is the total.
+	 * Resistors with an unconnected end are left out.
+	 */
+	public int[] getIncidentStart(){
+		buildIncidence();
+		return incStart;
+	}
+
+	/**
+	 * The resistor slots at each node, a resistor with both ends on one node is listed twice there.
+	 */
+	public int[] getIncident(){
+		buildIncidence();
+		return incident;
+	}
+
+	/**
+	 * The number of resistors at a node.
+	 */
+	public int getDegree(int n){
+		buildIncidence();
+		return incStart[n+1] - incStart[n];
+	}
+
+	/**
+	 * Tell the graph a view's node references moved, so the owner has to resync the endpoints.
+	 */
+	public void markEndpointsStale(){
+		endpointsStale = true;
+	}
+
+	public boolean areEndpointsStale(){
+		return endpointsStale;
+	}
+
+	public void clearEndpointsStale(){
+		endpointsStale = false;
+	}
+
+	/* Private Methods */
+	private void growResistors(int capacity){
+		ohms = grow(ohms, capacity);
+		amps = grow(amps, capacity);
+		watts = grow(watts, capacity);
+		vdrop = grow(vdrop, capacity);
+		nodeA = grow(nodeA, capacity);
+		nodeB = grow(nodeB, capacity);
+	}
+
+	private double[] grow(double[] old, int capacity){
+		double[] grown = new double[capacity];
+		System.arraycopy(old, 0, grown, 0, resistorCount);
+		return grown;
+	}
+
+	private int[] grow(int[] old, int capacity){
+		int[] grown = new int[capacity];
+		System.arraycopy(old, 0, grown, 0, resistorCount);
+		return grown;
+	}
+
+	private void buildIncidence(){
+		if(incStart != null){
+			return;
+		}
+		int[] start = new int[nodeCount+1];
+		for(int r = 0; r < resistorCount; r++){
+			if(nodeA[r] != -1 && nodeB[r] != -1){
+				start[nodeA[r]+1]++;
+				start[nodeB[r]+1]++;
+			}
+		}
+		for(int n = 0; n < nodeCount; n++){
+			start[n+1] += start[n];
+		}
+		int[] next = new int[nodeCount];
+		System.arraycopy(start, 0, next, 0, nodeCount);
+		int[] inc = new int[start[nodeCount]];
+		for(int r = 0; r < resistorCount; r++){
+			if(nodeA[r] != -1 && nodeB[r] != -1){
+				inc[next[nodeA[r]]++] = r;
+				inc[next[nodeB[r]]++] = r;
+			}
+		}
+		incident = inc;
+		incStart = start;
+	}
+}
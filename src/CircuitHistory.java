@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+
+/**
+ * Every step of a circuit's reduction, from the circuit as it was built down to its equivalent resistor,
+ * for stepping through a reduction one combine at a time.
+ * simplifyStepwise() keeps each step as a full copy of the circuit, so N steps of an N resistor circuit
+ * hold O(N^2) nodes and resistors. Here each step's nodes and resistors are PersistentIntMaps keyed by id,
+ * a step is the one before with its combine's resistors and node taken out and the result put in,
+ * and shares everything else with it. N steps cost O(N log N), and any step can be looked at directly.
+ * The resistors and nodes are the circuit's own, and the ones the reducer made, never copies. Nodes keep
+ * their voltages through a reduction and resistors their amps, so they read the same in every step.
+ * @author Isaac Assegai
+ *
+ */
+public class CircuitHistory {
+	/* Member Variables */
+	private Circuit circuit; //The circuit that was reduced, step 0.
+	private ArrayList<Step>steps;
+
+	/**
+	 * Constructor - Record the steps of a circuit that's been simplified.
+	 */
+	public CircuitHistory(Circuit circuit){
+		ArrayList<Replacement>log = circuit.getReductionLog();
+		if(log == null){
+			throw new IllegalStateException("circuit " + circuit.getName() + " hasn't been simplified");
+		}
+		this.circuit = circuit;
+		steps = new ArrayList<Step>(log.size()+1);
+		PersistentIntMap<Resistor>resistors = new PersistentIntMap<Resistor>();
+		PersistentIntMap<Node>nodes = new PersistentIntMap<Node>();
+		for(int i = 0; i < circuit.getResistors().size(); i++){
+			Resistor r = circuit.getResistors().get(i);
+			resistors = resistors.put(r.getId(), r);
+		}
+		for(int i = 0; i < circuit.getNodes().size(); i++){
+			Node n = circuit.getNodes().get(i);
+			nodes = nodes.put(n.getId(), n);
+		}
+		steps.add(new Step(0, null, resistors, nodes));
+		for(int i = 0; i < log.size(); i++){
+			Replacement replacement = log.get(i);
+			if(replacement.kind == Replacement.STAR){
+				for(int j = 0; j < replacement.star.length; j++){
+					resistors = resistors.remove(replacement.star[j].getId());
+				}
+				for(int j = 0; j < replacement.mesh.length; j++){
+					resistors = resistors.put(replacement.mesh[j].getId(), replacement.mesh[j]);
+				}
+			}else if(replacement.kind == Replacement.INSTANCE){
+				SubCircuitInstance instance = replacement.instance;
+				for(int k = 0; k < instance.count; k++){
+					resistors = resistors.remove(circuit.getResistors().get(instance.first+k).getId());
+				}
+				for(int j = 0; j < instance.nodeIds.length; j++){
+					if(j != instance.sub.getPlus() && j != instance.sub.getMinus()){
+						nodes = nodes.remove(instance.nodeIds[j]);
+					}
+				}
+				resistors = resistors.put(replacement.result.getId(), replacement.result);
+			}else{
+				resistors = resistors.remove(replacement.a.getId());
+				if(replacement.b != null){
+					resistors = resistors.remove(replacement.b.getId());
+				}
+				if(replacement.result != null){
+					resistors = resistors.put(replacement.result.getId(), replacement.result);
+				}
+			}
+			if(replacement.node != null){
+				nodes = nodes.remove(replacement.node.getId());
+			}
+			steps.add(new Step(i+1, replacement, resistors, nodes));
+		}
+	}
+
+	/* Public Methods */
+
+	/**
+	 * The number of steps, one more than the number of combines.
+	 */
+	public int size(){
+		return steps.size();
+	}
+
+	/**
+	 * @param i 0 is the circuit as it was built, size()-1 is the last step.
+	 */
+	public Step get(int i){
+		return steps.get(i);
+	}
+
+	public Circuit getCircuit(){
+		return circuit;
+	}
+
+	/* Public Classes */
+
+	/**
+	 * One step of a reduction, the circuit as it was after its first getIndex() combines.
+	 */
+	public class Step {
+		private int index;
+		private Replacement made; //The combine that made this step, null for step 0.
+		private PersistentIntMap<Resistor>resistors; //resistor id -> resistor
+		private PersistentIntMap<Node>nodes; //node id -> node
+
+		private Step(int index, Replacement made, PersistentIntMap<Resistor>resistors, PersistentIntMap<Node>nodes){
+			this.index = index;
+			this.made = made;
+			this.resistors = resistors;
+			this.nodes = nodes;
+		}
+
+		public int getIndex(){
+			return index;
+		}
+
+		public Replacement getMade(){
+			return made;
+		}
+
+		public int getResistorCount(){
+			return resistors.size();
+		}
+
+		public int getNodeCount(){
+			return nodes.size();
+		}
+
+		/**
+		 * The resistor with this id, or null if it isn't in this step.
+		 */
+		public Resistor getResistor(int id){
+			return resistors.get(id);
+		}
+
+		/**
+		 * The node with this id, or null if it isn't in this step.
+		 */
+		public Node getNode(int id){
+			return nodes.get(id);
+		}
+
+		/**
+		 * This step's resistors in the order they were made, a new list each call.
+		 */
+		public ArrayList<Resistor>getResistors(){
+			return resistors.values();
+		}
+
+		/**
+		 * This step's nodes in id order, a new list each call.
+		 */
+		public ArrayList<Node>getNodes(){
+			return nodes.values();
+		}
+
+		/**
+		 * The resistors in this step that connect to a node, nodes only know their connections
+		 * in the circuit they were built in, so this looks through every resistor.
+		 */
+		public ArrayList<Resistor>getConnections(Node node){
+			ArrayList<Resistor>all = resistors.values();
+			ArrayList<Resistor>connections = new ArrayList<Resistor>();
+			for(int i = 0; i < all.size(); i++){
+				Resistor r = all.get(i);
+				if(r.getNodeA().getId() == node.getId() || r.getNodeB().getId() == node.getId()){
+					connections.add(r);
+				}
+			}
+			return connections;
+		}
+
+		/**
+		 * Print this step the way Circuit.print() does.
+		 */
+		public void print(){
+			System.out.println("C: " + circuit.getName() + " step " + index);
+			ArrayList<Node>stepNodes = getNodes();
+			ArrayList<Resistor>stepResistors = getResistors();
+			for(int i = 0; i < stepNodes.size(); i++){
+				Node n = stepNodes.get(i);
+				System.out.format("%-14s", "Node: " + n.getName()+" ");
+				System.out.print("V: " + n.getVoltage() + " ");
+				System.out.format("%1s", "Connections: ");
+				for(int j = 0; j < stepResistors.size(); j++){
+					Resistor r = stepResistors.get(j);
+					if(r.getNodeA().getId() == n.getId() || r.getNodeB().getId() == n.getId()){
+						System.out.format("%5s", r.getName());
+					}
+				}
+				System.out.println();
+			}
+			for(int i = 0; i < stepResistors.size(); i++){
+				Resistor r = stepResistors.get(i);
+				System.out.format("%-1s", "Resistor: ");
+				System.out.format("%6s", r.getName()+" ");
+				System.out.format("%-2s", "Ohm: ");
+				System.out.format("%8s", r.getOhms()+" ");
+				System.out.format("%-2s", "Amp: ");
+				System.out.format("%8s", r.getAmps()+" ");
+				System.out.format("%-2s", "NodeA: ");
+				System.out.format("%8s", r.getNodeA().getName()+" ");
+				System.out.format("%-2s", "NodeB: ");
+				System.out.format("%8s", r.getNodeB().getName()+"\n");
+			}
+			System.out.println();
+		}
+	}
+}
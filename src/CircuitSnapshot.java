@@ -0,0 +1,375 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A circuit saved as flat little-endian arrays, so it can be mapped straight back into memory.
+ * The layout, every array starts on an 8 byte boundary:
+ *   int magic 'CSNP', int version, int flags (1 = solved), int nodeCount, int resistorCount,
+ *   int supplyCount, then for each supply: int +node, int -node, double volts,
+ *   int[resistorCount] nodeA, int[resistorCount] nodeB, (padded to 8 bytes)
+ *   double[resistorCount] ohms,
+ *   and when solved: double[nodeCount] voltage, double[resistorCount] amps.
+ * Opening a snapshot maps the file and reads values out of the mapping on demand, nothing is
+ * copied and no Node or Resistor objects are made. toGraph() copies the arrays into a
+ * CircuitGraph in bulk for the solvers, toCircuit() builds a full Circuit when one is needed.
+ * Version 1 snapshots, with room for one supply, are still read. Their header was the first five
+ * ints, then int supply +node, int supply -node (-1 for no supply), int padding, double supply volts.
+ * Node labels and element names are not saved, nodes come back as N0, N1...
+ * @author Isaac Assegai
+ *
+ */
+public class CircuitSnapshot {
+	/* Member Variables */
+	public static final int MAGIC = 0x504E5343; //"CSNP" read little-endian
+	public static final int VERSION = 2;
+	private static final int SOLVED = 1;
+	private static final int HEADER = 24; //Before the supply table.
+	private static final int SUPPLY = 16; //Bytes per supply in the table.
+	private static final int HEADER_V1 = 40;
+
+	private ByteBuffer data;
+	private int nodeCount;
+	private int resistorCount;
+	private int[] pos; //Each supply's +node.
+	private int[] neg;
+	private double[] volts;
+	private boolean solved;
+	private int nodeAAt; //Byte offsets of each array.
+	private int nodeBAt;
+	private int ohmsAt;
+	private int voltageAt;
+	private int ampsAt;
+
+	/**
+	 * Constructor - Read the header of a snapshot that is already in memory.
+	 * The snapshot starts at index 0 of the buffer and only what's up to its limit is read.
+	 */
+	public CircuitSnapshot(ByteBuffer buffer){
+		data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if(data.limit() < HEADER || data.getInt(0) != MAGIC){
+			throw new IllegalArgumentException("not a circuit snapshot");
+		}
+		int version = data.getInt(4);
+		if(version != 1 && version != VERSION){
+			throw new IllegalArgumentException("circuit snapshot version " + version + " isn't supported, only 1 and " + VERSION);
+		}
+		solved = (data.getInt(8) & SOLVED) != 0;
+		nodeCount = data.getInt(12);
+		resistorCount = data.getInt(16);
+		if(nodeCount < 0 || resistorCount < 0){
+			throw new IllegalArgumentException("circuit snapshot has a bad header");
+		}
+		long arraysAt;
+		if(version == 1){
+			if(data.limit() < HEADER_V1){
+				throw new IllegalArgumentException("circuit snapshot is cut short in its header");
+			}
+			boolean supplied = data.getInt(20) != -1 || data.getInt(24) != -1;
+			pos = supplied ? new int[]{data.getInt(20)} : new int[0];
+			neg = supplied ? new int[]{data.getInt(24)} : new int[0];
+			volts = supplied ? new double[]{data.getDouble(32)} : new double[0];
+			arraysAt = HEADER_V1;
+		}else{
+			int supplies = data.getInt(20);
+			arraysAt = HEADER + (long)SUPPLY*supplies;
+			if(supplies < 0 || arraysAt > data.limit()){
+				throw new IllegalArgumentException("circuit snapshot has a bad supply table");
+			}
+			pos = new int[supplies];
+			neg = new int[supplies];
+			volts = new double[supplies];
+			for(int k = 0; k < supplies; k++){
+				pos[k] = data.getInt(HEADER + SUPPLY*k);
+				neg[k] = data.getInt(HEADER + SUPPLY*k + 4);
+				volts[k] = data.getDouble(HEADER + SUPPLY*k + 8);
+			}
+		}
+		for(int k = 0; k < pos.length; k++){
+			if(pos[k] < 0 || pos[k] >= nodeCount || neg[k] < 0 || neg[k] >= nodeCount){
+				throw new IllegalArgumentException("circuit snapshot's supply " + k + " connects to a node that doesn't exist");
+			}
+		}
+		long ohmsEnd = ((arraysAt + 8L*resistorCount + 7) & ~7L) + 8L*resistorCount;
+		long size = solved ? ohmsEnd + 8L*nodeCount + 8L*resistorCount : ohmsEnd;
+		if(size > data.limit()){
+			throw new IllegalArgumentException("circuit snapshot is cut short, it needs " + size + " bytes but has " + data.limit());
+		}
+		//everything fits in the buffer, so the offsets fit in an int
+		nodeAAt = (int)arraysAt;
+		nodeBAt = nodeAAt + 4*resistorCount;
+		ohmsAt = align(nodeBAt + 4*resistorCount);
+		voltageAt = ohmsAt + 8*resistorCount;
+		ampsAt = voltageAt + 8*nodeCount;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Map a snapshot file, the mapping stays valid after the file is closed.
+	 */
+	public static CircuitSnapshot open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try{
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new CircuitSnapshot(map);
+		}finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Save a circuit, with its node voltages and resistor amps if withResults is true.
+	 */
+	public static void write(Circuit circuit, Path path, boolean withResults) throws IOException {
+		ArrayList<PowerSupply>supplies = new ArrayList<PowerSupply>();
+		for(PowerSupply supply : circuit.getSupplies()){
+			if(supply.getPosNode() != null && supply.getNegNode() != null){
+				supplies.add(supply);
+			}
+		}
+		int[] p = new int[supplies.size()];
+		int[] n = new int[supplies.size()];
+		double[] v = new double[supplies.size()];
+		for(int k = 0; k < p.length; k++){
+			p[k] = supplies.get(k).getPosNode().getId();
+			n[k] = supplies.get(k).getNegNode().getId();
+			v[k] = supplies.get(k).getVoltage();
+		}
+		write(circuit.getGraph(), p, n, v, path, withResults);
+	}
+
+	/**
+	 * Save a bare graph, with a supply between two of its nodes, or none if pos is -1.
+	 */
+	public static void write(CircuitGraph graph, int pos, int neg, double volts, Path path, boolean withResults) throws IOException {
+		if(pos == -1){
+			write(graph, new int[0], new int[0], new double[0], path, withResults);
+		}else{
+			write(graph, new int[]{pos}, new int[]{neg}, new double[]{volts}, path, withResults);
+		}
+	}
+
+	/**
+	 * Save a bare graph, with supply k between nodes pos[k] and neg[k].
+	 */
+	public static void write(CircuitGraph graph, int[] pos, int[] neg, double[] volts, Path path, boolean withResults) throws IOException {
+		int r = graph.getResistorCount();
+		int nodes = graph.getNodeCount();
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			out.putInt(MAGIC).putInt(VERSION).putInt(withResults ? SOLVED : 0).putInt(nodes).putInt(r);
+			out.putInt(pos.length);
+			for(int k = 0; k < pos.length; k++){
+				room(channel, out, SUPPLY);
+				out.putInt(pos[k]).putInt(neg[k]).putDouble(volts[k]);
+			}
+			long written = HEADER + (long)SUPPLY*pos.length;
+			int[] nodeA = graph.getNodeAArray();
+			int[] nodeB = graph.getNodeBArray();
+			for(int i = 0; i < r; i++){
+				room(channel, out, 4);
+				out.putInt(nodeA[i]);
+			}
+			for(int i = 0; i < r; i++){
+				room(channel, out, 4);
+				out.putInt(nodeB[i]);
+			}
+			written += 8L*r;
+			if(written % 8 != 0){
+				room(channel, out, 4);
+				out.putInt(0);
+			}
+			putDoubles(channel, out, graph.getOhmsArray(), r);
+			if(withResults){
+				putDoubles(channel, out, graph.getVoltageArray(), nodes);
+				putDoubles(channel, out, graph.getAmpsArray(), r);
+			}
+			out.flip();
+			while(out.hasRemaining()){
+				channel.write(out);
+			}
+		}finally{
+			channel.close();
+		}
+	}
+
+	public int getNodeCount(){
+		return nodeCount;
+	}
+
+	public int getResistorCount(){
+		return resistorCount;
+	}
+
+	public int getSupplyCount(){
+		return pos.length;
+	}
+
+	/**
+	 * The first supply's +node, -1 if the circuit had no supply.
+	 */
+	public int getPosNode(){
+		return pos.length == 0 ? -1 : pos[0];
+	}
+
+	public int getNegNode(){
+		return neg.length == 0 ? -1 : neg[0];
+	}
+
+	public double getVolts(){
+		return volts.length == 0 ? 0 : volts[0];
+	}
+
+	public int getPosNode(int k){
+		return pos[k];
+	}
+
+	public int getNegNode(int k){
+		return neg[k];
+	}
+
+	public double getVolts(int k){
+		return volts[k];
+	}
+
+	/**
+	 * Were the node voltages and resistor amps saved.
+	 */
+	public boolean isSolved(){
+		return solved;
+	}
+
+	public int getNodeA(int r){
+		return data.getInt(nodeAAt + 4*r);
+	}
+
+	public int getNodeB(int r){
+		return data.getInt(nodeBAt + 4*r);
+	}
+
+	public double getOhms(int r){
+		return data.getDouble(ohmsAt + 8*r);
+	}
+
+	/**
+	 * A node's saved voltage, NaN if the snapshot wasn't solved.
+	 */
+	public double getVoltage(int n){
+		return solved ? data.getDouble(voltageAt + 8*n) : Double.NaN;
+	}
+
+	/**
+	 * A resistor's saved amps, NaN if the snapshot wasn't solved.
+	 */
+	public double getAmps(int r){
+		return solved ? data.getDouble(ampsAt + 8*r) : Double.NaN;
+	}
+
+	/**
+	 * Copy the snapshot into a graph, with bulk copies out of the mapping.
+	 * The voltage drops and watts of a solved snapshot are worked out from its amps.
+	 */
+	public CircuitGraph toGraph(){
+		CircuitGraph graph = new CircuitGraph(resistorCount, nodeCount);
+		graph.ensureNodes(nodeCount);
+		for(int i = 0; i < resistorCount; i++){
+			graph.addResistor(0);
+		}
+		//the incidence isn't built yet, so the endpoints can be filled in directly
+		view(nodeAAt).asIntBuffer().get(graph.getNodeAArray(), 0, resistorCount);
+		view(nodeBAt).asIntBuffer().get(graph.getNodeBArray(), 0, resistorCount);
+		double[] ohms = graph.getOhmsArray();
+		view(ohmsAt).asDoubleBuffer().get(ohms, 0, resistorCount);
+		if(solved){
+			view(voltageAt).asDoubleBuffer().get(graph.getVoltageArray(), 0, nodeCount);
+			double[] amps = graph.getAmpsArray();
+			double[] vdrop = graph.getVoltageDropArray();
+			double[] watts = graph.getWattsArray();
+			view(ampsAt).asDoubleBuffer().get(amps, 0, resistorCount);
+			for(int i = 0; i < resistorCount; i++){
+				vdrop[i] = amps[i]*ohms[i];
+				watts[i] = vdrop[i]*amps[i];
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Build a full Circuit, with Node and Resistor objects, from the snapshot.
+	 */
+	public Circuit toCircuit(){
+		Circuit circuit = new Circuit();
+		Node[] nodes = new Node[nodeCount];
+		for(int n = 0; n < nodeCount; n++){
+			nodes[n] = circuit.newNode();
+		}
+		for(int r = 0; r < resistorCount; r++){
+			int a = getNodeA(r);
+			int b = getNodeB(r);
+			if(a < 0 || a >= nodeCount || b < 0 || b >= nodeCount){
+				throw new IllegalArgumentException("resistor " + r + " in the snapshot connects to a node that doesn't exist");
+			}
+			circuit.newResistor(getOhms(r), nodes[a], nodes[b]);
+		}
+		for(int k = 0; k < pos.length; k++){
+			PowerSupply s = new PowerSupply(volts[k]);
+			s.setPosNode(nodes[pos[k]]);
+			s.setNegNode(nodes[neg[k]]);
+			nodes[pos[k]].addConnection(s);
+			nodes[neg[k]].addConnection(s);
+			circuit.addSupply(s);
+		}
+		if(solved){
+			CircuitGraph graph = circuit.getGraph();
+			for(int n = 0; n < nodeCount; n++){
+				graph.setVoltage(n, getVoltage(n));
+			}
+			for(int r = 0; r < resistorCount; r++){
+				double a = getAmps(r);
+				double drop = a*graph.getOhms(r);
+				graph.setAmps(r, a);
+				graph.setVoltageDrop(r, drop);
+				graph.setWatts(r, drop*a);
+			}
+		}
+		return circuit;
+	}
+
+	/* Private Methods */
+	private static int align(int offset){
+		return (offset + 7) & ~7;
+	}
+
+	private ByteBuffer view(int offset){
+		ByteBuffer b = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		b.position(offset);
+		return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Make sure the buffer has room, writing it out if it doesn't.
+	 */
+	private static void room(FileChannel channel, ByteBuffer out, int bytes) throws IOException {
+		if(out.remaining() < bytes){
+			out.flip();
+			while(out.hasRemaining()){
+				channel.write(out);
+			}
+			out.clear();
+		}
+	}
+
+	private static void putDoubles(FileChannel channel, ByteBuffer out, double[] values, int count) throws IOException {
+		for(int i = 0; i < count; i++){
+			room(channel, out, 8);
+			out.putDouble(values[i]);
+		}
+	}
+}
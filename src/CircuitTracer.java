@@ -0,0 +1,30 @@
+/**
+ * A CircuitTracer is told about every step a circuit takes while it is being simplified.
+ * Circuits use NONE unless someone sets a tracer, so solving is silent by default.
+ * See TraceBuffer for a tracer that records each combine, and ConsoleTracer for one that prints.
+ * @author Isaac Assegai
+ *
+ */
+public interface CircuitTracer {
+	
+	/** The default, ignores everything. */
+	public static final CircuitTracer NONE = new CircuitTracer(){
+		public void combined(Replacement replacement){
+		}
+		
+		public void stepped(Circuit circuit){
+		}
+	};
+	
+	/**
+	 * Two resistors were combined, replacement.result is the resistor that replaced them.
+	 * Or, see replacement.kind, a node was eliminated with the star-mesh transform, a dangling resistor was dropped
+	 * or a whole sub-circuit copy went in as its cached equivalent.
+	 */
+	public void combined(Replacement replacement);
+	
+	/**
+	 * simplifyStepwise() made a new, one step simpler, copy of the circuit.
+	 */
+	public void stepped(Circuit circuit);
+}
@@ -0,0 +1,507 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a circuit with nodal analysis like NodalSolver, but iteratively with the preconditioned
+ * conjugate gradient method instead of factoring the matrix. A factorization fills in, on a
+ * grid of millions of nodes it runs out of memory, while this only ever holds the matrix itself
+ * and a handful of vectors, O(nodes + resistors).
+ * Both supply nodes are held at their voltages, every other node the supply reaches is an
+ * unknown. The matrix is the graph Laplacian over the unknowns in compressed sparse row form:
+ * the diagonal on its own, and each row's off diagonal entries sorted by column with parallel
+ * resistors already summed.
+ * The preconditioner is one of:
+ *   JACOBI               Divide by the diagonal, cheap and every step runs on all threads.
+ *   INCOMPLETE_CHOLESKY  IC(0), L*L' with the matrix's own sparsity. Far fewer iterations on
+ *                        meshes, but its triangular solves run on one thread.
+ * The matrix-vector product and vector updates are split into blocks of rows run on a
+ * ForkJoinPool. Each block's sums are added up in block order, so the answer doesn't depend
+ * on how the threads were scheduled.
+ * It stops when ||b - A*x|| <= tolerance*||b||, or after maxIterations.
+ * @author Isaac Assegai
+ *
+ */
+public class ConjugateGradientSolver {
+	/* Member Variables */
+	public static final int JACOBI = 0;
+	public static final int INCOMPLETE_CHOLESKY = 1;
+	private static final int ROWS_PER_BLOCK = 8192; //Smaller blocks aren't worth a task.
+	private static final int MAX_BLOCKS = 256;
+	/* The passes over the row blocks. */
+	private static final int MULTIPLY = 0; //q = A*p, sumA = p.q
+	private static final int UPDATE = 1; //x += alpha*p, r -= alpha*q, sumA = r.r
+	private static final int UPDATE_JACOBI = 2; //and z = r/diag, sumB = r.z
+	private static final int DIRECTION = 3; //p = z + beta*p
+
+	private CircuitGraph graph; //The circuit we are solving.
+	private int pos; //The node id of the supply's +node.
+	private int neg; //The node id of the supply's -node.
+	private double volts; //The supply voltage.
+	private double tolerance;
+	private int maxIterations; //0 means as many as there are unknowns.
+	private int preconditioner;
+	private ForkJoinPool pool;
+
+	private int size; //The number of unknowns.
+	private int[] row; //The row of each node, -1 for the supply nodes and floating nodes.
+	private double[] diag;
+	private int[] rowStart; //Row i's off diagonal entries are col/val[rowStart[i]..rowStart[i+1]-1].
+	private int[] col;
+	private double[] val;
+	private double[] b; //The right hand side, the current the +node pushes into its neighbours.
+	private double[] inverse; //1/diag, for JACOBI.
+	private double[] lowerVal; //IC(0)'s L, the entries of val below the diagonal.
+	private double[] lowerDiag;
+
+	/* The vectors of one solve, and each block's partial sums. */
+	private double[] x;
+	private double[] r;
+	private double[] z;
+	private double[] p;
+	private double[] q;
+	private int blocks;
+	private double[] sumA;
+	private double[] sumB;
+	private double alpha;
+	private double beta;
+
+	private int iterations; //How many iterations the last solve() took.
+	private double residual; //||b - A*x||/||b|| when it stopped.
+	private double supplyAmps;
+
+	/**
+	 * Constructor - Get ready to solve a circuit.
+	 */
+	public ConjugateGradientSolver(Circuit circuit){
+		if(circuit.getSupplies().size() > 1){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has more than one power supply, use solveNodal()");
+		}
+		PowerSupply supply = circuit.getSupply();
+		if(supply == null || supply.getPosNode() == null || supply.getNegNode() == null){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has no connected power supply");
+		}
+		init(circuit.getGraph(), supply.getPosNode().getId(), supply.getNegNode().getId(), supply.getVoltage());
+	}
+
+	/**
+	 * Constructor - Get ready to solve a bare graph, with a supply between two of its nodes.
+	 */
+	public ConjugateGradientSolver(CircuitGraph graph, int pos, int neg, double volts){
+		init(graph, pos, neg, volts);
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Stop once the residual is this small relative to the right hand side, 1e-10 by default.
+	 */
+	public void setTolerance(double tolerance){
+		if(!(tolerance > 0)){
+			throw new IllegalArgumentException("the tolerance has to be positive, not " + tolerance);
+		}
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Give up after this many iterations, 0 (the default) means as many as there are unknowns.
+	 */
+	public void setMaxIterations(int maxIterations){
+		if(maxIterations < 0){
+			throw new IllegalArgumentException("the iteration cap can't be negative, not " + maxIterations);
+		}
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * JACOBI (the default) or INCOMPLETE_CHOLESKY.
+	 */
+	public void setPreconditioner(int preconditioner){
+		if(preconditioner != JACOBI && preconditioner != INCOMPLETE_CHOLESKY){
+			throw new IllegalArgumentException("no preconditioner " + preconditioner);
+		}
+		this.preconditioner = preconditioner;
+	}
+
+	/**
+	 * The pool the row blocks run on, the common pool by default.
+	 */
+	public void setPool(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * Solves the circuit and writes the results back into the graph, even if it didn't converge.
+	 * Nodes that have no path to the supply through resistors are floating,
+	 * their voltage is left unknown and their resistors carry no current.
+	 * @return True if the residual got under the tolerance.
+	 */
+	public boolean solve(){
+		assemble();
+		int cap = maxIterations == 0 ? Math.max(1, size) : maxIterations;
+		if(preconditioner == INCOMPLETE_CHOLESKY){
+			factor();
+		}
+		x = new double[size];
+		r = new double[size];
+		z = new double[size];
+		p = new double[size];
+		q = new double[size];
+		blocks = Math.max(1, Math.min(MAX_BLOCKS, size/ROWS_PER_BLOCK));
+		sumA = new double[blocks];
+		sumB = new double[blocks];
+
+		//x starts at 0, so r = b
+		System.arraycopy(b, 0, r, 0, size);
+		double bb = 0;
+		for(int i = 0; i < size; i++){
+			bb += b[i]*b[i];
+		}
+		double goal = tolerance*tolerance*bb;
+		double rz = precondition();
+		System.arraycopy(z, 0, p, 0, size);
+		double rr = bb;
+		iterations = 0;
+		while(rr > goal && iterations < cap){
+			run(MULTIPLY);
+			double pq = total(sumA);
+			if(!(pq > 0)){
+				break; //p is 0, or rounding has made it useless
+			}
+			alpha = rz/pq;
+			run(preconditioner == JACOBI ? UPDATE_JACOBI : UPDATE);
+			rr = total(sumA);
+			double next = preconditioner == JACOBI ? total(sumB) : precondition();
+			beta = next/rz;
+			rz = next;
+			run(DIRECTION);
+			iterations++;
+		}
+		residual = bb == 0 ? 0 : Math.sqrt(rr/bb);
+		writeBack();
+		x = r = z = p = q = null;
+		return rr <= goal;
+	}
+
+	public int getIterations(){
+		return iterations;
+	}
+
+	/**
+	 * ||b - A*x||/||b|| when the last solve() stopped, as the recurrence tracks it.
+	 */
+	public double getResidual(){
+		return residual;
+	}
+
+	/**
+	 * The current flowing out of the supply's +node, valid after solve().
+	 */
+	public double getSupplyAmps(){
+		return supplyAmps;
+	}
+
+	/* Private Methods */
+	private void init(CircuitGraph graph, int pos, int neg, double volts){
+		this.graph = graph;
+		this.pos = pos;
+		this.neg = neg;
+		this.volts = volts;
+		tolerance = 1e-10;
+		maxIterations = 0;
+		preconditioner = JACOBI;
+		pool = ForkJoinPool.commonPool();
+		supplyAmps = 0;
+	}
+
+	/**
+	 * Number the unknowns and build the matrix and right hand side.
+	 */
+	private void assemble(){
+		int n = graph.getNodeCount();
+		int rc = graph.getResistorCount();
+		double[] ohms = graph.getOhmsArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		for(int i = 0; i < rc; i++){
+			if(nodeA[i] == -1 || nodeB[i] == -1){
+				throw new IllegalStateException("resistor R" + i + " is not connected at both ends");
+			}
+			if(!(ohms[i] > 0)){
+				throw new IllegalArgumentException("resistor R" + i + " has " + ohms[i] + " ohms");
+			}
+		}
+		int[] start = graph.getIncidentStart();
+		int[] incident = graph.getIncident();
+
+		//breadth first search out from the -node, what it doesn't reach is floating
+		boolean[] reached = new boolean[n];
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = neg;
+		reached[neg] = true;
+		while(head < tail){
+			int u = queue[head++];
+			for(int k = start[u]; k < start[u+1]; k++){
+				int s = incident[k];
+				int w = nodeA[s] == u ? nodeB[s] : nodeA[s];
+				if(!reached[w]){
+					reached[w] = true;
+					queue[tail++] = w;
+				}
+			}
+		}
+		if(!reached[pos]){
+			throw new IllegalStateException("the supply's +node and -node are not connected through any resistors");
+		}
+		row = new int[n];
+		size = 0;
+		for(int i = 0; i < n; i++){
+			row[i] = (reached[i] && i != neg && i != pos) ? size++ : -1;
+		}
+
+		//rows are numbered in node order, so going through the nodes in order and adding each one
+		//to its neighbours' rows leaves every row sorted, with parallel resistors side by side
+		diag = new double[size];
+		b = new double[size];
+		rowStart = new int[size+1];
+		for(int u = 0; u < n; u++){
+			if(row[u] != -1){
+				rowStart[row[u]+1] = start[u+1] - start[u];
+			}
+		}
+		for(int i = 0; i < size; i++){
+			rowStart[i+1] += rowStart[i];
+		}
+		int[] fill = new int[size];
+		System.arraycopy(rowStart, 0, fill, 0, size);
+		col = new int[rowStart[size]];
+		val = new double[rowStart[size]];
+		for(int u = 0; u < n; u++){
+			for(int k = start[u]; k < start[u+1]; k++){
+				int s = incident[k];
+				int w = nodeA[s] == u ? nodeB[s] : nodeA[s];
+				if(w == u || row[w] == -1){
+					continue;
+				}
+				int i = row[w];
+				double g = 1/ohms[s];
+				diag[i] += g;
+				if(row[u] == -1){
+					if(u == pos){
+						b[i] += g*volts;
+					}
+				}else if(fill[i] > rowStart[i] && col[fill[i]-1] == row[u]){
+					val[fill[i]-1] -= g;
+				}else{
+					col[fill[i]] = row[u];
+					val[fill[i]++] = -g;
+				}
+			}
+		}
+
+		//close up the gaps the merged and left out entries left
+		int nz = 0;
+		for(int i = 0; i < size; i++){
+			int from = rowStart[i];
+			rowStart[i] = nz;
+			for(int k = from; k < fill[i]; k++){
+				col[nz] = col[k];
+				val[nz++] = val[k];
+			}
+		}
+		rowStart[size] = nz;
+		if(preconditioner == JACOBI){
+			inverse = new double[size];
+			for(int i = 0; i < size; i++){
+				inverse[i] = 1/diag[i];
+			}
+		}
+	}
+
+	/**
+	 * IC(0): L has the same entries as the matrix below the diagonal, row by row
+	 * L(i,k) = (A(i,k) - sum over j < k of L(i,j)*L(k,j))/L(k,k), and L(i,i) = sqrt(A(i,i) - sum of L(i,j)^2).
+	 * Row i's entries are scattered into a dense array so each sum is a walk down row k.
+	 */
+	private void factor(){
+		lowerVal = new double[val.length];
+		lowerDiag = new double[size];
+		double[] dense = new double[size];
+		for(int i = 0; i < size; i++){
+			double d = diag[i];
+			for(int e = rowStart[i]; e < rowStart[i+1] && col[e] < i; e++){
+				int k = col[e];
+				double s = val[e];
+				for(int f = rowStart[k]; f < rowStart[k+1] && col[f] < k; f++){
+					s -= dense[col[f]]*lowerVal[f];
+				}
+				s /= lowerDiag[k];
+				lowerVal[e] = s;
+				dense[k] = s;
+				d -= s*s;
+			}
+			//the matrix is diagonally dominant so this holds in exact arithmetic, fall back to the diagonal if rounding breaks it
+			lowerDiag[i] = d > 0 ? Math.sqrt(d) : Math.sqrt(diag[i]);
+			for(int e = rowStart[i]; e < rowStart[i+1] && col[e] < i; e++){
+				dense[col[e]] = 0;
+			}
+		}
+	}
+
+	/**
+	 * z = M^-1 * r, for INCOMPLETE_CHOLESKY solve L*y = r then L'*z = y, on this thread.
+	 * @return r.z
+	 */
+	private double precondition(){
+		if(preconditioner == JACOBI){
+			double rz = 0;
+			for(int i = 0; i < size; i++){
+				z[i] = r[i]*inverse[i];
+				rz += r[i]*z[i];
+			}
+			return rz;
+		}
+		for(int i = 0; i < size; i++){
+			double s = r[i];
+			for(int e = rowStart[i]; e < rowStart[i+1] && col[e] < i; e++){
+				s -= lowerVal[e]*z[col[e]];
+			}
+			z[i] = s/lowerDiag[i];
+		}
+		double rz = 0;
+		for(int i = size-1; i >= 0; i--){
+			double zi = z[i]/lowerDiag[i];
+			z[i] = zi;
+			rz += r[i]*zi;
+			for(int e = rowStart[i]; e < rowStart[i+1] && col[e] < i; e++){
+				z[col[e]] -= lowerVal[e]*zi;
+			}
+		}
+		return rz;
+	}
+
+	/**
+	 * Run one pass over every block, on the pool if there's more than one.
+	 */
+	private void run(int op){
+		if(blocks == 1){
+			block(op, 0);
+		}else{
+			pool.invoke(new Pass(op, 0, blocks));
+		}
+	}
+
+	private double total(double[] sums){
+		double t = 0;
+		for(int k = 0; k < blocks; k++){
+			t += sums[k];
+		}
+		return t;
+	}
+
+	/**
+	 * Do one pass over one block of rows.
+	 */
+	private void block(int op, int k){
+		int from = (int)((long)size*k/blocks);
+		int to = (int)((long)size*(k+1)/blocks);
+		double a = 0;
+		double c = 0;
+		if(op == MULTIPLY){
+			for(int i = from; i < to; i++){
+				double s = diag[i]*p[i];
+				for(int e = rowStart[i]; e < rowStart[i+1]; e++){
+					s += val[e]*p[col[e]];
+				}
+				q[i] = s;
+				a += p[i]*s;
+			}
+		}else if(op == UPDATE || op == UPDATE_JACOBI){
+			double step = alpha;
+			boolean jacobi = op == UPDATE_JACOBI;
+			for(int i = from; i < to; i++){
+				x[i] += step*p[i];
+				double ri = r[i] - step*q[i];
+				r[i] = ri;
+				a += ri*ri;
+				if(jacobi){
+					double zi = ri*inverse[i];
+					z[i] = zi;
+					c += ri*zi;
+				}
+			}
+		}else{
+			double step = beta;
+			for(int i = from; i < to; i++){
+				p[i] = z[i] + step*p[i];
+			}
+		}
+		sumA[k] = a;
+		sumB[k] = c;
+	}
+
+	private void writeBack(){
+		int n = graph.getNodeCount();
+		double[] voltage = graph.getVoltageArray();
+		for(int i = 0; i < n; i++){
+			if(i == neg){
+				voltage[i] = 0;
+			}else if(i == pos){
+				voltage[i] = volts;
+			}else if(row[i] != -1){
+				voltage[i] = x[row[i]];
+			}else{
+				voltage[i] = Double.NaN;
+			}
+		}
+		int rc = graph.getResistorCount();
+		double[] ohms = graph.getOhmsArray();
+		double[] amps = graph.getAmpsArray();
+		double[] watts = graph.getWattsArray();
+		double[] vdrop = graph.getVoltageDropArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		supplyAmps = 0;
+		for(int i = 0; i < rc; i++){
+			double drop = Double.isNaN(voltage[nodeA[i]]) ? 0 : voltage[nodeA[i]] - voltage[nodeB[i]];
+			double a = drop/ohms[i];
+			vdrop[i] = drop;
+			amps[i] = a;
+			watts[i] = drop*a;
+			if(nodeA[i] == pos){
+				supplyAmps += a;
+			}
+			if(nodeB[i] == pos){
+				supplyAmps -= a;
+			}
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * One pass over a range of blocks, split in half until it's a single block.
+	 */
+	private class Pass extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int op;
+		private int from;
+		private int to;
+
+		Pass(int op, int from, int to){
+			this.op = op;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute(){
+			if(to - from == 1){
+				block(op, from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Pass(op, from, middle), new Pass(op, middle, to));
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * A tracer that prints as it goes, the way simplifying used to.
+ * Only turn this on for small circuits, printing is far slower than solving.
+ * @author Isaac Assegai
+ *
+ */
+public class ConsoleTracer implements CircuitTracer {
+	
+	public void combined(Replacement replacement){
+		if(replacement.kind == Replacement.STAR){
+			System.out.print("Star Found: " + replacement.node.getName() + " ->");
+			for(int i = 0; i < replacement.mesh.length; i++){
+				System.out.print(" " + replacement.mesh[i].getName() + " Ohm: " + replacement.mesh[i].getOhms());
+			}
+			System.out.println();
+			return;
+		}
+		if(replacement.kind == Replacement.DANGLING){
+			System.out.println("Dangling Found: " + replacement.a.getName() + " at " + replacement.node.getName());
+			return;
+		}
+		if(replacement.kind == Replacement.INSTANCE){
+			System.out.println("Sub-Circuit Found: " + replacement.instance.sub.getKey() + " -> " + replacement.result.getName()
+					+ " Ohm: " + replacement.result.getOhms());
+			return;
+		}
+		System.out.println((replacement.isSeries ? "Series Found: " : "Parallels Found: ")
+				+ replacement.a.getName() + " " + replacement.b.getName() + " -> " + replacement.result.getName()
+				+ " Ohm: " + replacement.result.getOhms());
+	}
+	
+	public void stepped(Circuit circuit){
+		circuit.print();
+	}
+}
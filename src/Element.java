@@ -1,29 +1,46 @@
-import java.math.BigInteger;
 import java.util.Random;
 
 /**
- * An Element is an abstract class that just tracks names
+ * An Element is an abstract class that just tracks ids and names
  * power supplies and resistors are elements, we want to be able to treat them in a single connection
- * list
+ * list.
+ * The id is a small dense number handed out by the circuit the element is added to, circuits
+ * look elements up by id instead of comparing names. The name is just an optional label,
+ * if nobody sets one it is made up from the id when asked for.
  * @author Isaac Assegai
  *
  */
 public class Element {
-	private String name;
+	private int id; //Handed out by the circuit this element is added to, -1 until then.
+	private String name; //An optional human readable label, null unless someone sets it.
 	private Random random;
 	
+	public Element(){
+		this(null);
+	}
+	
 	public Element(Random r){
 		random = r;
-		name = newName();
+		id = -1;
+		name = null;
 	}
 	
+	public int getId(){
+		return id;
+	}
 	
-	private String newName(){
-		return new BigInteger(16, random).toString(16);
+	/**
+	 * Only circuits should hand out ids.
+	 */
+	void setId(int id){
+		this.id = id;
 	}
 	
 	public String getName(){
-		return name;
+		if(name != null){
+			return name;
+		}
+		return getPrefix() + (id == -1 ? "?" : Integer.toString(id));
 	}
 	
 	public Random getRandom(){
@@ -33,5 +50,20 @@ public class Element {
 	public void setName(String name){
 		this.name = name;
 	}
+	
+	/**
+	 * Take on another element's id and label, used when copying elements.
+	 */
+	void copyIdentity(Element other){
+		id = other.id;
+		name = other.name;
+	}
+	
+	/**
+	 * Generated names start with this, so resistors and supplies are easy to tell apart.
+	 */
+	protected String getPrefix(){
+		return "E";
+	}
 
 }
@@ -0,0 +1,221 @@
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Remembers the equivalent ohms and back substitution ratios of sub-circuits by their structural key,
+ * so a sub-circuit that's used many times, in one circuit or across many, is only solved once.
+ * The cache is bounded by size, counted in doubles, and the least recently used entries go first.
+ * It's safe to share between threads, circuits all use one shared cache unless told otherwise,
+ * see Circuit.setEquivalentCache().
+ * @author Isaac Assegai
+ *
+ */
+public class EquivalentCache implements EquivalentCacheMBean {
+	/* Member Variables */
+	public static final long DEFAULT_CAPACITY = 1 << 22; //Doubles, 32MB worth.
+	private static final int ENTRY_OVERHEAD = 8; //Roughly what an entry costs besides its ratios, in doubles.
+
+	private LinkedHashMap<Key, Entry>entries; //In access order, least recently used first.
+	private long capacity;
+	private long size; //Doubles held, the ratios plus the overhead of each entry.
+	private LongAdder hits;
+	private LongAdder misses;
+	private LongAdder evictions;
+	private ObjectName registeredAs; //null unless register() was called.
+
+	/**
+	 * Constructor - A cache of DEFAULT_CAPACITY.
+	 */
+	public EquivalentCache(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor - A cache that holds up to capacity doubles.
+	 */
+	public EquivalentCache(long capacity){
+		if(capacity < 0){
+			throw new IllegalArgumentException("a cache can't hold " + capacity + " doubles");
+		}
+		this.capacity = capacity;
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		size = 0;
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
+		registeredAs = null;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * The equivalent and ratios of a sub-circuit, solved and remembered if they aren't here yet.
+	 */
+	public Entry lookup(SubCircuit sub){
+		Key key = sub.getKey();
+		Entry entry;
+		synchronized(this){
+			entry = entries.get(key);
+		}
+		if(entry != null){
+			hits.increment();
+			return entry;
+		}
+		misses.increment();
+		entry = sub.solve(); //outside the lock, two threads may both solve it, they get the same answer
+		put(key, entry);
+		return entry;
+	}
+
+	public long getHits(){
+		return hits.sum();
+	}
+
+	public long getMisses(){
+		return misses.sum();
+	}
+
+	public long getEvictions(){
+		return evictions.sum();
+	}
+
+	public double getHitRatio(){
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : h/(double)total;
+	}
+
+	public synchronized int getEntries(){
+		return entries.size();
+	}
+
+	public synchronized long getSize(){
+		return size;
+	}
+
+	public long getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * Forget every entry, the counters keep counting.
+	 */
+	public synchronized void clear(){
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * Show this cache over JMX, as circuit:type=EquivalentCache,name=<name>.
+	 */
+	public synchronized void register(String name){
+		if(registeredAs != null){
+			throw new IllegalStateException("this cache is already registered as " + registeredAs);
+		}
+		try{
+			ObjectName objectName = new ObjectName("circuit:type=EquivalentCache,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			registeredAs = objectName;
+		}catch(JMException e){
+			throw new IllegalStateException("couldn't register equivalent cache " + name, e);
+		}
+	}
+
+	/**
+	 * Take this cache back off JMX, if it was registered.
+	 */
+	public synchronized void unregister(){
+		if(registeredAs == null){
+			return;
+		}
+		try{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+		}catch(JMException e){
+			throw new IllegalStateException("couldn't unregister equivalent cache " + registeredAs, e);
+		}
+		registeredAs = null;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Remember an entry, dropping the least recently used ones until it fits.
+	 * An entry bigger than the whole cache isn't kept.
+	 */
+	private synchronized void put(Key key, Entry entry){
+		long cost = cost(entry);
+		if(cost > capacity){
+			return;
+		}
+		Entry old = entries.put(key, entry);
+		size += cost;
+		if(old != null){
+			size -= cost(old);
+		}
+		Iterator<Map.Entry<Key, Entry>>it = entries.entrySet().iterator();
+		while(size > capacity && it.hasNext()){
+			Map.Entry<Key, Entry>eldest = it.next();
+			if(eldest.getKey().equals(key)){
+				continue;
+			}
+			size -= cost(eldest.getValue());
+			it.remove();
+			evictions.increment();
+		}
+	}
+
+	private static long cost(Entry entry){
+		return entry.ratios.length + ENTRY_OVERHEAD;
+	}
+
+	/* Public Classes */
+
+	/**
+	 * A structural key, 128 bits of hash over a sub-circuit's reduction tree and ohms.
+	 */
+	public static final class Key {
+		private final long hi;
+		private final long lo;
+
+		public Key(long hi, long lo){
+			this.hi = hi;
+			this.lo = lo;
+		}
+
+		public boolean equals(Object o){
+			if(!(o instanceof Key)){
+				return false;
+			}
+			Key k = (Key)o;
+			return k.hi == hi && k.lo == lo;
+		}
+
+		public int hashCode(){
+			return (int)(hi ^ (hi >>> 32));
+		}
+
+		public String toString(){
+			return String.format("%016x%016x", hi, lo);
+		}
+	}
+
+	/**
+	 * What a sub-circuit solves to: its equivalent ohms, and where each inner node sits between
+	 * the terminals, 0 at the -terminal and 1 at the +terminal, in the order of SubCircuit.getOrder().
+	 */
+	public static final class Entry {
+		public final double ohms;
+		public final double[] ratios;
+
+		public Entry(double ohms, double[] ratios){
+			this.ohms = ohms;
+			this.ratios = ratios;
+		}
+	}
+}
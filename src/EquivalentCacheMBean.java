@@ -0,0 +1,15 @@
+/**
+ * What an EquivalentCache shows over JMX, see EquivalentCache.register().
+ * @author Isaac Assegai
+ *
+ */
+public interface EquivalentCacheMBean {
+	public long getHits();
+	public long getMisses();
+	public long getEvictions();
+	public double getHitRatio();
+	public int getEntries();
+	public long getSize();
+	public long getCapacity();
+	public void clear();
+}
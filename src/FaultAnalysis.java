@@ -0,0 +1,335 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fails every resistor of a circuit open and then short, one at a time, for a reliability report.
+ * That's 2 solves per resistor done the slow way, so instead the circuit is solved once with
+ * nodal analysis and each fault is worked out from that factorization. A fault only changes one
+ * resistor's conductance, a rank one change to the matrix, which Sherman-Morrison handles with one
+ * more pair of triangular solves: an open changes it by -1/ohms, and a short is the limit of an
+ * infinite change, which is just as easy. The only faults that need a solve of their own are opens
+ * of a resistor that everything past it hangs off, since those cut the network in two.
+ * Faults are handed out to the threads in chunks from a shared counter, each thread reads the one
+ * shared factorization and writes its own rows of the FaultTable.
+ * A resistor is over its power rating when it dissipates more than its rating. By default each
+ * resistor's rating is the margin times its watts with nothing failed, but at least a billionth of
+ * the hottest resistor's, so ones that carry next to nothing aren't flagged for rounding.
+ * The circuit itself is left as it was, we work on a copy of its graph.
+ * @author Isaac Assegai
+ *
+ */
+public class FaultAnalysis {
+	/* Member Variables */
+	public static final double DEFAULT_MARGIN = 2.0;
+	private static final int CHUNK = 16; //Faults a thread takes at a time.
+
+	private Circuit circuit;
+	private CircuitGraph base; //A copy of the circuit's graph, solved with nothing failed.
+	private NodalSolver solver; //base's solver, the factorization every fault is worked out from.
+	private int[] supplyNodes; //+node then -node of each supply.
+	private double[] ratings; //The watts each resistor is rated for, by slot, null for the default.
+	private double margin;
+	private ExecutorService executor;
+	private int threads;
+	private boolean ownsExecutor; //We made the executor, so we shut it down.
+
+	/**
+	 * Constructor - Analyze on a ForkJoinPool with a thread for every core.
+	 */
+	public FaultAnalysis(Circuit circuit){
+		this(circuit, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor - Analyze on a ForkJoinPool with this many threads.
+	 */
+	public FaultAnalysis(Circuit circuit, int threads){
+		this(circuit, null, threads);
+	}
+
+	/**
+	 * Constructor - Analyze on an executor someone else owns, split into this many tasks.
+	 * A null executor makes a ForkJoinPool with this many threads.
+	 */
+	public FaultAnalysis(Circuit circuit, ExecutorService executor, int threads){
+		if(threads < 1){
+			throw new IllegalArgumentException("a fault analysis needs at least 1 thread, not " + threads);
+		}
+		this.circuit = circuit;
+		this.threads = threads;
+		margin = DEFAULT_MARGIN;
+		ratings = null;
+
+		ArrayList<PowerSupply>supplies = circuit.getSupplies();
+		if(supplies.isEmpty()){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has no connected power supply");
+		}
+		supplyNodes = new int[2*supplies.size()];
+		for(int k = 0; k < supplies.size(); k++){
+			PowerSupply supply = supplies.get(k);
+			if(supply.getPosNode() == null || supply.getNegNode() == null){
+				throw new IllegalStateException("power supply " + supply.getName() + " in circuit " + circuit.getName() + " is not connected");
+			}
+			supplyNodes[2*k] = supply.getPosNode().getId();
+			supplyNodes[2*k+1] = supply.getNegNode().getId();
+		}
+		base = copy(circuit.getGraph());
+		solver = solverFor(base);
+		solver.solve();
+		ownsExecutor = executor == null;
+		this.executor = executor == null ? new ForkJoinPool(threads) : executor;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * The watts each resistor can take, by slot, instead of the margin times its watts.
+	 */
+	public void setRatings(double[] watts){
+		if(watts.length != base.getResistorCount()){
+			throw new IllegalArgumentException("there are " + base.getResistorCount() + " resistors, not " + watts.length + " ratings");
+		}
+		ratings = watts.clone();
+	}
+
+	/**
+	 * How many times its unfailed watts a resistor is rated for, when there are no ratings given.
+	 */
+	public void setMargin(double margin){
+		if(!(margin > 0)){
+			throw new IllegalArgumentException("margin has to be more than 0, not " + margin);
+		}
+		this.margin = margin;
+	}
+
+	public double getMargin(){
+		return margin;
+	}
+
+	/**
+	 * The circuit with nothing failed, solved, the graph every fault is compared to.
+	 */
+	public CircuitGraph getBase(){
+		return base;
+	}
+
+	/**
+	 * Work out every fault.
+	 */
+	public FaultTable run(){
+		int r = base.getResistorCount();
+		String[] resistorNames = new String[r];
+		ArrayList<Resistor>resistors = circuit.getResistors();
+		for(int i = 0; i < resistors.size(); i++){
+			resistorNames[resistors.get(i).getIndex()] = resistors.get(i).getName();
+		}
+		String[] nodeNames = new String[base.getNodeCount()];
+		ArrayList<Node>nodes = circuit.getNodes();
+		for(int i = 0; i < nodes.size(); i++){
+			nodeNames[nodes.get(i).getId()] = nodes.get(i).getName();
+		}
+		FaultTable table = new FaultTable(resistorNames, nodeNames, solver.getSupplyAmps(0));
+		double[] limits = limits();
+		AtomicInteger next = new AtomicInteger(0);
+		ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>(threads);
+		for(int t = 0; t < threads; t++){
+			futures.add(executor.submit(new FaultTask(table, limits, next)));
+		}
+		try{
+			for(int t = 0; t < threads; t++){
+				futures.get(t).get();
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			cancel(futures);
+			throw new IllegalStateException("interrupted waiting for the fault analysis", e);
+		}catch(ExecutionException e){
+			cancel(futures);
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("a fault analysis task failed", e.getCause());
+		}
+		return table;
+	}
+
+	/**
+	 * Shut down the executor if we made it.
+	 */
+	public void shutdown(){
+		if(ownsExecutor){
+			executor.shutdown();
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * The watts each resistor is rated for, given or made up from the base solution.
+	 */
+	private double[] limits(){
+		if(ratings != null){
+			return ratings;
+		}
+		int r = base.getResistorCount();
+		double hottest = 0;
+		for(int s = 0; s < r; s++){
+			hottest = Math.max(hottest, base.getWatts(s));
+		}
+		double[] limits = new double[r];
+		for(int s = 0; s < r; s++){
+			limits[s] = Math.max(margin*base.getWatts(s), 1e-9*hottest);
+		}
+		return limits;
+	}
+
+	private NodalSolver solverFor(CircuitGraph graph){
+		NodalSolver s = new NodalSolver(graph);
+		ArrayList<PowerSupply>supplies = circuit.getSupplies();
+		for(int k = 0; k < supplies.size(); k++){
+			s.addSupply(supplyNodes[2*k], supplyNodes[2*k+1], supplies.get(k).getVoltage());
+		}
+		return s;
+	}
+
+	private static CircuitGraph copy(CircuitGraph graph){
+		int r = graph.getResistorCount();
+		int n = graph.getNodeCount();
+		CircuitGraph copy = new CircuitGraph(r, n);
+		copy.ensureNodes(n);
+		for(int s = 0; s < r; s++){
+			copy.addResistor(graph.getOhms(s));
+			copy.setEndpoints(s, graph.getNodeA(s), graph.getNodeB(s));
+		}
+		return copy;
+	}
+
+	private static void cancel(ArrayList<Future<Object>> futures){
+		for(int t = 0; t < futures.size(); t++){
+			futures.get(t).cancel(true);
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * One thread's share of the faults, it takes chunks until there are none left.
+	 */
+	private class FaultTask implements Callable<Object> {
+		private FaultTable table;
+		private double[] limits;
+		private AtomicInteger next; //The first fault of the next chunk nobody has taken.
+		private CircuitGraph cut; //Our own copy of the base for faults that cut the network, made when first needed.
+		private NodalSolver cutSolver;
+
+		FaultTask(FaultTable table, double[] limits, AtomicInteger next){
+			this.table = table;
+			this.limits = limits;
+			this.next = next;
+		}
+
+		public Object call(){
+			int faults = table.getFaultCount();
+			double[] amps = new double[supplyNodes.length/2];
+			int first;
+			while((first = next.getAndAdd(CHUNK)) < faults){
+				for(int f = first; f < Math.min(faults, first+CHUNK); f++){
+					int slot = f/2;
+					boolean open = f%2 == FaultTable.OPEN;
+					try{
+						double[] v = solver.solveChanged(slot, open ? Double.POSITIVE_INFINITY : 0, amps);
+						byte how = FaultTable.SOLVED;
+						if(v == null && open){
+							v = solveCut(slot, amps);
+							how = FaultTable.CUT;
+						}
+						if(v == null){
+							table.fail(f);
+						}else{
+							summarize(f, how, slot, v, amps[0]);
+						}
+					}catch(IllegalStateException e){
+						table.fail(f); //the supplies can't be solved for, a short across one
+					}
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Solve with a resistor open from scratch, on our own copy of the base.
+		 */
+		private double[] solveCut(int slot, double[] amps){
+			if(cut == null){
+				cut = copy(base);
+				cutSolver = solverFor(cut);
+			}
+			double ohms = cut.getOhms(slot);
+			cut.setOhms(slot, Double.POSITIVE_INFINITY);
+			try{
+				cutSolver.solve();
+			}finally{
+				cut.setOhms(slot, ohms);
+			}
+			for(int k = 0; k < amps.length; k++){
+				amps[k] = cutSolver.getSupplyAmps(k);
+			}
+			return cut.getVoltageArray().clone();
+		}
+
+		/**
+		 * Compare a fault's node voltages with the base, and find who's over their rating.
+		 */
+		private void summarize(int f, byte how, int slot, double[] v, double supplyAmps){
+			int n = base.getNodeCount();
+			double[] before = base.getVoltageArray();
+			double shift = 0;
+			int node = -1;
+			int lost = 0;
+			for(int i = 0; i < n; i++){
+				if(Double.isNaN(before[i])){
+					continue;
+				}
+				if(Double.isNaN(v[i])){
+					lost++;
+					continue;
+				}
+				double d = Math.abs(v[i] - before[i]);
+				if(d > shift){
+					shift = d;
+					node = i;
+				}
+			}
+			int r = base.getResistorCount();
+			double[] ohms = base.getOhmsArray();
+			int[] nodeA = base.getNodeAArray();
+			int[] nodeB = base.getNodeBArray();
+			int over = 0;
+			int worst = -1;
+			double ratio = 0;
+			for(int s = 0; s < r; s++){
+				if(s == slot){
+					continue; //open or shorted, either way it dissipates nothing
+				}
+				double drop = v[nodeA[s]] - v[nodeB[s]];
+				if(Double.isNaN(drop) || Double.isInfinite(ohms[s])){
+					continue;
+				}
+				double q = drop*drop/ohms[s]/limits[s];
+				if(q > 1){
+					over++;
+				}
+				if(q > ratio){
+					ratio = q;
+					worst = s;
+				}
+			}
+			table.record(f, how, supplyAmps, shift, node, lost, over, worst, ratio);
+		}
+	}
+}
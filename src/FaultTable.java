@@ -0,0 +1,165 @@
+import java.io.PrintStream;
+
+/**
+ * What failing each resistor of a circuit open, and then short, does to it, one row per fault.
+ * Only a summary of each fault is kept, not its voltages and amps: the current from the first supply,
+ * the node that moved the most and by how much, how many nodes lost their supply, and how many
+ * resistors went over their power rating along with the one that went furthest over.
+ * Faults are numbered 2*slot for a resistor open and 2*slot+1 for it shorted.
+ * @author Isaac Assegai
+ *
+ */
+public class FaultTable {
+	/* Member Variables */
+	public static final int OPEN = 0;
+	public static final int SHORT = 1;
+
+	public static final byte SOLVED = 0; //Worked out with a rank one update of the base solution.
+	public static final byte CUT = 1; //Opening it cut part of the network off, it was solved on its own.
+	public static final byte FAILED = 2; //It shorts a supply, or joins parts of the network that weren't before.
+
+	private String[] resistorNames; //By slot.
+	private String[] nodeNames; //By node id.
+	private double baseSupplyAmps; //The first supply's current with nothing failed.
+	private byte[] status; //By fault.
+	private double[] supplyAmps;
+	private double[] maxShift; //The most any node's voltage moved, in volts.
+	private int[] shiftNode; //The node that moved the most, -1 if none did.
+	private int[] floating; //Nodes that had a voltage and lost it.
+	private int[] overPower; //Resistors over their rating.
+	private int[] worst; //The resistor furthest over its rating, or closest to it, -1 if none carry anything.
+	private double[] worstRatio; //Its watts over its rating.
+
+	/**
+	 * Constructor - A table with a row for each fault of each resistor, filled in by FaultAnalysis.
+	 */
+	FaultTable(String[] resistorNames, String[] nodeNames, double baseSupplyAmps){
+		this.resistorNames = resistorNames;
+		this.nodeNames = nodeNames;
+		this.baseSupplyAmps = baseSupplyAmps;
+		int faults = 2*resistorNames.length;
+		status = new byte[faults];
+		supplyAmps = new double[faults];
+		maxShift = new double[faults];
+		shiftNode = new int[faults];
+		floating = new int[faults];
+		overPower = new int[faults];
+		worst = new int[faults];
+		worstRatio = new double[faults];
+	}
+
+	/* Public Methods */
+
+	/**
+	 * The number of rows, two for each resistor.
+	 */
+	public int getFaultCount(){
+		return status.length;
+	}
+
+	public int getResistorCount(){
+		return resistorNames.length;
+	}
+
+	public double getBaseSupplyAmps(){
+		return baseSupplyAmps;
+	}
+
+	/**
+	 * @param mode OPEN or SHORT.
+	 */
+	public static int fault(int slot, int mode){
+		return 2*slot + mode;
+	}
+
+	public byte getStatus(int fault){
+		return status[fault];
+	}
+
+	/**
+	 * The first supply's current with this fault, NaN if it FAILED.
+	 */
+	public double getSupplyAmps(int fault){
+		return supplyAmps[fault];
+	}
+
+	public double getMaxShift(int fault){
+		return maxShift[fault];
+	}
+
+	public int getShiftNode(int fault){
+		return shiftNode[fault];
+	}
+
+	public int getFloating(int fault){
+		return floating[fault];
+	}
+
+	public int getOverPower(int fault){
+		return overPower[fault];
+	}
+
+	public int getWorst(int fault){
+		return worst[fault];
+	}
+
+	public double getWorstRatio(int fault){
+		return worstRatio[fault];
+	}
+
+	/**
+	 * How many faults put at least one resistor over its rating, or FAILED.
+	 */
+	public int getDangerousFaults(){
+		int count = 0;
+		for(int f = 0; f < status.length; f++){
+			if(status[f] == FAILED || overPower[f] > 0){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Print a line per fault.
+	 */
+	public void print(PrintStream out){
+		out.format("base supply amps %.6g, %d faults, %d dangerous%n", baseSupplyAmps, status.length, getDangerousFaults());
+		for(int f = 0; f < status.length; f++){
+			out.format("%-10s %-5s ", resistorNames[f/2], f%2 == OPEN ? "open" : "short");
+			if(status[f] == FAILED){
+				out.println("failed, it shorts a supply or joins parts of the network");
+				continue;
+			}
+			out.format("supply %-12.6g shift %-10.4g at %-8s", supplyAmps[f], maxShift[f], shiftNode[f] == -1 ? "-" : nodeNames[shiftNode[f]]);
+			if(floating[f] > 0){
+				out.format(" floating %d", floating[f]);
+			}
+			out.format(" over %d", overPower[f]);
+			if(worst[f] != -1){
+				out.format(" worst %s x%.3g", resistorNames[worst[f]], worstRatio[f]);
+			}
+			out.println(status[f] == CUT ? " (cut)" : "");
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Fill in a row, each row is only written by one thread.
+	 */
+	void record(int fault, byte how, double amps, double shift, int node, int lost, int over, int worstSlot, double ratio){
+		status[fault] = how;
+		supplyAmps[fault] = amps;
+		maxShift[fault] = shift;
+		shiftNode[fault] = node;
+		floating[fault] = lost;
+		overPower[fault] = over;
+		worst[fault] = worstSlot;
+		worstRatio[fault] = ratio;
+	}
+
+	void fail(int fault){
+		record(fault, FAILED, Double.NaN, Double.NaN, -1, 0, 0, -1, Double.NaN);
+	}
+}
@@ -0,0 +1,413 @@
+import java.util.Arrays;
+
+/**
+ * Keeps a circuit's reduction tree around so one change only costs the depth of the tree.
+ * Every combine from the ReductionPlan is a node of the tree, the leaves are the circuit's
+ * resistors and the root is the equivalent resistor across the supply. Each slot remembers:
+ * 1. Its ohms, and whether it's open (it, or everything on one side of a series, was removed).
+ * 2. Its parent combine.
+ * 3. The signed fraction of its parent's current that flows through it, 1 for series,
+ *    the other branch's share for parallel.
+ * Changing a resistor only recombines the slots on its path to the root. The amps through any
+ * slot are then the supply current times the fractions on its path, and a node's voltage
+ * comes from walking down that path, so every update and every query is O(depth).
+ * Removing a resistor opens it, adding one in parallel with an existing slot splices a new
+ * combine into the tree, both are local. Any other change to the wiring needs a new solver.
+ * @author Isaac Assegai
+ *
+ */
+public class IncrementalSolver {
+	/* Member Variables */
+	private static final byte LEAF = 0;
+	private static final byte SERIES = 1;
+	private static final byte PARALLEL = 2;
+
+	private int slotCount;
+	private byte[] kind; //LEAF, SERIES or PARALLEL.
+	private int[] left; //A combine's operands, for series left runs from slotA to the middle node.
+	private int[] right;
+	private int[] middle; //The node between a series combine's operands, -1 otherwise.
+	private int[] parent; //The combine that used this slot, -1 for the root and unreduced resistors.
+	private int[] slotA; //The node id at each end, -1 for resistors that were never reduced.
+	private int[] slotB;
+	private double[] ohms;
+	private boolean[] open; //No current can get through.
+	private double[] fraction; //The signed share of the parent's current that goes through this slot.
+	private int[] middleOf; //node id -> the series combine it's the middle of, -1 if none.
+
+	private int root; //The equivalent resistor, -1 if there are no resistors.
+	private int pos;
+	private int neg;
+	private double volts;
+
+	private int[] path; //Scratch, a slot's path from the root.
+	private double[] pathAmps;
+	private double[] voltage; //Scratch, node voltages worked out during one query.
+	private int[] stamp; //The query each entry of voltage is from.
+	private int query;
+
+	/**
+	 * Constructor - Reduce the circuit once, keeping the tree.
+	 */
+	public IncrementalSolver(Circuit circuit){
+		this(circuit.compile(), circuit.getGraph().getOhmsArray(), circuit.getSupply().getVoltage());
+	}
+
+	/**
+	 * Constructor - Build the tree from a plan, with the ohms of each of the circuit's resistors.
+	 */
+	public IncrementalSolver(ReductionPlan plan, double[] resistorOhms, double volts){
+		int r0 = plan.getResistorCount();
+		int[] planA = plan.getSlotA();
+		slotCount = planA.length;
+		int capacity = Math.max(1, slotCount);
+		kind = new byte[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		middle = new int[capacity];
+		parent = new int[capacity];
+		slotA = new int[capacity];
+		slotB = new int[capacity];
+		ohms = new double[capacity];
+		open = new boolean[capacity];
+		fraction = new double[capacity];
+		System.arraycopy(planA, 0, slotA, 0, slotCount);
+		System.arraycopy(plan.getSlotB(), 0, slotB, 0, slotCount);
+		System.arraycopy(resistorOhms, 0, ohms, 0, r0);
+		for(int s = 0; s < slotCount; s++){
+			kind[s] = LEAF;
+			middle[s] = -1;
+			parent[s] = -1;
+			fraction[s] = 1;
+		}
+		middleOf = new int[plan.getNodeCount()];
+		for(int n = 0; n < middleOf.length; n++){
+			middleOf[n] = -1;
+		}
+		boolean[] series = plan.getSeries();
+		for(int k = 0; k < series.length; k++){
+			int r = r0+k;
+			kind[r] = series[k] ? SERIES : PARALLEL;
+			left[r] = plan.getLeft()[k];
+			right[r] = plan.getRight()[k];
+			middle[r] = plan.getMiddle()[k];
+			parent[left[r]] = r;
+			parent[right[r]] = r;
+			if(series[k]){
+				middleOf[middle[r]] = r;
+			}
+			combine(r);
+		}
+		root = plan.getEquivalent();
+		pos = plan.getPos();
+		neg = plan.getNeg();
+		this.volts = volts;
+		path = new int[capacity];
+		pathAmps = new double[capacity];
+		voltage = new double[middleOf.length];
+		stamp = new int[middleOf.length];
+		query = 0;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Change one resistor, only the combines above it are redone.
+	 */
+	public void setOhms(int slot, double o){
+		if(!(o > 0) || Double.isInfinite(o)){
+			throw new IllegalArgumentException("resistor R" + slot + " can't have " + o + " ohms, use setOpen() to remove it");
+		}
+		checkLeaf(slot);
+		ohms[slot] = o;
+		update(slot);
+	}
+
+	/**
+	 * Take a resistor out of the circuit, or put it back.
+	 */
+	public void setOpen(int slot, boolean isOpen){
+		checkLeaf(slot);
+		open[slot] = isOpen;
+		update(slot);
+	}
+
+	/**
+	 * Add a new resistor across the same two nodes as an existing slot.
+	 * @return The new resistor's slot.
+	 */
+	public int addParallel(int slot, double o){
+		if(!(o > 0) || Double.isInfinite(o)){
+			throw new IllegalArgumentException("a new resistor can't have " + o + " ohms");
+		}
+		if(slot < 0 || slot >= slotCount || slotA[slot] == -1){
+			throw new IllegalArgumentException("slot " + slot + " isn't part of the reduction");
+		}
+		ensureCapacity(slotCount+2);
+		int t = newSlot(LEAF, slotA[slot], slotB[slot]);
+		ohms[t] = o;
+		int p = newSlot(PARALLEL, slotA[slot], slotB[slot]);
+		int up = parent[slot];
+		left[p] = slot;
+		right[p] = t;
+		parent[p] = up;
+		parent[slot] = p;
+		parent[t] = p;
+		if(up == -1){
+			root = p;
+		}else if(left[up] == slot){
+			left[up] = p;
+		}else{
+			right[up] = p;
+		}
+		combine(p);
+		update(p);
+		return t;
+	}
+
+	public void setVolts(double volts){
+		this.volts = volts;
+	}
+
+	/**
+	 * The ohms the supply sees, infinite if everything is open. O(1).
+	 */
+	public double getEquivalentOhms(){
+		if(root == -1 || open[root]){
+			return Double.POSITIVE_INFINITY;
+		}
+		return ohms[root];
+	}
+
+	/**
+	 * The current drawn from the supply. O(1).
+	 */
+	public double getSupplyAmps(){
+		return volts/getEquivalentOhms();
+	}
+
+	/**
+	 * The amps through a slot, positive from its nodeA to its nodeB. O(depth).
+	 */
+	public double getAmps(int slot){
+		if(slotA[slot] == -1){
+			return 0;
+		}
+		double f = 1;
+		int s = slot;
+		while(parent[s] != -1){
+			f *= fraction[s];
+			s = parent[s];
+		}
+		if(s != root){
+			return 0; //a slot that was spliced out can't happen, but be safe
+		}
+		return f*rootAmps();
+	}
+
+	/**
+	 * The voltage of a node, NaN if an open resistor cuts it off from the supply. O(depth).
+	 */
+	public double getVoltage(int node){
+		if(node == pos){
+			return volts;
+		}
+		if(node == neg){
+			return 0;
+		}
+		int m = middleOf[node];
+		if(m == -1){
+			return Double.NaN; //not part of the reduction
+		}
+		query++;
+		put(pos, volts);
+		put(neg, 0);
+
+		//walk down from the root, working out the amps and the middle voltage of each combine
+		int depth = 0;
+		for(int s = m; s != -1; s = parent[s]){
+			path[depth++] = s;
+		}
+		double amps = rootAmps();
+		for(int d = depth-1; d >= 0; d--){
+			int r = path[d];
+			if(d != depth-1){
+				amps *= fraction[r];
+			}
+			if(kind[r] == SERIES){
+				put(middle[r], middleVoltage(r, amps));
+			}
+		}
+		return voltage[node];
+	}
+
+	/**
+	 * Write every resistor's amps, voltage drop and watts, and every node's voltage, into the
+	 * circuit's graph. This touches the whole tree, so it's O(size), use it to refresh a full view.
+	 */
+	public void writeBack(CircuitGraph graph){
+		query++;
+		put(pos, volts);
+		put(neg, 0);
+		int r0 = graph.getResistorCount();
+		double[] v = graph.getVoltageArray();
+		double[] o = graph.getOhmsArray();
+		double[] amps = graph.getAmpsArray();
+		double[] vdrop = graph.getVoltageDropArray();
+		double[] watts = graph.getWattsArray();
+		for(int n = 0; n < graph.getNodeCount(); n++){
+			v[n] = Double.NaN;
+		}
+		for(int s = 0; s < r0; s++){
+			o[s] = ohms[s];
+			amps[s] = 0;
+			vdrop[s] = 0;
+			watts[s] = 0;
+		}
+		if(root == -1){
+			return;
+		}
+
+		//depth first from the root, path[] is the stack and pathAmps[] the amps of each entry
+		int top = 0;
+		path[top] = root;
+		pathAmps[top++] = rootAmps();
+		while(top > 0){
+			top--;
+			int r = path[top];
+			double a = pathAmps[top];
+			if(kind[r] == LEAF){
+				if(r < r0){
+					double drop = open[r] ? voltage[slotA[r]] - voltage[slotB[r]] : a*ohms[r];
+					amps[r] = a;
+					vdrop[r] = drop;
+					watts[r] = drop*a;
+				}
+				continue;
+			}
+			if(kind[r] == SERIES){
+				put(middle[r], middleVoltage(r, a));
+			}
+			path[top] = left[r];
+			pathAmps[top++] = a*fraction[left[r]];
+			path[top] = right[r];
+			pathAmps[top++] = a*fraction[right[r]];
+		}
+		for(int n = 0; n < graph.getNodeCount() && n < voltage.length; n++){
+			if(stamp[n] == query){
+				v[n] = voltage[n];
+			}
+		}
+	}
+
+	/* Private Methods */
+	private void checkLeaf(int slot){
+		if(slot < 0 || slot >= slotCount || kind[slot] != LEAF){
+			throw new IllegalArgumentException("slot " + slot + " is not a resistor");
+		}
+	}
+
+	private double rootAmps(){
+		if(root == -1 || open[root]){
+			return 0;
+		}
+		double drop = slotA[root] == pos ? volts : -volts;
+		return drop/ohms[root];
+	}
+
+	private void put(int node, double v){
+		voltage[node] = v;
+		stamp[node] = query;
+	}
+
+	/**
+	 * The voltage of a series combine's middle node, its ends have to be known this query.
+	 * When one side is open no current flows, and the middle sits at the voltage of the other side.
+	 */
+	private double middleVoltage(int r, double amps){
+		int x = left[r];
+		int y = right[r];
+		double va = voltage[slotA[r]];
+		double vb = voltage[slotB[r]];
+		if(open[x] && open[y]){
+			return Double.NaN;
+		}else if(open[x]){
+			return vb;
+		}else if(open[y]){
+			return va;
+		}
+		return va - amps*ohms[x];
+	}
+
+	/**
+	 * Redo every combine above a slot.
+	 */
+	private void update(int slot){
+		for(int r = parent[slot]; r != -1; r = parent[r]){
+			combine(r);
+		}
+	}
+
+	/**
+	 * Work out a combine's ohms from its operands, and the share of its current each one takes.
+	 */
+	private void combine(int r){
+		int x = left[r];
+		int y = right[r];
+		if(kind[r] == SERIES){
+			open[r] = open[x] || open[y];
+			ohms[r] = ohms[x] + ohms[y];
+			fraction[x] = slotA[x] == slotA[r] ? 1 : -1;
+			fraction[y] = slotB[y] == slotB[r] ? 1 : -1;
+			return;
+		}
+		double sx = slotA[x] == slotA[r] ? 1 : -1;
+		double sy = slotA[y] == slotA[r] ? 1 : -1;
+		open[r] = open[x] && open[y];
+		if(open[x]){
+			ohms[r] = ohms[y];
+			fraction[x] = 0;
+			fraction[y] = sy;
+		}else if(open[y]){
+			ohms[r] = ohms[x];
+			fraction[x] = sx;
+			fraction[y] = 0;
+		}else{
+			double sum = ohms[x] + ohms[y];
+			ohms[r] = (ohms[x]*ohms[y])/sum;
+			fraction[x] = sx*ohms[y]/sum;
+			fraction[y] = sy*ohms[x]/sum;
+		}
+	}
+
+	private int newSlot(byte k, int a, int b){
+		int s = slotCount++;
+		kind[s] = k;
+		middle[s] = -1;
+		parent[s] = -1;
+		slotA[s] = a;
+		slotB[s] = b;
+		open[s] = false;
+		fraction[s] = 1;
+		return s;
+	}
+
+	private void ensureCapacity(int count){
+		if(count <= kind.length){
+			return;
+		}
+		int capacity = Math.max(count, 2*kind.length);
+		kind = Arrays.copyOf(kind, capacity);
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		middle = Arrays.copyOf(middle, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		slotA = Arrays.copyOf(slotA, capacity);
+		slotB = Arrays.copyOf(slotB, capacity);
+		ohms = Arrays.copyOf(ohms, capacity);
+		open = Arrays.copyOf(open, capacity);
+		fraction = Arrays.copyOf(fraction, capacity);
+		path = Arrays.copyOf(path, capacity);
+		pathAmps = Arrays.copyOf(pathAmps, capacity);
+	}
+}
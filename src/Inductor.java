@@ -0,0 +1,81 @@
+import java.util.Random;
+
+/**
+ * An inductor stores energy in the current through it, its voltage is L di/dt.
+ * Only the TransientSolver uses inductors. At DC an inductor is a short, which simplify() and
+ * solveNodal() don't know about, they leave inductors out, so put a small resistor in its
+ * place for a DC answer.
+ * The current through it is its state: set it before a transient run for the starting current,
+ * after the run it's where the run left off.
+ * @author Isaac Assegai
+ *
+ */
+public class Inductor extends Element{
+	Double henries;
+	Node nodeA;
+	Node nodeB;
+	Double amps; //The current flowing from nodeA through it to nodeB, 0 unless it starts with some.
+	Double volts; //voltage(nodeA) - voltage(nodeB), null until a transient run.
+	
+	/**
+	 * Create a new unconnected inductor with no current through it.
+	 */
+	public Inductor(Double h){
+		this(h, null);
+	}
+	
+	public Inductor(Double h, Random r){
+		super(r);
+		henries = h;
+		nodeA = null;
+		nodeB = null;
+		amps = 0.0;
+		volts = null;
+	}
+
+	/* public methods. */
+	protected String getPrefix(){
+		return "L";
+	}
+	
+	public Double getHenries(){
+		return henries;
+	}
+	
+	public void setHenries(Double h){
+		henries = h;
+	}
+	
+	public void setNodeA(Node n){
+		nodeA = n;
+	}
+	
+	public void setNodeB(Node n){
+		nodeB = n;
+	}
+	
+	public Node getNodeA(){
+		return nodeA;
+	}
+	
+	public Node getNodeB(){
+		return nodeB;
+	}
+	
+	public Double getAmps(){
+		return amps;
+	}
+	
+	public void setAmps(Double a){
+		amps = a;
+	}
+	
+	public Double getVolts(){
+		return volts;
+	}
+	
+	public void setVolts(Double v){
+		volts = v;
+	}
+	
+}
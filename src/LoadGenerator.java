@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts a SolverService under load from a few threads on this machine and reports the latencies.
+ * Each thread sends its next request as soon as the last one is answered. Requests are either one
+ * netlist file sent over and over, or generated ladders with fresh random ohms each time, which all
+ * share a topology so the service can batch them into one compiled plan.
+ * A tenth as many requests again go first to warm the service up, they aren't counted.
+ * Usage: java LoadGenerator [url, default http://127.0.0.1:8080/solve] [threads, default 8]
+ *        [requests, default 10000] [netlist file, or the number of ladder sections, default 20]
+ * We print the requests answered, turned away (503) and failed, the throughput, and the
+ * p50, p90, p99, p99.9 and largest latencies in microseconds, then the service's /stats.
+ * @author Isaac Assegai
+ *
+ */
+public class LoadGenerator {
+	/* Member Variables */
+	private HttpClient client;
+	private URI uri;
+	private byte[] netlist; //Sent every time, null to generate ladders.
+	private int sections; //Ladder size, when generating.
+	private AtomicLong next; //The next request to send, shared by the threads.
+	private long[] latencies; //Nanoseconds, by request, -1 if it wasn't answered with a 200.
+	private AtomicLong rejected;
+	private AtomicLong failed;
+
+	public LoadGenerator(URI uri, byte[] netlist, int sections){
+		this.uri = uri;
+		this.netlist = netlist;
+		this.sections = sections;
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		rejected = new AtomicLong();
+		failed = new AtomicLong();
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : "http://127.0.0.1:" + SolverService.DEFAULT_PORT + "/solve";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+		String source = args.length > 3 ? args[3] : "20";
+		byte[] netlist = null;
+		int sections = 0;
+		Path path = Paths.get(source);
+		if(Files.exists(path)){
+			netlist = Files.readAllBytes(path);
+		}else{
+			sections = Integer.parseInt(source);
+		}
+		LoadGenerator load = new LoadGenerator(URI.create(url), netlist, sections);
+		load.run(threads, Math.max(1, requests/10));
+		long nanos = load.run(threads, requests);
+		load.report(nanos);
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Send this many requests from this many threads, and wait for all the answers.
+	 * @return How long it took in nanoseconds.
+	 */
+	public long run(int threads, int requests) throws InterruptedException {
+		next = new AtomicLong();
+		latencies = new long[requests];
+		rejected.set(0);
+		failed.set(0);
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for(int t = 0; t < threads; t++){
+			final Random random = new Random(t);
+			workers[t] = new Thread(){
+				public void run(){
+					send(random);
+				}
+			};
+			workers[t].start();
+		}
+		for(int t = 0; t < threads; t++){
+			workers[t].join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Print what the last run() measured.
+	 */
+	public void report(long nanos) throws IOException, InterruptedException {
+		long[] answered = new long[latencies.length];
+		int count = 0;
+		for(int i = 0; i < latencies.length; i++){
+			if(latencies[i] >= 0){
+				answered[count++] = latencies[i];
+			}
+		}
+		answered = Arrays.copyOf(answered, count);
+		Arrays.sort(answered);
+		System.out.format("requests %d, answered %d, turned away %d, failed %d, %.1f answered/s%n",
+				latencies.length, count, rejected.get(), failed.get(), count/(nanos/1e9));
+		if(count > 0){
+			System.out.format("latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+					percentile(answered, 0.5), percentile(answered, 0.9), percentile(answered, 0.99),
+					percentile(answered, 0.999), answered[count-1]/1e3);
+		}
+		URI stats = uri.resolve("/stats");
+		System.out.println(client.send(HttpRequest.newBuilder(stats).build(), HttpResponse.BodyHandlers.ofString()).body());
+	}
+
+	/* Private Methods */
+
+	/**
+	 * One thread's share of the requests, until there are none left.
+	 */
+	private void send(Random random){
+		long i;
+		while((i = next.getAndIncrement()) < latencies.length){
+			byte[] body = netlist != null ? netlist : ladder(random);
+			HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+			long start = System.nanoTime();
+			int status;
+			try{
+				status = client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+			}catch(IOException e){
+				status = -1;
+			}catch(InterruptedException e){
+				return;
+			}
+			long took = System.nanoTime() - start;
+			if(status == 200){
+				latencies[(int)i] = took;
+			}else{
+				latencies[(int)i] = -1;
+				if(status == 503){
+					rejected.incrementAndGet();
+				}else{
+					failed.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A ladder netlist, every one the same shape with different ohms.
+	 */
+	private byte[] ladder(Random random){
+		StringBuilder out = new StringBuilder(32*sections + 64);
+		out.append("load ladder\nV1 n0 0 12\n");
+		for(int i = 0; i < sections; i++){
+			out.append('R').append(2*i+1).append(" n").append(i).append(" n").append(i+1).append(' ')
+					.append(1 + random.nextInt(1000)).append('\n');
+			out.append('R').append(2*i+2).append(" n").append(i+1).append(" 0 ")
+					.append(1 + random.nextInt(1000)).append('\n');
+		}
+		out.append(".end\n");
+		return out.toString().getBytes();
+	}
+
+	private static double percentile(long[] sorted, double q){
+		int i = (int)Math.ceil(q*sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length-1, i))]/1e3;
+	}
+}
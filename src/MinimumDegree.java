@@ -0,0 +1,120 @@
+/**
+ * Computes a fill reducing ordering for a symmetric sparse matrix using the
+ * minimum degree heuristic. We keep the elimination graph explicitly, when a node
+ * is eliminated its neighbors all become connected to each other (that's the fill),
+ * and the next node eliminated is always the one with the fewest neighbors left.
+ * Circuit graphs are very sparse, so this stays cheap.
+ * @author Isaac Assegai
+ *
+ */
+public class MinimumDegree {
+
+	/**
+	 * Order the matrix.
+	 * @param a The symmetric matrix, only its pattern is used, the diagonal is ignored.
+	 * @return perm, where perm[k] is the old index of the k'th node to eliminate.
+	 */
+	public static int[] order(SparseMatrix a){
+		int n = a.size();
+		int[] colPtr = a.getColPtr();
+		int[] rowIdx = a.getRowIdx();
+
+		//copy the off diagonal pattern into growable adjacency lists
+		int[][] adj = new int[n][];
+		int[] degree = new int[n];
+		for(int j = 0; j < n; j++){
+			adj[j] = new int[Math.max(2, colPtr[j+1]-colPtr[j])];
+			for(int p = colPtr[j]; p < colPtr[j+1]; p++){
+				if(rowIdx[p] != j){
+					adj[j][degree[j]++] = rowIdx[p];
+				}
+			}
+		}
+
+		//degree buckets, doubly linked lists of the nodes with each degree
+		int[] head = new int[n+1];
+		int[] next = new int[n];
+		int[] prev = new int[n];
+		for(int d = 0; d <= n; d++){
+			head[d] = -1;
+		}
+		for(int j = 0; j < n; j++){
+			link(j, degree[j], head, next, prev);
+		}
+
+		int[] mark = new int[n];
+		int tag = 0;
+		int[] perm = new int[n];
+		int minDegree = 0;
+		for(int k = 0; k < n; k++){
+			while(head[minDegree] == -1){
+				minDegree++;
+			}
+			int v = head[minDegree];
+			unlink(v, degree[v], head, next, prev);
+			perm[k] = v;
+
+			int[] nv = adj[v];
+			int dv = degree[v];
+			for(int q = 0; q < dv; q++){
+				int u = nv[q];
+				unlink(u, degree[u], head, next, prev);
+
+				//drop v from u, and stamp what u already touches
+				tag++;
+				int[] nu = adj[u];
+				int du = 0;
+				for(int p = 0; p < degree[u]; p++){
+					int w = nu[p];
+					if(w != v){
+						nu[du++] = w;
+						mark[w] = tag;
+					}
+				}
+
+				//connect u to the rest of v's neighbors
+				for(int p = 0; p < dv; p++){
+					int w = nv[p];
+					if(w != u && mark[w] != tag){
+						if(du == nu.length){
+							int[] grown = new int[nu.length*2];
+							System.arraycopy(nu, 0, grown, 0, du);
+							nu = grown;
+							adj[u] = nu;
+						}
+						nu[du++] = w;
+						mark[w] = tag;
+					}
+				}
+				degree[u] = du;
+				link(u, du, head, next, prev);
+				if(du < minDegree){
+					minDegree = du;
+				}
+			}
+			adj[v] = null; //v is gone, let its list go
+		}
+		return perm;
+	}
+
+	/* Private Methods */
+	private static void link(int v, int d, int[] head, int[] next, int[] prev){
+		prev[v] = -1;
+		next[v] = head[d];
+		if(head[d] != -1){
+			prev[head[d]] = v;
+		}
+		head[d] = v;
+	}
+
+	private static void unlink(int v, int d, int[] head, int[] next, int[] prev){
+		if(prev[v] != -1){
+			next[prev[v]] = next[v];
+		}else{
+			head[d] = next[v];
+		}
+		if(next[v] != -1){
+			prev[next[v]] = prev[v];
+		}
+	}
+}
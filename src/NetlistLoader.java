@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Builds a Circuit from a SPICE netlist. Only the cards this program can solve are understood:
+ *   Rname node node value     a resistor
+ *   Vname +node -node [DC] value     a power supply, there can be any number
+ *   Cname node node value [IC=volts]     a capacitor, for the TransientSolver
+ *   Lname node node value [IC=amps]     an inductor, for the TransientSolver
+ * As in SPICE the first line is the title, it becomes the circuit's name. Lines starting with *
+ * are comments, anything after a ; or $ is a comment, dot cards other than .end are skipped.
+ * Values can have the usual suffixes, f p n u m mil k meg g t, and anything after that is ignored,
+ * so 4.7k, 4.7kohm and 4700 are all the same.
+ * The file is streamed through a buffer and parsed a byte at a time, so no Strings are made per line.
+ * Node labels are interned straight into node ids with a hash over their bytes, a label only becomes
+ * a String once, when its node is made. The resistors go straight into the circuit's graph.
+ * The read buffer is kept from one load to the next, so a loader that's reused, one per thread
+ * in SolverService, doesn't allocate it every time.
+ * @author Isaac Assegai
+ *
+ */
+public class NetlistLoader {
+	/* Member Variables */
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private boolean keepElementNames; //Name each resistor after its card, this costs a String per resistor.
+	private Circuit circuit;
+	private byte[] buf; //The part of the file we're parsing.
+	private int pos; //The next byte to look at in the current line.
+	private int end; //The end of the current line.
+	private int lineNumber;
+	private Node[] nodeOf; //The node each interned label stands for, by intern table entry.
+	private int[] labelStart; //Where each label's bytes start in labels.
+	private int[] labelLength;
+	private int[] labelHash;
+	private byte[] labels; //Every label, back to back.
+	private int labelBytes;
+	private int[] table; //Open addressing hash, label hash -> entry, -1 marks an empty bucket.
+	private int shift; //32 - log2(table.length), the hash's high bits pick the bucket.
+	private int entries;
+	private char[] digits; //Scratch for the rare number we can't convert exactly ourselves.
+
+	/**
+	 * Constructor - A loader that leaves the resistors with their default names, R plus their id.
+	 */
+	public NetlistLoader(){
+		keepElementNames = false;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Name each resistor and the supply after the card that made it, like R12.
+	 */
+	public void setKeepElementNames(boolean keep){
+		keepElementNames = keep;
+	}
+
+	public Circuit load(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try{
+			return load(channel);
+		}finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read a netlist to the end of the channel, or a .end card.
+	 * @throws IllegalArgumentException If a line can't be understood, the message has the line number.
+	 */
+	public Circuit load(ReadableByteChannel channel) throws IOException {
+		circuit = new Circuit();
+		if(buf == null){
+			buf = new byte[BUFFER_SIZE];
+		}
+		lineNumber = 0;
+		nodeOf = new Node[1024];
+		labelStart = new int[1024];
+		labelLength = new int[1024];
+		labelHash = new int[1024];
+		labels = new byte[16*1024];
+		labelBytes = 0;
+		table = new int[2048];
+		Arrays.fill(table, -1);
+		shift = 32 - 11;
+		entries = 0;
+		digits = new char[32];
+
+		int filled = 0; //bytes of buf holding file
+		int start = 0; //where the current line starts
+		int scan = 0; //where to keep looking for its end
+		boolean eof = false;
+		boolean done = false;
+		while(!done){
+			int nl = scan;
+			while(nl < filled && buf[nl] != '\n'){
+				nl++;
+			}
+			if(nl < filled){
+				done = parseLine(start, nl);
+				start = nl+1;
+				scan = start;
+			}else if(eof){
+				if(start < filled){
+					parseLine(start, filled);
+				}
+				done = true;
+			}else{
+				//move the partial line to the front and read more of the file after it
+				System.arraycopy(buf, start, buf, 0, filled-start);
+				filled -= start;
+				start = 0;
+				scan = filled;
+				if(filled == buf.length){
+					buf = Arrays.copyOf(buf, 2*buf.length);
+				}
+				int n = channel.read(ByteBuffer.wrap(buf, filled, buf.length-filled));
+				if(n == -1){
+					eof = true;
+				}else{
+					filled += n;
+				}
+			}
+		}
+		Circuit loaded = circuit;
+		circuit = null;
+		nodeOf = null;
+		labels = null;
+		table = null;
+		return loaded;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * @return True if this was the .end card.
+	 */
+	private boolean parseLine(int from, int to){
+		lineNumber++;
+		pos = from;
+		end = to;
+		if(end > pos && buf[end-1] == '\r'){
+			end--;
+		}
+		if(lineNumber == 1){
+			circuit.setName(new String(buf, pos, end-pos, StandardCharsets.US_ASCII).trim());
+			return false;
+		}
+		//cut off an inline comment
+		for(int i = pos; i < end; i++){
+			if(buf[i] == ';' || buf[i] == '$'){
+				end = i;
+				break;
+			}
+		}
+		skipSpace();
+		if(pos == end || buf[pos] == '*'){
+			return false;
+		}
+		byte card = buf[pos];
+		if(card == '.'){
+			return end-pos >= 4 && lower(buf[pos+1]) == 'e' && lower(buf[pos+2]) == 'n' && lower(buf[pos+3]) == 'd'
+				&& (end-pos == 4 || isSpace(buf[pos+4]));
+		}
+		if(card == '+'){
+			throw error("continuation lines are not supported");
+		}
+		int nameStart = pos;
+		skipToken();
+		int nameEnd = pos;
+		if(card == 'R' || card == 'r'){
+			Node a = node();
+			Node b = node();
+			double o = value();
+			if(!(o > 0)){
+				throw error("a resistor needs more than 0 ohms, not " + o);
+			}
+			Resistor r = circuit.newResistor(o, a, b);
+			if(keepElementNames){
+				r.setName(new String(buf, nameStart, nameEnd-nameStart, StandardCharsets.US_ASCII));
+			}
+		}else if(card == 'V' || card == 'v'){
+			Node plus = node();
+			Node minus = node();
+			skipSpace();
+			if(end-pos >= 2 && lower(buf[pos]) == 'd' && lower(buf[pos+1]) == 'c' && (end-pos == 2 || isSpace(buf[pos+2]))){
+				pos += 2;
+			}
+			PowerSupply s = new PowerSupply(value());
+			s.setPosNode(plus);
+			s.setNegNode(minus);
+			plus.addConnection(s);
+			minus.addConnection(s);
+			circuit.addSupply(s);
+			if(keepElementNames){
+				s.setName(new String(buf, nameStart, nameEnd-nameStart, StandardCharsets.US_ASCII));
+			}
+		}else if(card == 'C' || card == 'c'){
+			Node a = node();
+			Node b = node();
+			double f = value();
+			if(!(f > 0)){
+				throw error("a capacitor needs more than 0 farads, not " + f);
+			}
+			Capacitor cap = new Capacitor(f);
+			cap.setNodeA(a);
+			cap.setNodeB(b);
+			if(initialCondition()){
+				cap.setVolts(value());
+			}
+			circuit.addCapacitor(cap);
+			if(keepElementNames){
+				cap.setName(new String(buf, nameStart, nameEnd-nameStart, StandardCharsets.US_ASCII));
+			}
+		}else if(card == 'L' || card == 'l'){
+			Node a = node();
+			Node b = node();
+			double h = value();
+			if(!(h > 0)){
+				throw error("an inductor needs more than 0 henries, not " + h);
+			}
+			Inductor ind = new Inductor(h);
+			ind.setNodeA(a);
+			ind.setNodeB(b);
+			if(initialCondition()){
+				ind.setAmps(value());
+			}
+			circuit.addInductor(ind);
+			if(keepElementNames){
+				ind.setName(new String(buf, nameStart, nameEnd-nameStart, StandardCharsets.US_ASCII));
+			}
+		}else{
+			throw error("unsupported card " + (char)card + ", only R, V, C and L cards are understood");
+		}
+		return false;
+	}
+
+	/**
+	 * Skip an IC= if that's what comes next, its value follows.
+	 */
+	private boolean initialCondition(){
+		skipSpace();
+		if(end-pos >= 3 && lower(buf[pos]) == 'i' && lower(buf[pos+1]) == 'c' && isSpace(buf[pos+2])){
+			pos += 3;
+			return true;
+		}
+		return false;
+	}
+
+	private IllegalArgumentException error(String message){
+		return new IllegalArgumentException("line " + lineNumber + ": " + message);
+	}
+
+	private static boolean isSpace(byte b){
+		return b == ' ' || b == '\t' || b == ',' || b == '(' || b == ')' || b == '=';
+	}
+
+	private static int lower(byte b){
+		return (b >= 'A' && b <= 'Z') ? b + ('a'-'A') : b;
+	}
+
+	private void skipSpace(){
+		while(pos < end && isSpace(buf[pos])){
+			pos++;
+		}
+	}
+
+	private void skipToken(){
+		while(pos < end && !isSpace(buf[pos])){
+			pos++;
+		}
+	}
+
+	/**
+	 * Read a node label and find its node, making one the first time a label is seen.
+	 */
+	private Node node(){
+		skipSpace();
+		int start = pos;
+		skipToken();
+		int length = pos-start;
+		if(length == 0){
+			throw error("missing a node");
+		}
+		int h = 0;
+		for(int i = start; i < pos; i++){
+			h = 31*h + buf[i];
+		}
+		int mask = table.length-1;
+		int i = (h * 0x9E3779B9) >>> shift;
+		while(table[i] != -1){
+			int e = table[i];
+			if(labelHash[e] == h && labelLength[e] == length && same(e, start)){
+				return nodeOf[e];
+			}
+			i = (i+1) & mask;
+		}
+		return intern(start, length, h, i);
+	}
+
+	private boolean same(int e, int start){
+		int s = labelStart[e];
+		for(int k = 0; k < labelLength[e]; k++){
+			if(labels[s+k] != buf[start+k]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Node intern(int start, int length, int h, int bucket){
+		if(entries == nodeOf.length){
+			int capacity = 2*nodeOf.length;
+			nodeOf = Arrays.copyOf(nodeOf, capacity);
+			labelStart = Arrays.copyOf(labelStart, capacity);
+			labelLength = Arrays.copyOf(labelLength, capacity);
+			labelHash = Arrays.copyOf(labelHash, capacity);
+		}
+		if(labelBytes + length > labels.length){
+			labels = Arrays.copyOf(labels, Math.max(2*labels.length, labelBytes+length));
+		}
+		int e = entries++;
+		System.arraycopy(buf, start, labels, labelBytes, length);
+		labelStart[e] = labelBytes;
+		labelLength[e] = length;
+		labelHash[e] = h;
+		labelBytes += length;
+		Node n = circuit.newNode();
+		n.setName(new String(buf, start, length, StandardCharsets.US_ASCII));
+		nodeOf[e] = n;
+		table[bucket] = e;
+		if(2*entries > table.length){
+			rehash();
+		}
+		return n;
+	}
+
+	private void rehash(){
+		table = new int[2*table.length];
+		Arrays.fill(table, -1);
+		shift--;
+		int mask = table.length-1;
+		for(int e = 0; e < entries; e++){
+			int i = (labelHash[e] * 0x9E3779B9) >>> shift;
+			while(table[i] != -1){
+				i = (i+1) & mask;
+			}
+			table[i] = e;
+		}
+	}
+
+	/**
+	 * Read a number like 10, -2.5e3, 4.7k or 100nF.
+	 * When the digits fit in a long and the power of ten is small both are exact doubles,
+	 * so one multiply or divide rounds correctly, otherwise we let Double.parseDouble do it.
+	 */
+	private double value(){
+		skipSpace();
+		int start = pos;
+		boolean negative = false;
+		if(pos < end && (buf[pos] == '-' || buf[pos] == '+')){
+			negative = buf[pos] == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int count = 0; //digits in mantissa, leading zeros left out
+		int exponent = 0;
+		boolean anyDigits = false;
+		boolean point = false;
+		int nd = 0;
+		while(pos < end){
+			byte b = buf[pos];
+			if(b >= '0' && b <= '9'){
+				anyDigits = true;
+				if(count > 0 || b != '0'){
+					if(count < 18){
+						mantissa = 10*mantissa + (b-'0');
+					}else if(!point){
+						exponent++; //too many digits to keep, this one only scales the number
+					}
+					if(nd < digits.length){
+						digits[nd++] = (char)b;
+					}
+					count++;
+				}
+				if(point && count <= 18){
+					exponent--;
+				}
+			}else if(b == '.' && !point){
+				point = true;
+			}else{
+				break;
+			}
+			pos++;
+		}
+		if(!anyDigits){
+			throw error("expected a number, not " + new String(buf, start, Math.max(1, Math.min(end, start+16)-start), StandardCharsets.US_ASCII));
+		}
+		if(pos < end && lower(buf[pos]) == 'e' && pos+1 < end
+				&& (Character.isDigit(buf[pos+1]) || ((buf[pos+1] == '-' || buf[pos+1] == '+') && pos+2 < end && Character.isDigit(buf[pos+2])))){
+			pos++;
+			boolean negativeExponent = buf[pos] == '-';
+			if(buf[pos] == '-' || buf[pos] == '+'){
+				pos++;
+			}
+			int e = 0;
+			while(pos < end && buf[pos] >= '0' && buf[pos] <= '9'){
+				e = Math.min(10*e + (buf[pos]-'0'), 100000);
+				pos++;
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		double scale = 1;
+		if(pos < end){
+			switch(lower(buf[pos])){
+				case 't': exponent += 12; break;
+				case 'g': exponent += 9; break;
+				case 'k': exponent += 3; break;
+				case 'u': exponent -= 6; break;
+				case 'n': exponent -= 9; break;
+				case 'p': exponent -= 12; break;
+				case 'f': exponent -= 15; break;
+				case 'm':
+					if(end-pos >= 3 && lower(buf[pos+1]) == 'e' && lower(buf[pos+2]) == 'g'){
+						exponent += 6;
+					}else if(end-pos >= 3 && lower(buf[pos+1]) == 'i' && lower(buf[pos+2]) == 'l'){
+						scale = 25.4e-6;
+					}else{
+						exponent -= 3;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		skipToken(); //units and anything else stuck on the end
+
+		double v;
+		if(mantissa == 0){
+			v = 0;
+		}else if(count <= 15 && exponent >= -22 && exponent <= 22){
+			v = exponent >= 0 ? mantissa*POWERS_OF_TEN[exponent] : mantissa/POWERS_OF_TEN[-exponent];
+		}else{
+			//the digits we kept, with the point after the first one
+			int kept = Math.min(nd, 18);
+			int scientific = exponent + Math.min(count, 18) - 1;
+			StringBuilder sb = new StringBuilder(kept + 8);
+			sb.append(digits, 0, 1).append('.').append(digits, 1, kept-1).append('e').append(scientific);
+			v = Double.parseDouble(sb.toString());
+		}
+		v *= scale;
+		return negative ? -v : v;
+	}
+}
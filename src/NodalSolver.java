@@ -0,0 +1,705 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Solves a circuit with nodal analysis instead of series/parallel reduction, so
+ * bridges and meshes are no problem. We ground a node in each connected piece of the
+ * network, stamp every resistor's conductance into a sparse matrix, factor it once with
+ * a sparse Cholesky, and solve for the node voltages. Then the amps, voltage drops and
+ * watts of every resistor fall out of ohm's law.
+ * There can be any number of supplies. The factorization doesn't depend on them, so each
+ * supply only costs one more pair of triangular solves: pushing 1 amp through the network
+ * from its +node to its -node. The real supply currents are then the ones that put every
+ * supply at its voltage, a small dense system with a row per supply, and the node voltages
+ * are the superposition of the 1 amp solutions scaled by those currents.
+ * The factorization and the 1 amp solutions are kept, so solving again after setVolts()
+ * or addSupply() doesn't refactor unless the new supply reaches a part of the network
+ * that was floating before.
+ * Ohms can change in the graph between solves too. solve() compares every resistor's conductance
+ * with the one it was factored with, and when only a few changed (up to getMaxUpdateRank()) it keeps
+ * the old factors and corrects the 1 amp solutions with the Sherman-Morrison-Woodbury formula:
+ * each changed resistor is a rank one change g*u*u' to the matrix, u being +1 and -1 at its ends,
+ * so with U the changed resistors' u's, C their changes in conductance and Z = G0^-1*U,
+ * G^-1*b = G0^-1*b - Z*(C^-1 + U'*Z)^-1*U'*G0^-1*b. That's one solve per changed resistor and a
+ * small dense system, instead of a factorization. More changes than that, or a change that breaks
+ * or joins pieces of the network, refactor. When the pieces and so the matrix pattern haven't changed
+ * only the numeric factorization is redone, the ordering and symbolic analysis are kept.
+ * A resistor with infinite ohms is open, it joins nothing and carries no current. Resistors
+ * added to the graph since the last factorization count as changes from an open resistor.
+ * Everything is read from and written to the circuit's CircuitGraph arrays.
+ * Resistor amps are positive when the current flows from nodeA to nodeB.
+ * @author Isaac Assegai
+ *
+ */
+public class NodalSolver {
+	/* Member Variables */
+	private CircuitGraph graph; //The circuit we are solving.
+	private ArrayList<int[]> terminals; //The +node and -node id of each supply.
+	private ArrayList<Double> volts; //The voltage of each supply.
+	private ArrayList<double[]> unitSolutions; //Node voltages with 1 amp through each supply, null until worked out.
+	private double[] supplyAmps; //The current each supply pushes out of its +node, after solve().
+	private int[] row; //The row of each node in the matrix, -1 for the grounded node of each piece and floating nodes.
+	private int[] piece; //Which connected piece of the network each node is in, -1 if no supply reaches it.
+	private int pieces; //The number of pieces.
+	private SparseCholesky factor; //The factored conductance matrix, null until the first solve.
+	private double[] factored; //The conductance of each resistor slot when we factored, 0 for open ones.
+	private int[] factoredA; //Each resistor slot's ends when we factored.
+	private int[] factoredB;
+	private int maxUpdateRank; //The most changed resistors corrected for before refactoring.
+	private int updateRank; //The changed resistors the last solve() corrected for.
+	private int factorizations; //Orderings and symbolic analyses done.
+	private int refactorizations; //Numeric factorizations that reused the symbolic analysis.
+
+	public static final int DEFAULT_MAX_UPDATE_RANK = 32;
+
+	/**
+	 * Constructor - Get ready to solve a circuit, with all of its supplies.
+	 */
+	public NodalSolver(Circuit circuit){
+		this(circuit.getGraph());
+		ArrayList<PowerSupply> supplies = circuit.getSupplies();
+		if(supplies.isEmpty()){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has no connected power supply");
+		}
+		for(int i = 0; i < supplies.size(); i++){
+			PowerSupply supply = supplies.get(i);
+			if(supply.getPosNode() == null || supply.getNegNode() == null){
+				throw new IllegalStateException("power supply " + supply.getName() + " in circuit " + circuit.getName() + " is not connected");
+			}
+			addSupply(supply.getPosNode().getId(), supply.getNegNode().getId(), supply.getVoltage());
+		}
+	}
+
+	/**
+	 * Constructor - Get ready to solve a bare graph, with a supply between two of its nodes.
+	 */
+	public NodalSolver(CircuitGraph graph, int pos, int neg, double volts){
+		this(graph);
+		addSupply(pos, neg, volts);
+	}
+
+	/**
+	 * Constructor - Get ready to solve a bare graph, supplies are added with addSupply().
+	 */
+	public NodalSolver(CircuitGraph graph){
+		this.graph = graph;
+		terminals = new ArrayList<int[]>();
+		volts = new ArrayList<Double>();
+		unitSolutions = new ArrayList<double[]>();
+		supplyAmps = new double[0];
+		factor = null;
+		maxUpdateRank = DEFAULT_MAX_UPDATE_RANK;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Add another supply between two node ids. If the network is already factored this is cheap,
+	 * unless the supply touches nodes that were floating, then the next solve() refactors.
+	 * @return The supply's index.
+	 */
+	public int addSupply(int pos, int neg, double v){
+		if(pos < 0 || neg < 0 || pos >= graph.getNodeCount() || neg >= graph.getNodeCount()){
+			throw new IllegalArgumentException("supply between nodes " + pos + " and " + neg + " is not in the graph");
+		}
+		terminals.add(new int[]{pos, neg});
+		volts.add(v);
+		unitSolutions.add(null);
+		if(factor != null && (piece[pos] == -1 || piece[neg] == -1)){
+			factor = null;
+		}
+		return terminals.size()-1;
+	}
+
+	/**
+	 * Change a supply's voltage, the next solve() reuses everything but the small dense system.
+	 */
+	public void setVolts(int k, double v){
+		volts.set(k, v);
+	}
+
+	public int getSupplyCount(){
+		return terminals.size();
+	}
+
+	/**
+	 * The most changed resistors solve() corrects for with a low rank update, more and it refactors.
+	 * Each one costs about a pair of triangular solves, 0 always refactors.
+	 */
+	public void setMaxUpdateRank(int rank){
+		if(rank < 0){
+			throw new IllegalArgumentException("update rank can't be " + rank);
+		}
+		maxUpdateRank = rank;
+	}
+
+	public int getMaxUpdateRank(){
+		return maxUpdateRank;
+	}
+
+	/**
+	 * How many changed resistors the last solve() corrected the factorization for, 0 if it was up to date.
+	 */
+	public int getUpdateRank(){
+		return updateRank;
+	}
+
+	/**
+	 * How many times the network was ordered, analyzed and factored from scratch.
+	 */
+	public int getFactorizations(){
+		return factorizations;
+	}
+
+	/**
+	 * How many times only the numeric factorization was redone, keeping the symbolic analysis.
+	 */
+	public int getRefactorizations(){
+		return refactorizations;
+	}
+
+	/**
+	 * Solves the circuit and writes the results back into the graph.
+	 * Nodes that have no path to a supply through resistors are floating,
+	 * their voltage is left unknown and their resistors carry no current.
+	 * Supplies that form a loop on their own, with no resistance in it, can't be solved.
+	 */
+	public void solve(){
+		int m = terminals.size();
+		if(m == 0){
+			throw new IllegalStateException("there is no power supply to solve for");
+		}
+		Update update = null;
+		if(factor != null && graph.getNodeCount() == piece.length){
+			update = changes();
+			if(update == null){
+				factorize();
+			}
+		}else{
+			factorize();
+		}
+		updateRank = update == null ? 0 : update.rank;
+		double[][] w = new double[m][];
+		for(int k = 0; k < m; k++){
+			//nothing changed since the factorization leaves an empty update, the unit solutions stand
+			w[k] = update == null || update.rank == 0 ? unitSolution(k) : update.correct(unitSolution(k));
+		}
+
+		supplyAmps = new double[m];
+		double[] v = superpose(w, supplyAmps);
+		writeBack(v);
+	}
+
+	/**
+	 * The current flowing out of the first supply's +node, valid after solve().
+	 */
+	public double getSupplyAmps(){
+		return getSupplyAmps(0);
+	}
+
+	/**
+	 * The current flowing out of supply k's +node, valid after solve().
+	 */
+	public double getSupplyAmps(int k){
+		return k < supplyAmps.length ? supplyAmps[k] : 0;
+	}
+
+	/**
+	 * What solve() gives with one resistor's ohms changed, worked out from the factorization with a
+	 * rank one update and nothing else redone. Neither the graph nor anything kept here is changed,
+	 * so once solve() has run any number of threads can call this at once, see FaultAnalysis.
+	 * The change is from the ohms that were factored, not whatever the graph holds now.
+	 * @param ohms The resistor's new ohms, infinite opens it and 0 shorts it.
+	 * @param amps Filled with each supply's current.
+	 * @return The node voltages, NaN for floating nodes, or null if the change cuts part of the
+	 * network off or joins two pieces of it, then it needs a solve of its own.
+	 */
+	double[] solveChanged(int slot, double ohms, double[] amps){
+		if(factor == null){
+			throw new IllegalStateException("the network has to be solved before it can be changed");
+		}
+		if(!(ohms >= 0)){
+			throw new IllegalArgumentException("resistor R" + slot + " can't have " + ohms + " ohms");
+		}
+		int m = terminals.size();
+		int a = factoredA[slot];
+		int b = factoredB[slot];
+		double change = conductance(ohms) - factored[slot];
+		Update update = null;
+		if(change != 0 && piece[a] != -1 && piece[a] == piece[b] && row[a] != row[b]){
+			update = new Update();
+			update.add(row[a], row[b], change);
+			if(!update.prepare()){
+				return null;
+			}
+		}else if(change > 0 && (piece[a] == -1 || piece[a] != piece[b])){
+			return null;
+		}
+		double[][] w = new double[m][];
+		for(int k = 0; k < m; k++){
+			w[k] = update == null ? unitSolutions.get(k) : update.correct(unitSolutions.get(k));
+		}
+		return superpose(w, amps);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Solve for the supply currents that put every supply at its voltage, and the node voltages
+	 * they give, from the row voltages with 1 amp through each supply.
+	 * It only reads what's kept here, so it's safe from any number of threads once factored.
+	 * @param amps Filled with each supply's current.
+	 * @return The node voltages, NaN for floating nodes.
+	 */
+	private double[] superpose(double[][] w, double[] amps){
+		int m = terminals.size();
+		//the first piece in each group joined up by supplies is its datum and sits at 0,
+		//the others float at an offset we solve for along with the supply currents
+		int[] group = new int[pieces];
+		for(int c = 0; c < pieces; c++){
+			group[c] = c;
+		}
+		for(int k = 0; k < m; k++){
+			int a = find(group, piece[terminals.get(k)[0]]);
+			int b = find(group, piece[terminals.get(k)[1]]);
+			if(a < b){
+				group[b] = a;
+			}else if(b < a){
+				group[a] = b;
+			}
+		}
+		int[] offset = new int[pieces];
+		int size = m;
+		for(int c = 0; c < pieces; c++){
+			offset[c] = find(group, c) == c ? -1 : size++;
+		}
+
+		//a row per supply to put it at its voltage, and a row per offset piece so the
+		//current the supplies push into it comes back out of it
+		double[][] a = new double[size][size];
+		double[] b = new double[size];
+		for(int k = 0; k < m; k++){
+			int p = terminals.get(k)[0];
+			int n = terminals.get(k)[1];
+			for(int j = 0; j < m; j++){
+				a[k][j] = unitVolts(w[j], p) - unitVolts(w[j], n);
+			}
+			if(offset[piece[p]] != -1){
+				a[k][offset[piece[p]]] += 1;
+			}
+			if(offset[piece[n]] != -1){
+				a[k][offset[piece[n]]] -= 1;
+			}
+			b[k] = volts.get(k);
+			if(offset[piece[p]] != -1){
+				a[offset[piece[p]]][k] += 1;
+			}
+			if(offset[piece[n]] != -1){
+				a[offset[piece[n]]][k] -= 1;
+			}
+		}
+		double[] x = solveDense(a, b);
+
+		System.arraycopy(x, 0, amps, 0, m);
+		int n = graph.getNodeCount();
+		double[] v = new double[n];
+		for(int i = 0; i < n; i++){
+			if(piece[i] == -1){
+				v[i] = Double.NaN;
+				continue;
+			}
+			double sum = 0;
+			if(row[i] != -1){
+				for(int k = 0; k < m; k++){
+					sum += amps[k]*w[k][row[i]];
+				}
+			}
+			v[i] = offset[piece[i]] == -1 ? sum : sum + x[offset[piece[i]]];
+		}
+		return v;
+	}
+
+	/**
+	 * Split the network into the pieces the supplies reach, ground one node in each,
+	 * and factor the conductance matrix of everything else.
+	 */
+	private void factorize(){
+		int r = graph.getResistorCount();
+		double[] ohms = graph.getOhmsArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		for(int i = 0; i < r; i++){
+			if(nodeA[i] == -1 || nodeB[i] == -1){
+				throw new IllegalStateException("resistor R" + i + " is not connected at both ends");
+			}
+			if(!(ohms[i] > 0)){
+				throw new IllegalArgumentException("resistor R" + i + " has " + ohms[i] + " ohms");
+			}
+		}
+		int[] oldRow = row;
+		int size = numberRows();
+
+		//stamp the conductance of each resistor, at most 4 entries each
+		int[] rows = new int[4*r];
+		int[] cols = new int[4*r];
+		double[] vals = new double[4*r];
+		int count = 0;
+		for(int i = 0; i < r; i++){
+			double g = conductance(ohms[i]);
+			int a = row[nodeA[i]];
+			int b = row[nodeB[i]];
+			if(a == b){
+				continue; //both ends on the same node, or floating
+			}
+			if(a != -1){
+				rows[count] = a; cols[count] = a; vals[count++] = g;
+			}
+			if(b != -1){
+				rows[count] = b; cols[count] = b; vals[count++] = g;
+			}
+			if(a != -1 && b != -1){
+				rows[count] = a; cols[count] = b; vals[count++] = -g;
+				rows[count] = b; cols[count] = a; vals[count++] = -g;
+			}
+		}
+		SparseMatrix g = SparseMatrix.fromTriplets(size, rows, cols, vals, count);
+		//the same rows and the same wiring stamp the same pattern, so the analysis still holds
+		if(factor != null && Arrays.equals(row, oldRow) && factored.length == r
+				&& Arrays.equals(nodeA, 0, r, factoredA, 0, r) && Arrays.equals(nodeB, 0, r, factoredB, 0, r)){
+			factor.refactor(g);
+			refactorizations++;
+		}else{
+			factor = new SparseCholesky(g, MinimumDegree.order(g));
+			factorizations++;
+		}
+		factored = new double[r];
+		for(int i = 0; i < r; i++){
+			factored[i] = conductance(ohms[i]);
+		}
+		factoredA = Arrays.copyOf(nodeA, r);
+		factoredB = Arrays.copyOf(nodeB, r);
+		for(int k = 0; k < unitSolutions.size(); k++){
+			unitSolutions.set(k, null);
+		}
+	}
+
+	/**
+	 * Compare the graph with what was factored.
+	 * @return The changed resistors as a low rank update, null if there are too many
+	 * or one of them can't be done without refactoring.
+	 */
+	private Update changes(){
+		int r = graph.getResistorCount();
+		double[] ohms = graph.getOhmsArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		Update update = new Update();
+		for(int i = 0; i < r; i++){
+			int a = nodeA[i];
+			int b = nodeB[i];
+			if(a == -1 || b == -1){
+				throw new IllegalStateException("resistor R" + i + " is not connected at both ends");
+			}
+			if(!(ohms[i] > 0)){
+				throw new IllegalArgumentException("resistor R" + i + " has " + ohms[i] + " ohms");
+			}
+			double g = conductance(ohms[i]);
+			if(i < factored.length){
+				if(a != factoredA[i] || b != factoredB[i]){
+					return null; //rewired
+				}
+				if(g == factored[i]){
+					continue;
+				}
+			}else if(g == 0){
+				continue; //added open
+			}
+			if(piece[a] == -1 || piece[a] != piece[b]){
+				if(g > 0){
+					return null; //it joins pieces, or reaches a floating one
+				}
+				continue;
+			}
+			if(row[a] == row[b]){
+				continue; //both ends on one node
+			}
+			if(update.rank == maxUpdateRank){
+				return null;
+			}
+			update.add(row[a], row[b], g - (i < factored.length ? factored[i] : 0));
+		}
+		return update.rank == 0 || update.prepare() ? update : null;
+	}
+
+	/**
+	 * 1/ohms, 0 for an open resistor and infinite for a short.
+	 */
+	private static double conductance(double ohms){
+		return Double.isInfinite(ohms) ? 0 : 1.0/ohms;
+	}
+
+	/**
+	 * The row voltages with 1 amp pushed in at supply k's +node and pulled out at its -node,
+	 * worked out the first time it's asked for.
+	 */
+	private double[] unitSolution(int k){
+		double[] w = unitSolutions.get(k);
+		if(w == null){
+			w = new double[factor.size()];
+			int p = row[terminals.get(k)[0]];
+			int n = row[terminals.get(k)[1]];
+			if(p != -1){
+				w[p] += 1;
+			}
+			if(n != -1){
+				w[n] -= 1;
+			}
+			factor.solve(w);
+			unitSolutions.set(k, w);
+		}
+		return w;
+	}
+
+	private double unitVolts(double[] w, int node){
+		return row[node] == -1 ? 0 : w[row[node]];
+	}
+
+	/**
+	 * Find each piece of the network a supply reaches. The first supply terminal that lands in
+	 * a piece is its ground, -nodes before +nodes, so with one supply its -node is ground.
+	 * Every other node in a piece gets a matrix row. Open resistors don't join anything.
+	 * @return The number of rows.
+	 */
+	private int numberRows(){
+		int n = graph.getNodeCount();
+		int[] start = graph.getIncidentStart();
+		int[] incident = graph.getIncident();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		double[] ohms = graph.getOhmsArray();
+
+		//breadth first search out from each ground
+		piece = new int[n];
+		Arrays.fill(piece, -1);
+		boolean[] ground = new boolean[n];
+		int[] queue = new int[n];
+		pieces = 0;
+		for(int k = 0; k < terminals.size(); k++){
+			for(int t = 1; t >= 0; t--){
+				int s = terminals.get(k)[t];
+				if(piece[s] != -1){
+					continue;
+				}
+				int head = 0;
+				int tail = 0;
+				queue[tail++] = s;
+				piece[s] = pieces;
+				ground[s] = true;
+				while(head < tail){
+					int u = queue[head++];
+					for(int p = start[u]; p < start[u+1]; p++){
+						int r = incident[p];
+						if(Double.isInfinite(ohms[r])){
+							continue; //open
+						}
+						int w = nodeA[r] == u ? nodeB[r] : nodeA[r];
+						if(piece[w] == -1){
+							piece[w] = pieces;
+							queue[tail++] = w;
+						}
+					}
+				}
+				pieces++;
+			}
+		}
+		row = new int[n];
+		int size = 0;
+		for(int i = 0; i < n; i++){
+			row[i] = (piece[i] != -1 && !ground[i]) ? size++ : -1;
+		}
+		return size;
+	}
+
+	private int find(int[] group, int c){
+		while(group[c] != c){
+			group[c] = group[group[c]];
+			c = group[c];
+		}
+		return c;
+	}
+
+	/**
+	 * Gaussian elimination with partial pivoting, it's only a row per supply so dense is fine.
+	 * A pivot that vanishes next to its column means the supplies fight each other in a loop.
+	 */
+	private double[] solveDense(double[][] a, double[] b){
+		double[] x = eliminate(a, b, 1e-12, null);
+		if(x == null){
+			throw new IllegalStateException("the power supplies form a loop with no resistance in it, or one is shorted");
+		}
+		return x;
+	}
+
+	/**
+	 * Gaussian elimination with partial pivoting, a and b are overwritten.
+	 * @param scale How big each column's entries are, null for the largest entry in it.
+	 * @return x, or null if a pivot is no bigger than tolerance times its column's scale.
+	 */
+	private static double[] eliminate(double[][] a, double[] b, double tolerance, double[] scale){
+		int size = b.length;
+		if(scale == null){
+			scale = new double[size];
+			for(int i = 0; i < size; i++){
+				for(int j = 0; j < size; j++){
+					scale[j] = Math.max(scale[j], Math.abs(a[i][j]));
+				}
+			}
+		}
+		for(int c = 0; c < size; c++){
+			int best = c;
+			for(int i = c+1; i < size; i++){
+				if(Math.abs(a[i][c]) > Math.abs(a[best][c])){
+					best = i;
+				}
+			}
+			if(!(Math.abs(a[best][c]) > tolerance*scale[c])){
+				return null;
+			}
+			double[] swap = a[c]; a[c] = a[best]; a[best] = swap;
+			double t = b[c]; b[c] = b[best]; b[best] = t;
+			for(int i = c+1; i < size; i++){
+				double f = a[i][c]/a[c][c];
+				if(f == 0){
+					continue;
+				}
+				for(int j = c; j < size; j++){
+					a[i][j] -= f*a[c][j];
+				}
+				b[i] -= f*b[c];
+			}
+		}
+		double[] x = new double[size];
+		for(int i = size-1; i >= 0; i--){
+			double sum = b[i];
+			for(int j = i+1; j < size; j++){
+				sum -= a[i][j]*x[j];
+			}
+			x[i] = sum/a[i][i];
+		}
+		return x;
+	}
+
+	private void writeBack(double[] v){
+		int n = graph.getNodeCount();
+		double[] voltage = graph.getVoltageArray();
+		System.arraycopy(v, 0, voltage, 0, n);
+		int r = graph.getResistorCount();
+		double[] ohms = graph.getOhmsArray();
+		double[] amps = graph.getAmpsArray();
+		double[] watts = graph.getWattsArray();
+		double[] vdrop = graph.getVoltageDropArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		for(int i = 0; i < r; i++){
+			double drop = piece[nodeA[i]] == -1 || piece[nodeB[i]] == -1 ? 0 : voltage[nodeA[i]] - voltage[nodeB[i]];
+			double a = drop/ohms[i];
+			vdrop[i] = drop;
+			amps[i] = a;
+			watts[i] = drop*a;
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * The resistors that changed since the factorization, as a low rank update G = G0 + U*C*U'.
+	 */
+	private class Update {
+		int rank;
+		int[] rowA = new int[4]; //The rows at each changed resistor's ends, -1 if grounded.
+		int[] rowB = new int[4];
+		double[] change = new double[4]; //Its change in conductance.
+		double[][] z; //Z = G0^-1*U, a column per changed resistor.
+		double[][] s; //C^-1 + U'*Z
+
+		void add(int a, int b, double g){
+			if(rank == rowA.length){
+				rowA = Arrays.copyOf(rowA, 2*rank);
+				rowB = Arrays.copyOf(rowB, 2*rank);
+				change = Arrays.copyOf(change, 2*rank);
+			}
+			rowA[rank] = a;
+			rowB[rank] = b;
+			change[rank++] = g;
+		}
+
+		/**
+		 * Work out Z and the capacitance matrix, and make sure it can be solved.
+		 * It's singular when the changes cut a piece of the network off, then we have to refactor.
+		 * A short is an infinite change, its 1/change is just 0.
+		 * @return false if it's singular.
+		 */
+		boolean prepare(){
+			double[] work = new double[factor.size()];
+			z = new double[rank][];
+			for(int j = 0; j < rank; j++){
+				z[j] = new double[factor.size()];
+				if(rowA[j] != -1){
+					z[j][rowA[j]] = 1;
+				}
+				if(rowB[j] != -1){
+					z[j][rowB[j]] = -1;
+				}
+				factor.solve(z[j], work);
+			}
+			//a cut shows up as the two terms cancelling, so that's what the pivots are measured against
+			s = new double[rank][rank];
+			double[] scale = new double[rank];
+			for(int i = 0; i < rank; i++){
+				for(int j = 0; j < rank; j++){
+					s[i][j] = across(z[j], i);
+					scale[j] = Math.max(scale[j], Math.abs(s[i][j]));
+				}
+				s[i][i] += 1/change[i];
+				scale[i] = Math.max(scale[i], Math.abs(1/change[i]));
+			}
+			return eliminate(copy(s), new double[rank], 1e-9, scale) != null;
+		}
+
+		/**
+		 * @param w0 G0^-1*b
+		 * @return G^-1*b, w0 is left as it is.
+		 */
+		double[] correct(double[] w0){
+			double[] t = new double[rank];
+			for(int i = 0; i < rank; i++){
+				t[i] = across(w0, i);
+			}
+			double[] q = eliminate(copy(s), t, 0, null);
+			double[] w = w0.clone();
+			for(int j = 0; j < rank; j++){
+				double qj = q[j];
+				double[] zj = z[j];
+				for(int i = 0; i < w.length; i++){
+					w[i] -= qj*zj[i];
+				}
+			}
+			return w;
+		}
+
+		/**
+		 * u_i'*x, the difference in x across changed resistor i.
+		 */
+		private double across(double[] x, int i){
+			return (rowA[i] == -1 ? 0 : x[rowA[i]]) - (rowB[i] == -1 ? 0 : x[rowB[i]]);
+		}
+
+		private double[][] copy(double[][] a){
+			double[][] c = new double[a.length][];
+			for(int i = 0; i < a.length; i++){
+				c[i] = a[i].clone();
+			}
+			return c;
+		}
+	}
+}
@@ -1,5 +1,3 @@
-import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Random;
 
@@ -7,26 +5,59 @@ import java.util.Random;
  * Nodes connect power supplies and resistors together and allow
  * the power to move through them, like the force.
  * A node has a list of connections, and a voltage.
+ * The voltage lives in the circuit's CircuitGraph, at the node's id.
  * @author Isaac Assegai
  *
  */
 public class Node {
 	/* Member Variables. */
-	private String name; //The name of this node.
-	private Double voltage; //The voltage of this node, or null if not known.
-	private ArrayList<Element>connections; //A list of the names of r's, or ps's this node is connected to.
+	private int id; //Handed out by the circuit this node is added to, -1 until then.
+	private String name; //An optional label, if never set one is made up from the id.
+	private CircuitGraph graph; //Where our voltage lives, a little graph of our own until we're added to a circuit.
+	private int index; //Our node number in graph, the same as id once we're in a circuit.
+	private ArrayList<Element>connections; //A list of the r's, or ps's this node is connected to.
 	Random random;
 	
 	/**
 	 * Constructor - Create a new empty node;
 	 */
+	public Node(){
+		this(null);
+	}
+	
 	public Node(Random random){
 		this.random = random;
-		name = newName(random);
-		voltage = null;
+		id = -1;
+		name = null;
+		graph = new CircuitGraph(1, 1);
+		index = graph.addNode();
 		connections = new ArrayList<Element>();
 	}
 	
+	/**
+	 * Constructor - A view of a node that already exists in a circuit's graph.
+	 */
+	Node(CircuitGraph graph, int id){
+		this.random = null;
+		this.id = id;
+		name = null;
+		this.graph = graph;
+		index = id;
+		connections = new ArrayList<Element>(4);
+	}
+	
+	/**
+	 * Move our voltage to node id in another graph, and view that from now on.
+	 */
+	void attach(CircuitGraph g, int id){
+		g.ensureNodes(id+1);
+		g.setVoltage(id, graph.getVoltage(index));
+		graph = g;
+		index = id;
+		this.id = id;
+		graph.markEndpointsStale();
+	}
+	
 	/* Public Methods. */
 	public void addConnection(Element e){
 		connections.add(e);
@@ -40,8 +71,16 @@ public class Node {
 		}
 	}
 	
+	public int getId(){
+		return id;
+	}
+	
+	
 	public String getName() {
-		return name;
+		if(name != null){
+			return name;
+		}
+		return "N" + (id == -1 ? "?" : Integer.toString(id));
 	}
 	
 	public ArrayList<Element>getConnections(){
@@ -53,30 +92,33 @@ public class Node {
 	 * @param e
 	 */
 	public void removeConnection(Element e){
-		for(int i = 0; i < connections.size(); i++){
+		for(int i = connections.size()-1; i >= 0; i--){
 			Element testElement = connections.get(i);
-			if(testElement.getName().equals(e.getName())){
-				connections.remove(testElement);
+			if(testElement == e || (e.getId() != -1 && testElement.getId() == e.getId())){
+				connections.remove(i);
 			}
 		}
 	}
 	
 	public Double getVoltage(){
-		return voltage;
+		return Resistor.unknownIsNull(graph.getVoltage(index));
 	}
 	
 	public void setVoltage(Double v){
-		voltage = v;
+		graph.setVoltage(index, Resistor.nullIsUnknown(v));
 	}
 	
-	/* Private Methods */
-	private String newName(Random random){
-		return new BigInteger(16, random).toString(16);
-	}
-
 	public void setName(String name2) {
 		name = name2;
 	}
+	
+	/**
+	 * Take on another node's id and label, used when copying nodes.
+	 */
+	void copyIdentity(Node other){
+		id = other.id;
+		name = other.name;
+	}
 
 	/**
 	 * Copy's a list of connections to this nodes connections
@@ -89,7 +131,7 @@ public class Node {
 			Element oldConnection = oldConnections.get(i);
 			if(oldConnection instanceof Resistor){
 				Resistor r = new Resistor(((Resistor) oldConnection).getOhms(), oldConnection.getRandom());
-				r.setName(oldConnection.getName());
+				r.copyIdentity(oldConnection);
 				r.setAmps(((Resistor) oldConnection).getAmps());
 				r.setWatts(((Resistor) oldConnection).getWatts());
 				r.setVoltageDrop(((Resistor) oldConnection).getVoltageDrop());
@@ -98,7 +140,7 @@ public class Node {
 				connections.add(r);
 			}else if(oldConnection instanceof PowerSupply){
 				PowerSupply s = new PowerSupply(((PowerSupply) oldConnection).getVoltage(), oldConnection.getRandom());
-				s.setName(oldConnection.getName());
+				s.copyIdentity(oldConnection);
 				s.setPosNode(((PowerSupply) oldConnection).getPosNode());
 				s.setNegNode(((PowerSupply) oldConnection).getNegNode());
 				connections.add(s);
@@ -0,0 +1,272 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a ReductionPlan with the branches of its series/parallel tree worked on at the same time.
+ * The plan's combines form a tree: the leaves are the circuit's resistors, and every combine
+ * joins the two networks on either side of an ordinary node (series), or two networks across the
+ * same pair of extraordinary nodes (parallel). Disjoint branches don't depend on each other, so:
+ * 1. Up the tree, each branch's ohms are worked out in its own ForkJoin task, then the branches are merged.
+ * 2. Down the tree, once a combine's amps are known, each branch is back substituted in its own task.
+ * Branches smaller than the threshold are done in a plain loop on the task that reached them.
+ * A long series chain is a deep, thin tree, so each task walks down the big side of the tree
+ * in a loop and only forks off the small side, the stack depth stays small for any shape.
+ * The answer is the same as ReductionPlan.execute(), in the same PlanWorkspace.
+ * @author Isaac Assegai
+ *
+ */
+public class ParallelReducer {
+	/* Member Variables */
+	public static final int DEFAULT_THRESHOLD = 4096; //Branches with fewer combines than this aren't split.
+
+	private ReductionPlan plan;
+	private ForkJoinPool pool;
+	private int threshold;
+	private int r0; //Slots below this are resistors, the leaves.
+	private boolean[] series;
+	private int[] left;
+	private int[] right;
+	private int[] middle;
+	private int[] slotA;
+	private int[] slotB;
+	private int[] size; //The number of combines in the branch under each slot, 0 for a resistor.
+	private int[] order; //Every combine, parents before children, so each branch is one run of it.
+	private int[] start; //Where each combine's branch starts in order, by combine.
+
+	/* The solve in progress, the tasks write to disjoint parts of these. */
+	private double[] o;
+	private double[] amps;
+	private double[] v;
+
+	/**
+	 * Constructor - Solve plans on a pool, splitting branches of DEFAULT_THRESHOLD combines or more.
+	 */
+	public ParallelReducer(ReductionPlan plan, ForkJoinPool pool){
+		this(plan, pool, DEFAULT_THRESHOLD);
+	}
+
+	public ParallelReducer(ReductionPlan plan, ForkJoinPool pool, int threshold){
+		this.plan = plan;
+		this.pool = pool;
+		this.threshold = Math.max(1, threshold);
+		r0 = plan.getResistorCount();
+		series = plan.getSeries();
+		left = plan.getLeft();
+		right = plan.getRight();
+		middle = plan.getMiddle();
+		slotA = plan.getSlotA();
+		slotB = plan.getSlotB();
+		size = new int[slotA.length];
+		for(int k = 0; k < series.length; k++){
+			size[r0+k] = 1 + size[left[k]] + size[right[k]];
+		}
+		order = new int[series.length];
+		start = new int[series.length];
+		int eq = plan.getEquivalent();
+		if(eq >= r0){ //not one of the circuit's own resistors left as it was, there are combines to order
+			int[] stack = new int[series.length];
+			int count = 0;
+			int top = 0;
+			stack[top++] = eq;
+			while(top > 0){
+				int s = stack[--top];
+				start[s-r0] = count;
+				order[count++] = s;
+				int k = s - r0;
+				//right is pushed first so the left branch comes straight after its parent
+				if(size[right[k]] > 0){
+					stack[top++] = right[k];
+				}
+				if(size[left[k]] > 0){
+					stack[top++] = left[k];
+				}
+			}
+		}
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Solve for a set of ohms and a supply voltage. Only one solve can run at a time on a ParallelReducer.
+	 * @param ohms The ohms of each of the circuit's resistors, by CircuitGraph slot.
+	 * @param ws Where the answer goes, from plan.newWorkspace().
+	 * @return The current drawn from the supply.
+	 */
+	public synchronized double execute(double[] ohms, double volts, PlanWorkspace ws){
+		if(ohms.length < r0){
+			throw new IllegalArgumentException("the plan needs " + r0 + " ohms values, not " + ohms.length);
+		}
+		if(ws.ohms.length != slotA.length || ws.voltage.length != plan.getNodeCount()){
+			throw new IllegalArgumentException("the workspace was made for a different plan");
+		}
+		o = ws.ohms;
+		amps = ws.amps;
+		v = ws.voltage;
+		try{
+			System.arraycopy(ohms, 0, o, 0, r0);
+			for(int n = 0; n < v.length; n++){
+				v[n] = Double.NaN;
+			}
+			for(int s = 0; s < r0; s++){
+				amps[s] = 0; //resistors that were never reduced carry nothing
+			}
+			v[plan.getPos()] = volts;
+			v[plan.getNeg()] = 0;
+			int eq = plan.getEquivalent();
+			if(eq == -1){
+				ws.supplyAmps = 0;
+				return 0;
+			}
+			if(eq < r0){
+				//a single resistor across the supply, nothing was combined
+				amps[eq] = (v[slotA[eq]] - v[slotB[eq]])/o[eq];
+				ws.supplyAmps = Math.abs(amps[eq]);
+				return ws.supplyAmps;
+			}
+			pool.invoke(new Up(eq));
+			amps[eq] = (v[slotA[eq]] - v[slotB[eq]])/o[eq];
+			pool.invoke(new Down(eq));
+			ws.supplyAmps = Math.abs(amps[eq]);
+			return ws.supplyAmps;
+		}finally{
+			o = null;
+			amps = null;
+			v = null;
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Work out a combine's ohms from its operands.
+	 */
+	private void combine(int r){
+		int k = r - r0;
+		double x = o[left[k]];
+		double y = o[right[k]];
+		o[r] = series[k] ? x + y : (x*y)/(x+y);
+	}
+
+	/**
+	 * Given a combine's amps, work out its middle node's voltage and its operands' amps.
+	 */
+	private void split(int r){
+		int k = r - r0;
+		int x = left[k];
+		int y = right[k];
+		if(series[k]){
+			v[middle[k]] = v[slotA[r]] - amps[r]*o[x];
+		}
+		amps[x] = (v[slotA[x]] - v[slotB[x]])/o[x];
+		amps[y] = (v[slotA[y]] - v[slotB[y]])/o[y];
+	}
+
+	private void upInLoop(int r){
+		if(size[r] == 0){
+			return;
+		}
+		int first = start[r-r0];
+		for(int i = first + size[r] - 1; i >= first; i--){
+			combine(order[i]);
+		}
+	}
+
+	private void downInLoop(int r){
+		if(size[r] == 0){
+			return;
+		}
+		int first = start[r-r0];
+		int end = first + size[r];
+		for(int i = first; i < end; i++){
+			split(order[i]);
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * Works out the ohms of every combine in a branch.
+	 */
+	private class Up extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int root;
+
+		Up(int root){
+			this.root = root;
+		}
+
+		protected void compute(){
+			//walk down the big side, forking off the small side when it's worth it
+			int[] spine = new int[16];
+			int length = 0;
+			Up[] forked = new Up[16];
+			int forks = 0;
+			int r = root;
+			while(size[r] >= threshold){
+				if(length == spine.length){
+					spine = Arrays.copyOf(spine, 2*length);
+				}
+				spine[length++] = r;
+				int k = r - r0;
+				int big = size[left[k]] >= size[right[k]] ? left[k] : right[k];
+				int small = big == left[k] ? right[k] : left[k];
+				if(size[small] >= threshold){
+					if(forks == forked.length){
+						forked = Arrays.copyOf(forked, 2*forks);
+					}
+					forked[forks] = new Up(small);
+					forked[forks++].fork();
+				}else{
+					upInLoop(small);
+				}
+				r = big;
+			}
+			upInLoop(r);
+			for(int i = forks-1; i >= 0; i--){
+				forked[i].join();
+			}
+			for(int i = length-1; i >= 0; i--){
+				combine(spine[i]);
+			}
+		}
+	}
+
+	/**
+	 * Back substitutes through a branch whose top combine's amps are already known.
+	 */
+	private class Down extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int root;
+
+		Down(int root){
+			this.root = root;
+		}
+
+		protected void compute(){
+			Down[] forked = new Down[16];
+			int forks = 0;
+			int r = root;
+			while(size[r] >= threshold){
+				split(r);
+				int k = r - r0;
+				int big = size[left[k]] >= size[right[k]] ? left[k] : right[k];
+				int small = big == left[k] ? right[k] : left[k];
+				if(size[small] >= threshold){
+					if(forks == forked.length){
+						forked = Arrays.copyOf(forked, 2*forks);
+					}
+					forked[forks] = new Down(small);
+					forked[forks++].fork();
+				}else{
+					downInLoop(small);
+				}
+				r = big;
+			}
+			downInLoop(r);
+			for(int i = forks-1; i >= 0; i--){
+				forked[i].join();
+			}
+		}
+	}
+}
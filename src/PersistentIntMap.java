@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A map from int keys to values that is never changed, put() and remove() return a new map
+ * and leave this one as it was. The two maps share everything but the path to the key
+ * that changed, so keeping every version of a map costs O(log n) per change, not O(n).
+ * It's a hash array mapped trie: each level takes 5 bits of the key, lowest first, and a
+ * bitmap says which of the 32 children are there so empty ones take no room.
+ * Element ids are handed out in order, so they spread evenly over the trie without hashing.
+ * CircuitHistory keeps each step of a reduction in these.
+ * @author Isaac Assegai
+ *
+ */
+public class PersistentIntMap<V> {
+	/* Member Variables */
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	private static final Trie EMPTY = new Trie(0, new Object[0]);
+
+	private final Trie root;
+	private final int size;
+
+	/**
+	 * Constructor - An empty map.
+	 */
+	public PersistentIntMap(){
+		this(EMPTY, 0);
+	}
+
+	private PersistentIntMap(Trie root, int size){
+		this.root = root;
+		this.size = size;
+	}
+
+	/* Public Methods */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return The value at key, or null if there isn't one.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key){
+		Trie trie = root;
+		for(int shift = 0; ; shift += BITS){
+			int bit = 1 << ((key >>> shift) & MASK);
+			if((trie.bitmap & bit) == 0){
+				return null;
+			}
+			Object slot = trie.slots[Integer.bitCount(trie.bitmap & (bit-1))];
+			if(slot instanceof Trie){
+				trie = (Trie)slot;
+				continue;
+			}
+			Entry entry = (Entry)slot;
+			return entry.key == key ? (V)entry.value : null;
+		}
+	}
+
+	public boolean containsKey(int key){
+		return get(key) != null;
+	}
+
+	/**
+	 * @return A map like this one, with value at key.
+	 */
+	public PersistentIntMap<V> put(int key, V value){
+		if(value == null){
+			throw new IllegalArgumentException("a persistent map can't hold null, remove the key instead");
+		}
+		boolean[] added = new boolean[1];
+		Trie changed = put(root, 0, new Entry(key, value), added);
+		return new PersistentIntMap<V>(changed, added[0] ? size+1 : size);
+	}
+
+	/**
+	 * @return A map like this one, without key. This map if key isn't in it.
+	 */
+	public PersistentIntMap<V> remove(int key){
+		if(get(key) == null){
+			return this;
+		}
+		Trie changed = remove(root, 0, key);
+		return new PersistentIntMap<V>(changed == null ? EMPTY : changed, size-1);
+	}
+
+	/**
+	 * Every value, in the order of their keys.
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<V> values(){
+		Entry[] entries = new Entry[size];
+		collect(root, entries, 0);
+		Arrays.sort(entries);
+		ArrayList<V>values = new ArrayList<V>(size);
+		for(int i = 0; i < entries.length; i++){
+			values.add((V)entries[i].value);
+		}
+		return values;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Copy the path down to key's slot, the rest of the trie is shared.
+	 */
+	private static Trie put(Trie trie, int shift, Entry entry, boolean[] added){
+		int bit = 1 << ((entry.key >>> shift) & MASK);
+		int at = Integer.bitCount(trie.bitmap & (bit-1));
+		if((trie.bitmap & bit) == 0){
+			Object[] slots = new Object[trie.slots.length+1];
+			System.arraycopy(trie.slots, 0, slots, 0, at);
+			slots[at] = entry;
+			System.arraycopy(trie.slots, at, slots, at+1, trie.slots.length-at);
+			added[0] = true;
+			return new Trie(trie.bitmap | bit, slots);
+		}
+		Object slot = trie.slots[at];
+		Object replacement;
+		if(slot instanceof Trie){
+			replacement = put((Trie)slot, shift+BITS, entry, added);
+		}else if(((Entry)slot).key == entry.key){
+			replacement = entry;
+		}else{
+			//two keys share this slot, push them both down a level
+			Trie below = put(EMPTY, shift+BITS, (Entry)slot, added);
+			replacement = put(below, shift+BITS, entry, added);
+		}
+		Object[] slots = trie.slots.clone();
+		slots[at] = replacement;
+		return new Trie(trie.bitmap, slots);
+	}
+
+	/**
+	 * The key is known to be here. A level left with a single entry and nothing below
+	 * gives the entry back to its parent, so the trie stays as shallow as it was.
+	 * @return The trie without key, null if it's left empty.
+	 */
+	private static Trie remove(Trie trie, int shift, int key){
+		int bit = 1 << ((key >>> shift) & MASK);
+		int at = Integer.bitCount(trie.bitmap & (bit-1));
+		Object slot = trie.slots[at];
+		Object replacement = null;
+		if(slot instanceof Trie){
+			Trie below = remove((Trie)slot, shift+BITS, key);
+			if(below != null && below.slots.length == 1 && below.slots[0] instanceof Entry){
+				replacement = below.slots[0];
+			}else{
+				replacement = below;
+			}
+		}
+		if(replacement == null){
+			if(trie.slots.length == 1){
+				return null;
+			}
+			Object[] slots = new Object[trie.slots.length-1];
+			System.arraycopy(trie.slots, 0, slots, 0, at);
+			System.arraycopy(trie.slots, at+1, slots, at, slots.length-at);
+			return new Trie(trie.bitmap & ~bit, slots);
+		}
+		Object[] slots = trie.slots.clone();
+		slots[at] = replacement;
+		return new Trie(trie.bitmap, slots);
+	}
+
+	private static int collect(Trie trie, Entry[] entries, int count){
+		for(int i = 0; i < trie.slots.length; i++){
+			Object slot = trie.slots[i];
+			if(slot instanceof Trie){
+				count = collect((Trie)slot, entries, count);
+			}else{
+				entries[count++] = (Entry)slot;
+			}
+		}
+		return count;
+	}
+
+	/* Private Classes */
+	private static final class Trie {
+		final int bitmap; //Which of the 32 children are there.
+		final Object[] slots; //The children that are there, in bit order, each an Entry or a Trie one level down.
+
+		Trie(int bitmap, Object[] slots){
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+		final int key;
+		final Object value;
+
+		Entry(int key, Object value){
+			this.key = key;
+			this.value = value;
+		}
+
+		public int compareTo(Entry other){
+			return Integer.compare(key, other.key);
+		}
+	}
+}
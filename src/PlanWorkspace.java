@@ -0,0 +1,41 @@
+/**
+ * The scratch arrays a ReductionPlan works in. After execute() they hold the answer:
+ * the ohms and amps of every slot, original and combined, and the voltage of every node.
+ * A workspace is reused from one execute() to the next, so don't share one between threads.
+ * @author Isaac Assegai
+ *
+ */
+public class PlanWorkspace {
+	/* Member Variables */
+	final double[] ohms; //By plan slot.
+	final double[] amps; //By plan slot, positive when current flows from nodeA to nodeB.
+	final double[] voltage; //By node id, NaN for nodes the supply doesn't reach.
+	double supplyAmps;
+
+	/**
+	 * Constructor - Use ReductionPlan.newWorkspace().
+	 */
+	PlanWorkspace(int slots, int nodes){
+		ohms = new double[slots];
+		amps = new double[slots];
+		voltage = new double[nodes];
+		supplyAmps = 0;
+	}
+
+	/* Public Methods */
+	public double getOhms(int slot){
+		return ohms[slot];
+	}
+
+	public double getAmps(int slot){
+		return amps[slot];
+	}
+
+	public double getVoltage(int node){
+		return voltage[node];
+	}
+
+	public double getSupplyAmps(){
+		return supplyAmps;
+	}
+}
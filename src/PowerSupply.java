@@ -1,4 +1,3 @@
-import java.math.BigInteger;
 import java.util.Random;
 
 /**
@@ -11,18 +10,28 @@ public class PowerSupply extends Element{
 	Double voltage;
 	Node posNode;
 	Node negNode;
+	Double amps; //The current it pushes out of its +node, null until the circuit is solved.
 	
 	/**
 	 * Create a new unconnected power supply.
 	 */
+	public PowerSupply(Double v){
+		this(v, null);
+	}
+	
 	public PowerSupply(Double v, Random r){
 		super(r);
 		voltage = v;
 		posNode = null;
 		negNode = null;
+		amps = null;
 	}
 
 	/* public methods. */
+	protected String getPrefix(){
+		return "V";
+	}
+	
 	public void setPosNode(Node n){
 		posNode = n;
 	}
@@ -47,4 +56,12 @@ public class PowerSupply extends Element{
 		return negNode;
 	}
 	
+	public Double getAmps(){
+		return amps;
+	}
+	
+	public void setAmps(Double a){
+		amps = a;
+	}
+	
 }
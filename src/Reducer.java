@@ -0,0 +1,853 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The Reducer simplifies a circuit down to a single equivalent resistor without
+ * rescanning every pair of resistors at each step. It keeps an index of the circuit:
+ * 1. Each node's incident resistors.
+ * 2. A worklist of ordinary nodes that have exactly 2 resistors, these are series candidates.
+ * 3. A hash on the unordered (nodeA, nodeB) pair of each resistor, two resistors with the same
+ *    pair are parallel candidates.
+ * 4. A worklist of ordinary nodes with only 1 resistor, these dangle and carry no current.
+ * Each combine only touches the nodes at either end of the resistors it combines, so
+ * the index is updated in O(1) and a full reduction runs in near linear time.
+ * When there is nothing in series, in parallel or dangling, as in a bridge, an ordinary node is
+ * eliminated with the star-mesh transform: its d resistors are replaced by one between every
+ * pair of their far ends, R(i,j) = R(i)*R(j)*(1/R(1) + ... + 1/R(d)). With d = 3 that's Y-Delta.
+ * Every pair adds a resistor, so the node with the fewest resistors is picked each time
+ * (minimum degree, like NodalSolver's ordering) to keep the fill-in down. Degrees can go up
+ * after a star-mesh, so incident lists that fill up are moved to the end of the array with room to grow.
+ * Every mesh resistor is kept for the log, so this suits bridges and small meshes, a grid
+ * much past a few thousand nodes is better solved with solveNodal().
+ * Internally resistors are referred to by slot number, and nodes by their id.
+ * @author Isaac Assegai
+ *
+ */
+public class Reducer {
+	/* Member Variables */
+	private Circuit circuit; //The circuit we are reducing, it is never changed.
+	private Node[] nodes; //node id -> Node
+	private boolean[] terminal; //The supply connects to this node, so it is never ordinary.
+	private int[] incStart; //Each node's incident slots live in incident[incStart[n]..incStart[n]+degree[n]-1]
+	private int[] incident;
+	private int[] degree;
+	private int[] room; //How many slots each node's incident list has space for.
+	private int incidentTop; //incident[] is used up to here, lists that outgrow their room move past it.
+	private int[] atA; //Where each slot sits in its nodeA's incident list, so nothing has to be searched.
+	private int[] atB; //Where each slot sits in its nodeB's incident list.
+
+	private CircuitGraph work; //The working graph, one resistor slot per original or combined resistor.
+	private Resistor[] slots; //slot -> Resistor, original resistors first, then views of the combined ones.
+	private double[] ohms; //work's arrays, sized up front so they never move.
+	private int[] slotA; //The node id at each slot's nodeA.
+	private int[] slotB; //The node id at each slot's nodeB.
+	private boolean[] alive; //False once a slot has been combined into another.
+	private int live; //How many slots are still alive.
+
+	private int[] seriesWork; //Stack of node numbers that may be series candidates.
+	private int seriesTop;
+	private int[] parallelWork; //Stack of slot pairs that may be parallel candidates.
+	private int parallelTop;
+	private int[] danglingWork; //Stack of node numbers that may have a single resistor.
+	private int danglingTop;
+	private long[] starHeap; //Min heap of (degree << 32 | node), stale entries are skipped when they come off.
+	private int starTop;
+	private boolean starting; //Set once the first star-mesh is needed, only then are degrees tracked in starHeap.
+	private boolean hasTerminals; //False when there's no supply, then the last resistor is the answer even if it dangles.
+	private boolean seriesParallelOnly; //Give up at the first dangling resistor or star-mesh instead.
+	private long[] pairKeys; //Open addressing hash, unordered node pair -> the last slot added between them.
+	private int[] pairSlots; //-1 marks an empty bucket.
+	private ArrayList<Replacement>log; //Every combine, in the order it was done.
+	private CircuitTracer tracer; //The circuit's tracer, told about each combine.
+	private int seriesMerges; //What reduce() did, for SolverMetrics.
+	private int parallelMerges;
+	private int starEliminations;
+	private int danglingDrops;
+	private int staleCandidates; //Worklist entries that turned out not to be candidates any more.
+	private int instances; //Sub-circuit copies that went in as a single resistor.
+
+	/**
+	 * Constructor - Index the resistors of a circuit.
+	 * Resistors with both ends on the same node can't carry any current, they are left out.
+	 */
+	public Reducer(Circuit circuit){
+		this(circuit, null);
+	}
+
+	/**
+	 * Constructor - Index the resistors of a circuit, with each sub-circuit copy placed in it looked up
+	 * in cache and indexed as the single resistor it's equivalent to. The copy goes in the log as an
+	 * INSTANCE before any combine. A copy that something else connects to inside, or whose resistors
+	 * were changed after it was placed, is indexed resistor by resistor like everything else.
+	 * @param cache Where sub-circuit equivalents are kept, null to index every resistor.
+	 */
+	public Reducer(Circuit circuit, EquivalentCache cache){
+		this.circuit = circuit;
+		tracer = circuit.getTracer();
+		ArrayList<Resistor>resistors = circuit.getResistors();
+		CircuitGraph graph = circuit.getGraph();
+		int[] graphA = graph.getNodeAArray();
+		int[] graphB = graph.getNodeBArray();
+		int r = resistors.size();
+
+		//nodes are looked up by id
+		nodes = new Node[circuit.getNodeIdCount()];
+		if(circuit.getSupplies().size() > 1){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has more than one power supply, use solveNodal()");
+		}
+		PowerSupply supply = circuit.getSupply();
+		if(supply != null){
+			number(supply.getPosNode());
+			number(supply.getNegNode());
+		}
+		for(int i = 0; i < r; i++){
+			Resistor resistor = resistors.get(i);
+			if(resistor.getNodeA() == null || resistor.getNodeB() == null){
+				throw new IllegalStateException("resistor " + resistor.getName() + " is not connected at both ends");
+			}
+			number(resistor.getNodeA());
+			number(resistor.getNodeB());
+		}
+		int n = nodes.length;
+		terminal = new boolean[n];
+		if(supply != null){
+			markTerminal(supply.getPosNode());
+			markTerminal(supply.getNegNode());
+		}
+		hasTerminals = supply != null && (supply.getPosNode() != null || supply.getNegNode() != null);
+
+		//every combine frees 2 slots and uses 1, so 2r slots is enough until a star-mesh needs more
+		slots = new Resistor[Math.max(1, 2*r)];
+		work = new CircuitGraph(slots.length, 1);
+		ohms = work.getOhmsArray();
+		slotA = work.getNodeAArray();
+		slotB = work.getNodeBArray();
+		alive = new boolean[slots.length];
+		atA = new int[slots.length];
+		atB = new int[slots.length];
+		live = 0;
+
+		//the resistors of collapsed sub-circuit copies are left out, each copy is one resistor across its terminals
+		boolean[] inside = new boolean[r];
+		SubCircuitInstance[] collapsed = collapsible(cache, inside, graph);
+
+		//degrees only go down until a star-mesh, so each node's incident list is sized up front
+		incStart = new int[n+1];
+		for(int i = 0; i < r; i++){
+			int g = resistors.get(i).getIndex();
+			if(graphA[g] != graphB[g] && !inside[i]){
+				incStart[graphA[g]+1]++;
+				incStart[graphB[g]+1]++;
+			}
+		}
+		for(int k = 0; k < collapsed.length; k++){
+			incStart[collapsed[k].plus.getId()+1]++;
+			incStart[collapsed[k].minus.getId()+1]++;
+		}
+		for(int i = 0; i < n; i++){
+			incStart[i+1] += incStart[i];
+		}
+		incident = new int[incStart[n]];
+		incidentTop = incStart[n];
+		degree = new int[n];
+		room = new int[n];
+		for(int i = 0; i < n; i++){
+			room[i] = incStart[i+1] - incStart[i];
+		}
+
+		seriesWork = new int[n + 2*r + 1]; //every node once, plus 2 more for each parallel combine, more after a star-mesh
+		seriesTop = 0;
+		parallelWork = new int[2*slots.length];
+		parallelTop = 0;
+		danglingWork = new int[n+1];
+		danglingTop = 0;
+		starHeap = new long[16];
+		starTop = 0;
+		starting = false;
+		int buckets = Integer.highestOneBit(Math.max(2, 2*slots.length)) << 1;
+		pairKeys = new long[buckets];
+		pairSlots = new int[buckets];
+		Arrays.fill(pairSlots, -1);
+		log = new ArrayList<Replacement>(Math.max(0, r-1));
+
+		for(int i = 0; i < r; i++){
+			Resistor resistor = resistors.get(i);
+			int g = resistor.getIndex();
+			if(graphA[g] != graphB[g] && !inside[i]){
+				int s = addSlot(graph.getOhms(g), graphA[g], graphB[g]);
+				slots[s] = resistor;
+				atA[s] = incStart[slotA[s]] + degree[slotA[s]]++;
+				atB[s] = incStart[slotB[s]] + degree[slotB[s]]++;
+				incident[atA[s]] = s;
+				incident[atB[s]] = s;
+			}
+		}
+		for(int k = 0; k < collapsed.length; k++){
+			SubCircuitInstance instance = collapsed[k];
+			EquivalentCache.Entry entry = cache.lookup(instance.sub);
+			int s = addSlot(entry.ohms, instance.plus.getId(), instance.minus.getId());
+			atA[s] = incStart[slotA[s]] + degree[slotA[s]]++;
+			atB[s] = incStart[slotB[s]] + degree[slotB[s]]++;
+			incident[atA[s]] = s;
+			incident[atB[s]] = s;
+			record(view(s), new Replacement(instance, entry.ratios));
+			instances++;
+		}
+		for(int i = 0; i < n; i++){
+			touched(i);
+		}
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Finds two resistors in series, they share an ordinary node.
+	 * @return The two resistors, or null if there are none.
+	 */
+	public ArrayList<Resistor>findSeries(){
+		int m = nextSeriesNode();
+		if(m == -1){
+			return null;
+		}
+		return pair(incident[incStart[m]], incident[incStart[m]+1]);
+	}
+
+	/**
+	 * Finds two resistors in parallel, they share both nodes.
+	 * @return The two resistors, or null if there are none.
+	 */
+	public ArrayList<Resistor>findParallel(){
+		if(!nextParallelPair()){
+			return null;
+		}
+		return pair(parallelWork[parallelTop-2], parallelWork[parallelTop-1]);
+	}
+
+	/**
+	 * Finds an ordinary node with a single resistor on it, for simplifyStepwise().
+	 * @return The node, or null if there are none.
+	 */
+	public Node findDangling(){
+		int m = nextDanglingNode();
+		return m == -1 ? null : nodes[m];
+	}
+
+	/**
+	 * Finds the ordinary node with the fewest resistors, at least 3, to eliminate with the star-mesh transform.
+	 * @return The node, or null if there are none.
+	 */
+	public Node findStar(){
+		int m = nextStarNode();
+		return m == -1 ? null : nodes[m];
+	}
+
+	/**
+	 * Combine series and parallel resistors, drop dangling ones, and eliminate nodes with the
+	 * star-mesh transform when there's nothing else to do, until only one resistor is left.
+	 * The combined resistors are new Resistor objects that remember what they replaced,
+	 * the circuit's own resistors and nodes are not touched.
+	 * @return The equivalent resistor, or null if nothing connects the supply's nodes.
+	 */
+	public Resistor reduce(){
+		while(live > 0){
+			int m = nextSeriesNode();
+			if(m != -1){
+				combineSeries(m);
+				continue;
+			}
+			if(nextParallelPair()){
+				parallelTop -= 2;
+				combineParallel(parallelWork[parallelTop], parallelWork[parallelTop+1]);
+				continue;
+			}
+			if(live == 1 && !hasTerminals){
+				break;
+			}
+			if(seriesParallelOnly && live > 1){
+				throw new IllegalStateException("circuit " + circuit.getName() + " isn't series/parallel, " + live
+						+ " resistors are left that need a star-mesh transform or dangle");
+			}
+			m = nextDanglingNode();
+			if(m != -1){
+				removeDangling(m);
+				continue;
+			}
+			m = nextStarNode();
+			if(m != -1){
+				eliminate(m);
+				continue;
+			}
+			break;
+		}
+		if(live > 1){
+			throw new IllegalStateException(live + " resistors are left, however, nothing more could be reduced.");
+		}
+		for(int s = 0; s < work.getResistorCount(); s++){
+			if(alive[s]){
+				return slots[s];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Only combine series and parallel resistors, reduce() throws as soon as it would have to drop
+	 * a dangling resistor or do a star-mesh. A ReductionPlan can't use either, and on a mesh the
+	 * star-mesh transforms are most of the work, so it finds out this way in O(n).
+	 */
+	public void setSeriesParallelOnly(boolean only){
+		seriesParallelOnly = only;
+	}
+
+	/**
+	 * The undo log, one Replacement for each combine in the order they were done.
+	 * Replaying it backwards walks from the equivalent resistor back out to the
+	 * circuit's own resistors, which is what back substitution needs.
+	 */
+	public ArrayList<Replacement>getLog(){
+		return log;
+	}
+	
+	public int getSeriesMerges(){
+		return seriesMerges;
+	}
+	
+	public int getParallelMerges(){
+		return parallelMerges;
+	}
+	
+	public int getStarEliminations(){
+		return starEliminations;
+	}
+	
+	public int getDanglingDrops(){
+		return danglingDrops;
+	}
+	
+	/**
+	 * How many worklist entries were thrown away because the resistors around them had
+	 * changed since they went on, this is the searching that didn't find anything.
+	 */
+	public int getStaleCandidates(){
+		return staleCandidates;
+	}
+	
+	/**
+	 * How many sub-circuit copies were looked up in the EquivalentCache and indexed as one resistor.
+	 */
+	public int getInstances(){
+		return instances;
+	}
+	
+	/**
+	 * The number of resistors that haven't been combined yet.
+	 */
+	public int getRemaining(){
+		return live;
+	}
+
+	/* Private Methods */
+	private void number(Node node){
+		if(node == null){
+			return;
+		}
+		if(node.getId() < 0 || node.getId() >= nodes.length){
+			throw new IllegalStateException("node " + node.getName() + " was never added to circuit " + circuit.getName());
+		}
+		nodes[node.getId()] = node;
+	}
+
+	/**
+	 * Pick out the sub-circuit copies that can go in as one resistor: nothing else touches their inner nodes,
+	 * not even a supply or a terminal of another copy, and their resistors still have the sub-circuit's
+	 * ohms and ends. A copy with both terminals on one node carries nothing and isn't collapsed either.
+	 * @param inside Set for every resistor, by list index, that belongs to a picked copy.
+	 */
+	private SubCircuitInstance[] collapsible(EquivalentCache cache, boolean[] inside, CircuitGraph graph){
+		ArrayList<SubCircuitInstance>placed = circuit.getSubCircuits();
+		if(cache == null || placed.isEmpty()){
+			return new SubCircuitInstance[0];
+		}
+		int[] graphA = graph.getNodeAArray();
+		int[] graphB = graph.getNodeBArray();
+		ArrayList<Resistor>resistors = circuit.getResistors();
+		int[] owner = new int[nodes.length]; //node id -> the copy it's an inner node of, or -1.
+		int[] member = new int[resistors.size()]; //resistor -> the copy it belongs to, or -1.
+		Arrays.fill(owner, -1);
+		Arrays.fill(member, -1);
+		boolean[] open = new boolean[placed.size()]; //Something reaches inside, or the copy was changed.
+		for(int k = 0; k < placed.size(); k++){
+			SubCircuitInstance instance = placed.get(k);
+			SubCircuit sub = instance.sub;
+			open[k] = instance.plus.getId() == instance.minus.getId() || instance.first + instance.count > resistors.size();
+			for(int j = 0; j < instance.count && !open[k]; j++){
+				int g = resistors.get(instance.first+j).getIndex();
+				open[k] = graph.getOhms(g) != sub.getOhms(j) || graphA[g] != instance.nodeIds[sub.getNodeA(j)]
+						|| graphB[g] != instance.nodeIds[sub.getNodeB(j)];
+			}
+			for(int j = 0; j < instance.count; j++){
+				member[instance.first+j] = k;
+			}
+			for(int j = 0; j < instance.nodeIds.length; j++){
+				if(j != sub.getPlus() && j != sub.getMinus()){
+					owner[instance.nodeIds[j]] = k;
+				}
+			}
+		}
+		for(int i = 0; i < resistors.size(); i++){
+			if(member[i] == -1){
+				int g = resistors.get(i).getIndex();
+				reached(owner, open, graphA[g]);
+				reached(owner, open, graphB[g]);
+			}
+		}
+		for(int k = 0; k < placed.size(); k++){
+			reached(owner, open, placed.get(k).plus.getId());
+			reached(owner, open, placed.get(k).minus.getId());
+		}
+		PowerSupply supply = circuit.getSupply();
+		if(supply != null){
+			reached(owner, open, supply.getPosNode() == null ? -1 : supply.getPosNode().getId());
+			reached(owner, open, supply.getNegNode() == null ? -1 : supply.getNegNode().getId());
+		}
+		ArrayList<SubCircuitInstance>collapsed = new ArrayList<SubCircuitInstance>();
+		for(int k = 0; k < placed.size(); k++){
+			if(!open[k]){
+				SubCircuitInstance instance = placed.get(k);
+				collapsed.add(instance);
+				for(int j = 0; j < instance.count; j++){
+					inside[instance.first+j] = true;
+				}
+			}
+		}
+		return collapsed.toArray(new SubCircuitInstance[collapsed.size()]);
+	}
+
+	/**
+	 * Something outside a copy touches node, if it's one of the copy's inner nodes the copy can't be collapsed.
+	 */
+	private static void reached(int[] owner, boolean[] open, int node){
+		if(node >= 0 && node < owner.length && owner[node] != -1){
+			open[owner[node]] = true;
+		}
+	}
+
+	private void markTerminal(Node node){
+		if(node != null){
+			terminal[node.getId()] = true;
+		}
+	}
+
+	private ArrayList<Resistor>pair(int s, int t){
+		ArrayList<Resistor>results = new ArrayList<Resistor>();
+		results.add(slots[s]);
+		results.add(slots[t]);
+		return results;
+	}
+
+	private static long key(int a, int b){
+		return a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+	}
+
+	/**
+	 * Find a pair's bucket, linear probing from its hash.
+	 */
+	private int bucket(long key){
+		int mask = pairKeys.length-1;
+		long h = key * 0x9E3779B97F4A7C15L; //fibonacci hashing, the high bits are well mixed
+		int i = (int)(h >>> 32) & mask;
+		while(pairSlots[i] != -1 && pairKeys[i] != key){
+			i = (i+1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * @return The slot that was stored for the pair before, or -1.
+	 */
+	private int putPair(long key, int slot){
+		int i = bucket(key);
+		int old = pairSlots[i];
+		pairKeys[i] = key;
+		pairSlots[i] = slot;
+		return old;
+	}
+
+	private int getPair(long key){
+		return pairSlots[bucket(key)];
+	}
+
+	/**
+	 * Put a resistor in a new slot and check the pair hash for a parallel partner.
+	 * The caller fills in slots[] and wires the slot into the incident lists.
+	 */
+	private int addSlot(double o, int a, int b){
+		reserveSlots(1);
+		int s = work.addResistor(o);
+		work.setEndpoints(s, a, b);
+		alive[s] = true;
+		live++;
+		int other = putPair(key(a, b), s);
+		if(other != -1 && alive[other]){
+			parallelWork[parallelTop++] = other;
+			parallelWork[parallelTop++] = s;
+		}
+		return s;
+	}
+
+	private void kill(int s){
+		alive[s] = false;
+		live--;
+	}
+
+	private int otherEnd(int s, int node){
+		return slotA[s] == node ? slotB[s] : slotA[s];
+	}
+
+	/**
+	 * Drop stale entries off the series worklist.
+	 * @return The first node that is really a series candidate, it stays on the list, or -1.
+	 */
+	private int nextSeriesNode(){
+		while(seriesTop > 0){
+			int m = seriesWork[seriesTop-1];
+			if(degree[m] == 2){
+				int s = incident[incStart[m]];
+				int t = incident[incStart[m]+1];
+				if(otherEnd(s, m) != otherEnd(t, m)){
+					return m;
+				}
+				//both go to the same node, these are parallel and the pair hash has them.
+			}
+			seriesTop--;
+			staleCandidates++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Drop stale entries off the dangling worklist.
+	 * @return The first node that really has a single resistor, it stays on the list, or -1.
+	 */
+	private int nextDanglingNode(){
+		while(danglingTop > 0){
+			int m = danglingWork[danglingTop-1];
+			if(degree[m] == 1){
+				return m;
+			}
+			danglingTop--;
+			staleCandidates++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Take the ordinary node with the fewest resistors off the heap, skipping entries whose degree has changed since.
+	 * The heap is only filled the first time it's needed, so series/parallel circuits never pay for it.
+	 * @return The node, or -1 if every ordinary node is gone.
+	 */
+	private int nextStarNode(){
+		if(!starting){
+			starting = true;
+			for(int n = 0; n < degree.length; n++){
+				touched(n);
+			}
+		}
+		while(starTop > 0){
+			long top = starHeap[0];
+			int m = (int)top;
+			if(degree[m] == (int)(top >>> 32)){
+				return m;
+			}
+			popStar();
+			staleCandidates++;
+		}
+		return -1;
+	}
+
+	private void pushStar(int m){
+		if(starTop == starHeap.length){
+			starHeap = Arrays.copyOf(starHeap, 2*starTop);
+		}
+		long e = ((long)degree[m] << 32) | m;
+		int i = starTop++;
+		while(i > 0 && starHeap[(i-1)/2] > e){
+			starHeap[i] = starHeap[(i-1)/2];
+			i = (i-1)/2;
+		}
+		starHeap[i] = e;
+	}
+
+	private void popStar(){
+		long e = starHeap[--starTop];
+		int i = 0;
+		while(2*i+1 < starTop){
+			int c = 2*i+1;
+			if(c+1 < starTop && starHeap[c+1] < starHeap[c]){
+				c++;
+			}
+			if(starHeap[c] >= e){
+				break;
+			}
+			starHeap[i] = starHeap[c];
+			i = c;
+		}
+		starHeap[i] = e;
+	}
+
+	/**
+	 * A node's degree changed, put it on whichever worklist it belongs on now.
+	 */
+	private void touched(int n){
+		if(terminal[n]){
+			return;
+		}
+		if(degree[n] == 2){
+			if(seriesTop == seriesWork.length){
+				seriesWork = Arrays.copyOf(seriesWork, 2*seriesTop);
+			}
+			seriesWork[seriesTop++] = n;
+		}else if(degree[n] == 1){
+			if(danglingTop == danglingWork.length){
+				danglingWork = Arrays.copyOf(danglingWork, 2*danglingTop);
+			}
+			danglingWork[danglingTop++] = n;
+		}else if(degree[n] > 2 && starting){
+			pushStar(n);
+		}
+	}
+
+	/**
+	 * Make room for more slots, the working graph and everything indexed by slot grows together.
+	 */
+	private void reserveSlots(int extra){
+		int need = work.getResistorCount() + extra;
+		if(need <= slots.length){
+			return;
+		}
+		int capacity = Math.max(need, 2*slots.length);
+		work.reserveResistors(capacity);
+		ohms = work.getOhmsArray();
+		slotA = work.getNodeAArray();
+		slotB = work.getNodeBArray();
+		slots = Arrays.copyOf(slots, capacity);
+		alive = Arrays.copyOf(alive, capacity);
+		atA = Arrays.copyOf(atA, capacity);
+		atB = Arrays.copyOf(atB, capacity);
+		parallelWork = Arrays.copyOf(parallelWork, 2*capacity);
+		if(pairKeys.length < 2*capacity){
+			long[] oldKeys = pairKeys;
+			int[] oldSlots = pairSlots;
+			int buckets = Integer.highestOneBit(2*capacity) << 1;
+			pairKeys = new long[buckets];
+			pairSlots = new int[buckets];
+			Arrays.fill(pairSlots, -1);
+			for(int i = 0; i < oldKeys.length; i++){
+				if(oldSlots[i] != -1){
+					int b = bucket(oldKeys[i]);
+					pairKeys[b] = oldKeys[i];
+					pairSlots[b] = oldSlots[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop stale entries off the parallel worklist, when one side of a pair has already been
+	 * combined, the pair hash gives us whatever replaced it.
+	 * @return True if the top of the list is a live parallel pair.
+	 */
+	private boolean nextParallelPair(){
+		while(parallelTop > 0){
+			int s = parallelWork[parallelTop-2];
+			int t = parallelWork[parallelTop-1];
+			if(alive[s] || alive[t]){
+				int keep = alive[s] ? s : t;
+				int current = getPair(key(slotA[keep], slotB[keep]));
+				int other = (keep == s) ? t : s;
+				if(!alive[other] && current != -1 && current != keep && alive[current]){
+					other = current;
+				}
+				if(alive[other] && other != keep){
+					parallelWork[parallelTop-2] = keep;
+					parallelWork[parallelTop-1] = other;
+					return true;
+				}
+			}
+			parallelTop -= 2;
+			staleCandidates++;
+		}
+		return false;
+	}
+
+	/**
+	 * Where a slot sits in one of its node's incident lists.
+	 */
+	private int where(int s, int node){
+		return slotA[s] == node ? atA[s] : atB[s];
+	}
+
+	private void place(int s, int node, int p){
+		incident[p] = s;
+		if(slotA[s] == node){
+			atA[s] = p;
+		}else{
+			atB[s] = p;
+		}
+	}
+
+	private void replaceIncident(int node, int oldSlot, int newSlot){
+		place(newSlot, node, where(oldSlot, node));
+	}
+
+	/**
+	 * Add a slot to the end of a node's list, if the list is out of room it moves to the end of incident[] first.
+	 */
+	private void addIncident(int node, int slot){
+		if(degree[node] == room[node]){
+			int size = Math.max(4, 2*room[node]);
+			if(incidentTop + size > incident.length){
+				incident = Arrays.copyOf(incident, Math.max(incidentTop + size, 2*incident.length));
+			}
+			for(int i = 0; i < degree[node]; i++){
+				place(incident[incStart[node]+i], node, incidentTop+i);
+			}
+			incStart[node] = incidentTop;
+			room[node] = size;
+			incidentTop += size;
+		}
+		place(slot, node, incStart[node] + degree[node]++);
+	}
+
+	/**
+	 * Take a slot out of a node's list, the last one in the list moves into its place.
+	 */
+	private void removeIncident(int node, int slot){
+		int p = where(slot, node);
+		int last = incident[incStart[node] + degree[node] - 1];
+		place(last, node, p);
+		degree[node]--;
+	}
+
+	/**
+	 * Make the Resistor for a combined slot, a view of the working graph.
+	 */
+	private Resistor view(int u){
+		Resistor r = new Resistor(work, u);
+		r.setId(circuit.newElementId());
+		r.setNodeA(nodes[slotA[u]]);
+		r.setNodeB(nodes[slotB[u]]);
+		slots[u] = r;
+		return r;
+	}
+
+	private void record(Resistor r, Replacement replacement){
+		replacement.result = r;
+		r.setReplacement(replacement);
+		log.add(replacement);
+		tracer.combined(replacement);
+	}
+
+	/**
+	 * Combine the two resistors at ordinary node m into one resistor r = r1+r2.
+	 */
+	private void combineSeries(int m){
+		seriesTop--;
+		int s = incident[incStart[m]];
+		int t = incident[incStart[m]+1];
+		int x = otherEnd(s, m);
+		int y = otherEnd(t, m);
+		kill(s);
+		kill(t);
+		degree[m] = 0;
+		int u = addSlot(ohms[s] + ohms[t], x, y);
+		Resistor r = view(u);
+		record(r, new Replacement(slots[s], slots[t], nodes[m], true));
+		seriesMerges++;
+		replaceIncident(x, s, u);
+		replaceIncident(y, t, u);
+	}
+
+	/**
+	 * Combine two resistors between the same nodes into one resistor r = (r1*r2)/(r1+r2).
+	 */
+	private void combineParallel(int s, int t){
+		double resistance = (ohms[s]*ohms[t])/(ohms[s]+ohms[t]);
+		int x = slotA[s];
+		int y = slotB[s];
+		kill(s);
+		kill(t);
+		int u = addSlot(resistance, x, y);
+		Resistor r = view(u);
+		record(r, new Replacement(slots[s], slots[t], false));
+		parallelMerges++;
+		replaceIncident(x, s, u);
+		replaceIncident(y, s, u);
+		removeIncident(x, t);
+		removeIncident(y, t);
+		touched(x);
+		touched(y);
+	}
+
+	/**
+	 * Drop the only resistor on ordinary node m, with nothing else on m no current goes through it.
+	 */
+	private void removeDangling(int m){
+		danglingTop--;
+		int s = incident[incStart[m]];
+		int x = otherEnd(s, m);
+		kill(s);
+		degree[m] = 0;
+		removeIncident(x, s);
+		Replacement replacement = new Replacement(slots[s], nodes[m]);
+		log.add(replacement);
+		danglingDrops++;
+		tracer.combined(replacement);
+		touched(x);
+	}
+
+	/**
+	 * Eliminate ordinary node m with the star-mesh transform, its resistors are replaced by one
+	 * between every pair of their far ends. There's nothing in parallel when this is called,
+	 * so the far ends are all different nodes.
+	 */
+	private void eliminate(int m){
+		int d = degree[m];
+		reserveSlots(d*(d-1)/2);
+		int[] star = new int[d];
+		int[] far = new int[d];
+		double conductance = 0;
+		for(int i = 0; i < d; i++){
+			star[i] = incident[incStart[m]+i];
+			far[i] = otherEnd(star[i], m);
+			conductance += 1/ohms[star[i]];
+		}
+		Resistor[] starResistors = new Resistor[d];
+		for(int i = 0; i < d; i++){
+			kill(star[i]);
+			removeIncident(far[i], star[i]);
+			starResistors[i] = slots[star[i]];
+		}
+		degree[m] = 0;
+		Resistor[] mesh = new Resistor[d*(d-1)/2];
+		int k = 0;
+		for(int i = 0; i < d; i++){
+			for(int j = i+1; j < d; j++){
+				int u = addSlot(ohms[star[i]]*ohms[star[j]]*conductance, far[i], far[j]);
+				mesh[k++] = view(u);
+				addIncident(far[i], u);
+				addIncident(far[j], u);
+			}
+		}
+		Replacement replacement = new Replacement(starResistors, mesh, nodes[m]);
+		starEliminations++;
+		for(int i = 0; i < mesh.length; i++){
+			mesh[i].setReplacement(replacement);
+		}
+		log.add(replacement);
+		tracer.combined(replacement);
+		for(int i = 0; i < d; i++){
+			touched(far[i]);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+
+/**
+ * A ReductionPlan is a circuit's series/parallel reduction compiled down to arithmetic.
+ * The Reducer only looks at which nodes each resistor connects, never at the ohms, so for a
+ * fixed topology the combines always happen in the same order. We record that order once,
+ * then solving for a new set of ohms is two loops over int arrays:
+ * 1. Forward, work out the ohms of each combined resistor from its two operands.
+ * 2. Backward, from the equivalent resistor back out to the originals, filling in
+ *    the middle node of each series combine and the amps through each operand.
+ * Slots 0..resistorCount-1 are the circuit's own resistors, in CircuitGraph slot order,
+ * combine k writes slot resistorCount+k. The plan is immutable, so one plan can be shared
+ * by any number of threads as long as each has its own PlanWorkspace.
+ * Every ohms value has to be positive and finite, the topology assumes nothing shorts or opens.
+ * Only series/parallel circuits compile, bridges need simplify() or solveNodal().
+ * @author Isaac Assegai
+ *
+ */
+public class ReductionPlan {
+	/* Member Variables */
+	private final int resistorCount; //Slots that come from the circuit.
+	private final int nodeCount;
+	private final int pos; //The node id of the supply's +node.
+	private final int neg; //The node id of the supply's -node.
+	private final boolean[] series; //Is combine k series, or parallel.
+	private final int[] left; //Combine k's first operand slot, for series it runs from the result's nodeA to the middle node.
+	private final int[] right; //Combine k's second operand slot.
+	private final int[] middle; //The node between a series combine's operands, -1 for parallel.
+	private final int[] slotA; //The node id at each slot's nodeA, -1 for resistors that were never reduced.
+	private final int[] slotB;
+	private final int equivalent; //The slot that's left at the end, -1 if the circuit has no resistors.
+
+	/**
+	 * Constructor - Compile a circuit's topology, the circuit itself is not changed.
+	 */
+	public ReductionPlan(Circuit circuit){
+		PowerSupply supply = circuit.getSupply();
+		if(supply == null || supply.getPosNode() == null || supply.getNegNode() == null){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has no connected power supply");
+		}
+		CircuitGraph graph = circuit.getGraph();
+		Reducer reducer = new Reducer(circuit);
+		reducer.setSeriesParallelOnly(true);
+		Resistor result = reducer.reduce();
+		ArrayList<Replacement>log = reducer.getLog();
+
+		resistorCount = graph.getResistorCount();
+		nodeCount = graph.getNodeCount();
+		pos = supply.getPosNode().getId();
+		neg = supply.getNegNode().getId();
+		int ops = log.size();
+		series = new boolean[ops];
+		left = new int[ops];
+		right = new int[ops];
+		middle = new int[ops];
+		slotA = new int[resistorCount + ops];
+		slotB = new int[resistorCount + ops];
+		for(int s = 0; s < resistorCount; s++){
+			int a = graph.getNodeA(s);
+			boolean reduced = a != graph.getNodeB(s);
+			slotA[s] = reduced ? a : -1;
+			slotB[s] = reduced ? graph.getNodeB(s) : -1;
+		}
+
+		//the combined resistors all live in the reducer's working graph, map its slots onto ours
+		int[] planSlot = new int[2*Math.max(1, resistorCount)];
+		for(int k = 0; k < ops; k++){
+			Replacement replacement = log.get(k);
+			if(replacement.kind != Replacement.SERIES && replacement.kind != Replacement.PARALLEL){
+				throw new IllegalStateException("circuit " + circuit.getName() + " isn't series/parallel, it needs a star-mesh"
+						+ " transform or has dangling resistors, plans can't be compiled for it");
+			}
+			Resistor r = replacement.result;
+			series[k] = replacement.isSeries;
+			left[k] = slotOf(replacement.a, graph, planSlot);
+			right[k] = slotOf(replacement.b, graph, planSlot);
+			middle[k] = replacement.isSeries ? replacement.node.getId() : -1;
+			slotA[resistorCount+k] = r.getNodeA().getId();
+			slotB[resistorCount+k] = r.getNodeB().getId();
+			planSlot[r.getIndex()] = resistorCount+k;
+		}
+		equivalent = result == null ? -1 : slotOf(result, graph, planSlot);
+		if(equivalent != -1){
+			int a = slotA[equivalent];
+			int b = slotB[equivalent];
+			if(!((a == pos && b == neg) || (a == neg && b == pos))){
+				throw new IllegalStateException("circuit " + circuit.getName() + " does not reduce to a single resistor across its supply");
+			}
+		}
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Solve the circuit for a new set of ohms and supply voltage. Nothing is allocated.
+	 * @param ohms The ohms of each of the circuit's resistors, by CircuitGraph slot.
+	 * @param volts The supply voltage.
+	 * @param ws Where the ohms, amps and node voltages are written, it must come from newWorkspace().
+	 * @return The current drawn from the supply.
+	 */
+	public double execute(double[] ohms, double volts, PlanWorkspace ws){
+		if(ohms.length < resistorCount){
+			throw new IllegalArgumentException("the plan needs " + resistorCount + " ohms values, not " + ohms.length);
+		}
+		if(ws.ohms.length != slotA.length || ws.voltage.length != nodeCount){
+			throw new IllegalArgumentException("the workspace was made for a different plan");
+		}
+		double[] o = ws.ohms;
+		double[] amps = ws.amps;
+		double[] v = ws.voltage;
+		System.arraycopy(ohms, 0, o, 0, resistorCount);
+
+		//forward, the ohms of every combined resistor
+		int ops = series.length;
+		for(int k = 0; k < ops; k++){
+			double x = o[left[k]];
+			double y = o[right[k]];
+			o[resistorCount+k] = series[k] ? x + y : (x*y)/(x+y);
+		}
+
+		//backward, from the supply out to the original resistors
+		for(int n = 0; n < nodeCount; n++){
+			v[n] = Double.NaN;
+		}
+		for(int s = 0; s < resistorCount; s++){
+			amps[s] = 0; //resistors that were never reduced carry nothing
+		}
+		v[pos] = volts;
+		v[neg] = 0;
+		if(equivalent == -1){
+			ws.supplyAmps = 0;
+			return 0;
+		}
+		amps[equivalent] = (v[slotA[equivalent]] - v[slotB[equivalent]])/o[equivalent];
+		for(int k = ops-1; k >= 0; k--){
+			int r = resistorCount+k;
+			int x = left[k];
+			int y = right[k];
+			if(series[k]){
+				v[middle[k]] = v[slotA[r]] - amps[r]*o[x];
+			}
+			amps[x] = (v[slotA[x]] - v[slotB[x]])/o[x];
+			amps[y] = (v[slotA[y]] - v[slotB[y]])/o[y];
+		}
+		ws.supplyAmps = Math.abs(amps[equivalent]);
+		return ws.supplyAmps;
+	}
+
+	/**
+	 * Scratch space for execute(), one per thread.
+	 */
+	public PlanWorkspace newWorkspace(){
+		return new PlanWorkspace(slotA.length, nodeCount);
+	}
+
+	/**
+	 * Copy the results of the last execute() into a graph of the circuit the plan was compiled from,
+	 * filling in every node's voltage and every resistor's ohms, amps, voltage drop and watts.
+	 */
+	public void writeBack(PlanWorkspace ws, CircuitGraph graph){
+		double[] voltage = graph.getVoltageArray();
+		System.arraycopy(ws.voltage, 0, voltage, 0, nodeCount);
+		double[] ohms = graph.getOhmsArray();
+		double[] amps = graph.getAmpsArray();
+		double[] watts = graph.getWattsArray();
+		double[] vdrop = graph.getVoltageDropArray();
+		for(int s = 0; s < resistorCount; s++){
+			double a = ws.amps[s];
+			double drop = a*ws.ohms[s];
+			ohms[s] = ws.ohms[s];
+			amps[s] = a;
+			vdrop[s] = drop;
+			watts[s] = drop*a;
+		}
+	}
+
+	public int getResistorCount(){
+		return resistorCount;
+	}
+
+	public int getNodeCount(){
+		return nodeCount;
+	}
+
+	/**
+	 * The number of series and parallel combines.
+	 */
+	public int getCombineCount(){
+		return series.length;
+	}
+
+	/* Package Methods, the plan's arrays for SweepEngine, they must not be changed. */
+	int getPos(){
+		return pos;
+	}
+
+	int getNeg(){
+		return neg;
+	}
+
+	int getEquivalent(){
+		return equivalent;
+	}
+
+	boolean[] getSeries(){
+		return series;
+	}
+
+	int[] getLeft(){
+		return left;
+	}
+
+	int[] getRight(){
+		return right;
+	}
+
+	int[] getMiddle(){
+		return middle;
+	}
+
+	int[] getSlotA(){
+		return slotA;
+	}
+
+	int[] getSlotB(){
+		return slotB;
+	}
+
+	/* Private Methods */
+	private int slotOf(Resistor r, CircuitGraph graph, int[] planSlot){
+		return r.getGraph() == graph ? r.getIndex() : planSlot[r.getIndex()];
+	}
+}
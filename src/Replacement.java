@@ -1,22 +1,70 @@
 /* Private Classes */
 	public class Replacement{
+		public static final int SERIES = 0;
+		public static final int PARALLEL = 1;
+		public static final int STAR = 2; //A node was eliminated with the star-mesh transform.
+		public static final int DANGLING = 3; //A resistor hanging off a node with nothing else on it was dropped.
+		public static final int INSTANCE = 4; //A placed SubCircuit was replaced by its cached equivalent.
+
 		public Resistor a;
 		public Resistor b;
 		public Node node; //A replacement has a node in it, if it is a series replacement, there is a node between the two resistors
 		public boolean isSeries;
-		
+		public int kind; //SERIES, PARALLEL, STAR, DANGLING or INSTANCE.
+		public Resistor result; //The resistor that replaced a and b.
+		public Resistor[] star; //For a STAR, the resistors that met at node.
+		public Resistor[] mesh; //For a STAR, what replaced them, one between the far ends of each pair: (0,1), (0,2)... (1,2)...
+		public SubCircuitInstance instance; //For an INSTANCE, the copy that result stands in for.
+		public double[] ratios; //For an INSTANCE, where its inner nodes sit between its terminals, from the EquivalentCache.
+
 		public Replacement(Resistor a, Resistor b, boolean isSeries){
 			this.a = a;
 			this.b = b;
 			this.node = null;
 			this.isSeries = isSeries;
+			this.kind = isSeries ? SERIES : PARALLEL;
 		}
-		
+
 		public Replacement(Resistor a, Resistor b, Node n, boolean isSeries){
 			this.a = a;
 			this.b = b;
 			this.node = n;
 			this.isSeries = isSeries;
+			this.kind = isSeries ? SERIES : PARALLEL;
 		}
-		
-	}
\ No newline at end of file
+
+		/**
+		 * A star-mesh transform, node and the star resistors on it are replaced by the mesh.
+		 * With 3 resistors this is the Y-Delta transform.
+		 */
+		public Replacement(Resistor[] star, Resistor[] mesh, Node n){
+			this.node = n;
+			this.isSeries = false;
+			this.kind = STAR;
+			this.star = star;
+			this.mesh = mesh;
+		}
+
+		/**
+		 * A dangling resistor, node is the end with nothing else on it. No current can flow
+		 * through it, so it is simply dropped and result stays null.
+		 */
+		public Replacement(Resistor dangling, Node n){
+			this.a = dangling;
+			this.node = n;
+			this.isSeries = false;
+			this.kind = DANGLING;
+		}
+
+		/**
+		 * A whole sub-circuit copy replaced by one resistor, its inner nodes get their voltages
+		 * back from the ratios instead of from a replacement for each combine.
+		 */
+		public Replacement(SubCircuitInstance instance, double[] ratios){
+			this.isSeries = false;
+			this.kind = INSTANCE;
+			this.instance = instance;
+			this.ratios = ratios;
+		}
+
+	}
@@ -1,4 +1,3 @@
-import java.math.BigInteger;
 import java.util.Random;
 
 /**
@@ -6,38 +5,88 @@ import java.util.Random;
  * We are given a resistors resistance and it's connections,
  * our algorithm will figure out the amps, watts, and voltage drops.
  * We'll use the replaces list to tell our algorithm how to backtrack.
+ * A resistor's numbers live in a slot of a CircuitGraph, the resistor is just a view of that slot.
+ * Until it's added to a circuit it has a little graph of its own.
  * @author Isaac Assegai
  *
  */
 public class Resistor extends Element {
 	
-	private Double ohms;
-	private Double amps;
-	private Double watts;
-	private Double voltageDrop;
+	private CircuitGraph graph; //Where our ohms, amps, watts and voltage drop live.
+	private int index; //Our slot in graph.
 	private Node nodeA;
 	private Node nodeB;
 	private Replacement replacement;
 	
+	public Resistor(Double o){
+		this(o, null);
+	}
+	
 	public Resistor(Double o, Random r){
 		super(r);
-		ohms = o;
-		amps = null;
-		watts = null;
-		voltageDrop = null;
+		graph = new CircuitGraph(1, 1);
+		index = graph.addResistor(o);
 		nodeA = null;
 		nodeB = null;
 		replacement = null;
 		
 	}
+	
+	/**
+	 * Constructor - A view of a resistor that already has a slot in a graph.
+	 */
+	Resistor(CircuitGraph graph, int index){
+		super();
+		this.graph = graph;
+		this.index = index;
+		nodeA = null;
+		nodeB = null;
+		replacement = null;
+	}
 
 	/* Public Methods */
+	protected String getPrefix(){
+		return "R";
+	}
+	
+	/**
+	 * Move our values into a slot of another graph, and view that slot from now on.
+	 */
+	void attach(CircuitGraph g){
+		int i = g.addResistor(graph.getOhms(index));
+		g.setAmps(i, graph.getAmps(index));
+		g.setWatts(i, graph.getWatts(index));
+		g.setVoltageDrop(i, graph.getVoltageDrop(index));
+		graph = g;
+		index = i;
+		graph.markEndpointsStale();
+	}
+	
+	/**
+	 * Set both nodes when the graph's endpoints for our slot are being set to match,
+	 * so the graph doesn't need to be resynced.
+	 */
+	void connect(Node a, Node b){
+		nodeA = a;
+		nodeB = b;
+	}
+	
+	public CircuitGraph getGraph(){
+		return graph;
+	}
+	
+	public int getIndex(){
+		return index;
+	}
+	
 	public void setNodeA(Node n){
 		nodeA = n;
+		graph.markEndpointsStale();
 	}
 	
 	public void setNodeB(Node n){
 		nodeB = n;
+		graph.markEndpointsStale();
 	}
 	
 	public Node getNodeA(){
@@ -49,31 +98,35 @@ public class Resistor extends Element {
 	}
 	
 	public Double getOhms(){
-		return ohms;
+		return graph.getOhms(index);
+	}
+	
+	public void setOhms(Double o){
+		graph.setOhms(index, o);
 	}
 	
 	public Double getAmps(){
-		return amps;
+		return unknownIsNull(graph.getAmps(index));
 	}
 	
 	public void setAmps(Double a){
-		amps = a;
+		graph.setAmps(index, nullIsUnknown(a));
 	}
 	
 	public Double getWatts(){
-		return watts;
+		return unknownIsNull(graph.getWatts(index));
 	}
 	
 	public void setWatts(Double w){
-		watts = w;
+		graph.setWatts(index, nullIsUnknown(w));
 	}
 	
 	public Double getVoltageDrop(){
-		return voltageDrop;
+		return unknownIsNull(graph.getVoltageDrop(index));
 	}
 	
 	public void setVoltageDrop(Double v){
-		voltageDrop = v;
+		graph.setVoltageDrop(index, nullIsUnknown(v));
 	}
 	
 	public void setReplacement(Replacement r){
@@ -123,6 +176,13 @@ public class Resistor extends Element {
 	
 
 	/* Private Methods */
+	static Double unknownIsNull(double d){
+		return Double.isNaN(d) ? null : d;
+	}
+	
+	static double nullIsUnknown(Double d){
+		return d == null ? Double.NaN : d;
+	}
 	
 	
 }
@@ -0,0 +1,49 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * What one simplify() did and where its time went, handed to SolverMetrics.
+ * Times are in nanoseconds.
+ * @author Isaac Assegai
+ *
+ */
+public class SolveSample {
+	/* Member Variables */
+	private static final com.sun.management.ThreadMXBean THREADS = allocationCounter(); //null if this JVM can't count allocations.
+
+	public int resistors; //How many resistors the circuit had.
+	public long indexNanos; //Building the Reducer's index, the incident lists, pair hash and candidate worklists.
+	public long reduceNanos; //Taking candidates off the worklists and combining them.
+	public long backNanos; //Back substitution, walking the reduction log backwards.
+	public long totalNanos; //The whole simplify(), end to end.
+	public int seriesMerges;
+	public int parallelMerges;
+	public int starEliminations;
+	public int danglingDrops;
+	public int staleCandidates; //Worklist entries that weren't candidates any more when they came off.
+	public long allocatedBytes; //Allocated by the solving thread, -1 if the JVM can't tell us.
+
+	/* Public Methods */
+
+	/**
+	 * How many bytes this thread has allocated so far, -1 if the JVM can't count them.
+	 */
+	public static long allocatedBytes(){
+		if(THREADS == null){
+			return -1;
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/* Private Methods */
+	private static com.sun.management.ThreadMXBean allocationCounter(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean)bean;
+			if(sun.isThreadAllocatedMemorySupported()){
+				sun.setThreadAllocatedMemoryEnabled(true);
+				return sun;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * SolverMetrics are told what each solve did and how long it took, so a service can see where its
+ * solving time goes. Circuits use NONE unless someone sets metrics, and with NONE the solvers don't
+ * even read the clock, so metrics cost nothing until they're turned on.
+ * Circuits can be solved on many threads at once, so implementations have to be thread safe.
+ * See SolverStats for one that keeps totals and latency percentiles and shows them over JMX.
+ * @author Isaac Assegai
+ *
+ */
+public interface SolverMetrics {
+	
+	/** The default, ignores everything. */
+	public static final SolverMetrics NONE = new SolverMetrics(){
+		public void simplified(SolveSample sample){
+		}
+		
+		public void copied(int resistors){
+		}
+		
+		public void solvedNodal(long nanos, long allocatedBytes){
+		}
+	};
+	
+	/**
+	 * simplify() finished, the sample says what it did.
+	 */
+	public void simplified(SolveSample sample);
+	
+	/**
+	 * simplifyStepwise() copied a circuit with this many resistors to make its next step.
+	 */
+	public void copied(int resistors);
+	
+	/**
+	 * solveNodal() finished.
+	 * @param allocatedBytes What the solving thread allocated, -1 if the JVM can't tell us.
+	 */
+	public void solvedNodal(long nanos, long allocatedBytes);
+}
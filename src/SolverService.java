@@ -0,0 +1,507 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Solves netlists sent over HTTP on localhost, so a client pays for the JVM warming up once
+ * rather than for every circuit.
+ *   POST /solve   The body is a SPICE netlist, see NetlistLoader. The answer is JSON:
+ *                 {"name":"...","supplyAmps":[...],"nodes":{"label":volts,...},"resistors":{"name":amps,...}}
+ *                 Nodes no supply reaches are null. 400 if the netlist can't be read or solved,
+ *                 503 with Retry-After when the service is saturated.
+ *   GET /stats    The counters, as JSON.
+ * Netlists are parsed on the HTTP threads and put on a bounded queue. A single solver thread takes them
+ * off a batch at a time, waiting up to the batch window for more to come in, and groups the batch by
+ * topology: which nodes each resistor and supply connects. A series/parallel topology is compiled into a
+ * ReductionPlan the first time it's seen and kept, then each request in its group is one execute().
+ * Anything else is solved with a NodalSolver, which is kept across the group while the ohms stay the same,
+ * so a request that only changes supply voltages costs a solve and no factorization.
+ * When the queue is full a request is turned away at once rather than waiting, that's the backpressure,
+ * clients should back off and try again. The HTTP threads never wait for a solve, the answers are
+ * written back by them once the solver thread is done with a batch.
+ * Usage: java SolverService [port, default 8080] [queue capacity, default 1024] [largest batch, default 64]
+ *        [batch window in microseconds, default 200]
+ * LoadGenerator puts it under load and reports the latencies.
+ * @author Isaac Assegai
+ *
+ */
+public class SolverService {
+	/* Member Variables */
+	public static final int DEFAULT_PORT = 8080;
+	private static final int PLAN_CACHE_SIZE = 256; //Topologies kept compiled, the least recently used goes first.
+
+	private HttpServer server;
+	private ExecutorService handlers; //Parse requests and write answers, they never wait on a solve.
+	private ArrayBlockingQueue<Request>queue; //Parsed requests waiting for the solver thread.
+	private Thread worker; //The solver thread.
+	private volatile boolean running;
+	private int maxBatch;
+	private long batchWindowNanos;
+	private LinkedHashMap<Topology, Compiled>compiled; //Only the solver thread touches it.
+	private ThreadLocal<NetlistLoader>loaders; //A loader per HTTP thread, so its buffer is reused.
+	private LongAdder received;
+	private LongAdder solved;
+	private LongAdder failed;
+	private LongAdder rejected;
+	private LongAdder batches;
+	private LongAdder batched; //Requests that went through the solver thread, over batches is the mean batch size.
+	private LongAdder compiles;
+
+	/**
+	 * Constructor - Bind to a port on the loopback address, nothing is served until start().
+	 * @param port 0 picks a free port, see getPort().
+	 * @param queueCapacity How many requests can wait for the solver thread before new ones are turned away.
+	 * @param maxBatch The most requests the solver thread takes at once.
+	 * @param batchWindowMicros How long the solver thread waits for a batch to fill, 0 to take what's there.
+	 */
+	public SolverService(int port, int queueCapacity, int maxBatch, long batchWindowMicros) throws IOException {
+		if(queueCapacity < 1 || maxBatch < 1 || batchWindowMicros < 0){
+			throw new IllegalArgumentException("the queue and batches need room for a request, and the window can't be negative");
+		}
+		queue = new ArrayBlockingQueue<Request>(queueCapacity);
+		this.maxBatch = maxBatch;
+		batchWindowNanos = batchWindowMicros*1000;
+		compiled = new LinkedHashMap<Topology, Compiled>(16, 0.75f, true);
+		loaders = new ThreadLocal<NetlistLoader>(){
+			protected NetlistLoader initialValue(){
+				NetlistLoader loader = new NetlistLoader();
+				loader.setKeepElementNames(true);
+				return loader;
+			}
+		};
+		received = new LongAdder();
+		solved = new LongAdder();
+		failed = new LongAdder();
+		rejected = new LongAdder();
+		batches = new LongAdder();
+		batched = new LongAdder();
+		compiles = new LongAdder();
+		//the JDK's server has Nagle on, a keep-alive client then waits 40ms for each answer's last packet
+		if(System.getProperty("sun.net.httpserver.nodelay") == null){
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/solve", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException {
+				accept(exchange);
+			}
+		});
+		server.createContext("/stats", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, stats());
+			}
+		});
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int batch = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		long window = args.length > 3 ? Long.parseLong(args[3]) : 200;
+		final SolverService service = new SolverService(port, capacity, batch, window);
+		service.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			public void run(){
+				service.stop();
+			}
+		});
+		System.out.println("solving on http://127.0.0.1:" + service.getPort() + "/solve");
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Start serving, with an HTTP thread for every core.
+	 */
+	public synchronized void start(){
+		if(running){
+			throw new IllegalStateException("the service is already running");
+		}
+		running = true;
+		handlers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		server.setExecutor(handlers);
+		worker = new Thread("SolverService solver"){
+			public void run(){
+				work();
+			}
+		};
+		worker.setDaemon(true);
+		worker.start();
+		server.start();
+	}
+
+	/**
+	 * Stop serving, requests still waiting are turned away.
+	 */
+	public synchronized void stop(){
+		if(!running){
+			return;
+		}
+		running = false;
+		server.stop(0);
+		worker.interrupt();
+		try{
+			worker.join();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		Request request;
+		while((request = queue.poll()) != null){
+			respond(request.exchange, 503, error("the service is stopping"));
+		}
+		handlers.shutdown();
+	}
+
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+
+	public long getReceived(){
+		return received.sum();
+	}
+
+	public long getSolved(){
+		return solved.sum();
+	}
+
+	public long getFailed(){
+		return failed.sum();
+	}
+
+	/**
+	 * Requests turned away because the queue was full.
+	 */
+	public long getRejected(){
+		return rejected.sum();
+	}
+
+	public long getBatches(){
+		return batches.sum();
+	}
+
+	/**
+	 * Topologies compiled into a plan or found not to be series/parallel, each is only done once while it's cached.
+	 */
+	public long getCompiles(){
+		return compiles.sum();
+	}
+
+	/* Private Methods */
+
+	/**
+	 * On an HTTP thread, parse a netlist and queue it, or answer straight away if we can't.
+	 */
+	private void accept(HttpExchange exchange){
+		received.increment();
+		if(!exchange.getRequestMethod().equals("POST")){
+			failed.increment();
+			respond(exchange, 405, error("POST a netlist to /solve"));
+			return;
+		}
+		Circuit circuit;
+		try{
+			InputStream body = exchange.getRequestBody();
+			circuit = loaders.get().load(Channels.newChannel(body));
+			body.close();
+		}catch(IOException | RuntimeException e){
+			failed.increment();
+			respond(exchange, 400, error(e.getMessage()));
+			return;
+		}
+		if(!running || !queue.offer(new Request(exchange, circuit))){
+			rejected.increment();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, error("the service is saturated, try again shortly"));
+		}
+	}
+
+	/**
+	 * The solver thread, a batch at a time until stop().
+	 */
+	private void work(){
+		ArrayList<Request>batch = new ArrayList<Request>(maxBatch);
+		LinkedHashMap<Topology, ArrayList<Request>>groups = new LinkedHashMap<Topology, ArrayList<Request>>();
+		while(running){
+			try{
+				batch.add(queue.take());
+				queue.drainTo(batch, maxBatch - batch.size());
+				long deadline = System.nanoTime() + batchWindowNanos;
+				while(batch.size() < maxBatch){
+					long left = deadline - System.nanoTime();
+					Request next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+					if(next == null){
+						break;
+					}
+					batch.add(next);
+					queue.drainTo(batch, maxBatch - batch.size());
+				}
+			}catch(InterruptedException e){
+				if(!running){
+					break;
+				}
+			}
+			if(batch.isEmpty()){
+				continue;
+			}
+			batches.increment();
+			batched.add(batch.size());
+			for(int i = 0; i < batch.size(); i++){
+				Request request = batch.get(i);
+				ArrayList<Request>group = groups.get(request.topology);
+				if(group == null){
+					group = new ArrayList<Request>();
+					groups.put(request.topology, group);
+				}
+				group.add(request);
+			}
+			for(Map.Entry<Topology, ArrayList<Request>>group : groups.entrySet()){
+				solve(group.getKey(), group.getValue());
+			}
+			for(int i = 0; i < batch.size(); i++){
+				final Request request = batch.get(i);
+				handlers.execute(new Runnable(){
+					public void run(){
+						answer(request);
+					}
+				});
+			}
+			batch.clear();
+			groups.clear();
+		}
+	}
+
+	/**
+	 * Solve a group of requests that share a topology, with its plan if it has one.
+	 */
+	private void solve(Topology topology, ArrayList<Request>group){
+		Compiled c = compile(topology, group.get(0).circuit);
+		NodalSolver solver = null;
+		CircuitGraph solverGraph = null; //The graph solver reads its ohms from and writes into.
+		for(int i = 0; i < group.size(); i++){
+			Request request = group.get(i);
+			Circuit circuit = request.circuit;
+			CircuitGraph graph = circuit.getGraph();
+			int r = graph.getResistorCount();
+			int n = graph.getNodeCount();
+			try{
+				if(c.plan != null && usable(graph.getOhmsArray(), r)){
+					c.plan.execute(graph.getOhmsArray(), circuit.getSupply().getVoltage(), c.workspace);
+					request.voltage = Arrays.copyOf(c.workspace.voltage, n);
+					request.amps = Arrays.copyOf(c.workspace.amps, r);
+					request.supplyAmps = new double[]{c.workspace.supplyAmps};
+				}else{
+					if(solver == null || !Arrays.equals(graph.getOhmsArray(), 0, r, solverGraph.getOhmsArray(), 0, r)){
+						solver = new NodalSolver(circuit);
+						solverGraph = graph;
+					}else{
+						for(int k = 0; k < circuit.getSupplies().size(); k++){
+							solver.setVolts(k, circuit.getSupplies().get(k).getVoltage());
+						}
+					}
+					solver.solve();
+					request.voltage = Arrays.copyOf(solverGraph.getVoltageArray(), n);
+					request.amps = Arrays.copyOf(solverGraph.getAmpsArray(), r);
+					request.supplyAmps = new double[solver.getSupplyCount()];
+					for(int k = 0; k < request.supplyAmps.length; k++){
+						request.supplyAmps[k] = solver.getSupplyAmps(k);
+					}
+				}
+			}catch(RuntimeException e){
+				request.error = e.getMessage() == null ? e.toString() : e.getMessage();
+				if(solverGraph == graph){
+					solver = null; //it may be half built
+				}
+			}
+		}
+	}
+
+	/**
+	 * The plan for a topology, compiled from the first circuit we see with it.
+	 * Topologies that aren't series/parallel, or have more than one supply, are remembered with no plan.
+	 */
+	private Compiled compile(Topology topology, Circuit circuit){
+		Compiled c = compiled.get(topology);
+		if(c != null){
+			return c;
+		}
+		c = new Compiled();
+		if(circuit.getSupplies().size() == 1){
+			try{
+				c.plan = new ReductionPlan(circuit);
+				c.workspace = c.plan.newWorkspace();
+			}catch(IllegalStateException e){
+				c.plan = null; //a bridge, or the supply isn't connected, nodal analysis can say which
+			}
+		}
+		compiles.increment();
+		compiled.put(topology, c);
+		if(compiled.size() > PLAN_CACHE_SIZE){
+			Iterator<Topology>eldest = compiled.keySet().iterator();
+			eldest.next();
+			eldest.remove();
+		}
+		return c;
+	}
+
+	/**
+	 * Plans assume nothing shorts or opens, anything else goes to nodal analysis.
+	 */
+	private static boolean usable(double[] ohms, int count){
+		for(int s = 0; s < count; s++){
+			if(!(ohms[s] > 0) || Double.isInfinite(ohms[s])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * On an HTTP thread, write a solved request's answer.
+	 */
+	private void answer(Request request){
+		if(request.error != null){
+			failed.increment();
+			respond(request.exchange, 400, error(request.error));
+			return;
+		}
+		Circuit circuit = request.circuit;
+		StringBuilder out = new StringBuilder(64 + 32*(request.voltage.length + request.amps.length));
+		out.append("{\"name\":");
+		string(out, circuit.getName());
+		out.append(",\"supplyAmps\":[");
+		for(int k = 0; k < request.supplyAmps.length; k++){
+			if(k > 0){
+				out.append(',');
+			}
+			number(out, request.supplyAmps[k]);
+		}
+		out.append("],\"nodes\":{");
+		ArrayList<Node>nodes = circuit.getNodes();
+		for(int i = 0; i < nodes.size(); i++){
+			if(i > 0){
+				out.append(',');
+			}
+			string(out, nodes.get(i).getName());
+			out.append(':');
+			number(out, request.voltage[nodes.get(i).getId()]);
+		}
+		out.append("},\"resistors\":{");
+		ArrayList<Resistor>resistors = circuit.getResistors();
+		for(int i = 0; i < resistors.size(); i++){
+			if(i > 0){
+				out.append(',');
+			}
+			string(out, resistors.get(i).getName());
+			out.append(':');
+			number(out, request.amps[resistors.get(i).getIndex()]);
+		}
+		out.append("}}");
+		solved.increment();
+		respond(request.exchange, 200, out.toString());
+	}
+
+	private String stats(){
+		long b = batches.sum();
+		return "{\"received\":" + received.sum() + ",\"solved\":" + solved.sum() + ",\"failed\":" + failed.sum()
+				+ ",\"rejected\":" + rejected.sum() + ",\"queued\":" + queue.size() + ",\"batches\":" + b
+				+ ",\"meanBatch\":" + (b == 0 ? 0 : batched.sum()/(double)b) + ",\"compiles\":" + compiles.sum() + "}";
+	}
+
+	private static String error(String message){
+		StringBuilder out = new StringBuilder("{\"error\":");
+		string(out, message);
+		return out.append('}').toString();
+	}
+
+	private static void string(StringBuilder out, String s){
+		if(s == null){
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for(int i = 0; i < s.length(); i++){
+			char ch = s.charAt(i);
+			if(ch == '"' || ch == '\\'){
+				out.append('\\').append(ch);
+			}else if(ch < 0x20){
+				out.append(String.format("\\u%04x", (int)ch));
+			}else{
+				out.append(ch);
+			}
+		}
+		out.append('"');
+	}
+
+	/**
+	 * JSON has no NaN or infinity, unknown values are null.
+	 */
+	private static void number(StringBuilder out, double x){
+		if(Double.isNaN(x) || Double.isInfinite(x)){
+			out.append("null");
+		}else{
+			out.append(x);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json){
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		try{
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}catch(IOException e){
+			//the client went away, there's no one to tell
+		}finally{
+			exchange.close();
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * A parsed netlist waiting to be solved, then its answer waiting to be written.
+	 */
+	private static class Request {
+		final HttpExchange exchange;
+		final Circuit circuit;
+		final Topology topology;
+		double[] voltage; //By node id.
+		double[] amps; //By resistor slot.
+		double[] supplyAmps;
+		String error; //Why it couldn't be solved, null if it was.
+
+		Request(HttpExchange exchange, Circuit circuit){
+			this.exchange = exchange;
+			this.circuit = circuit;
+			topology = new Topology(circuit);
+		}
+	}
+
+	/**
+	 * What we keep for a topology, plan is null if it has to be solved with nodal analysis.
+	 */
+	private static class Compiled {
+		ReductionPlan plan;
+		PlanWorkspace workspace;
+	}
+}
@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Solves a stream of related circuits, design iterations or injected faults, where each one
+ * is only a few resistors away from the ones before it. Solving each circuit on its own starts
+ * cold every time; a session keeps the work that still holds:
+ * 1. A series/parallel circuit compiles into a ReductionPlan, which is kept and executed again for
+ *    every circuit with the same Topology, so only the arithmetic is redone.
+ * 2. Anything else is solved with nodal analysis on a model of the first circuit, the base.
+ *    Later circuits are matched against it: a resistor between the same two nodes, the same way round,
+ *    is the same resistor with maybe new ohms, base resistors the circuit doesn't have are opened, and
+ *    resistors the base didn't have are added to the model, open until a circuit has them. The model's
+ *    NodalSolver then keeps the base factorization and corrects for a few changed resistors with a
+ *    low rank (Sherman-Morrison-Woodbury) update, or redoes just the numeric factorization when the
+ *    ordering and analysis still fit.
+ * A circuit with a different set of nodes or supplies, or too many resistors the base didn't have,
+ * becomes the new base.
+ * Nodes are matched by name, so the same netlist with a few edits lines up with the one before it,
+ * and so do copies of a circuit. Results are written into each circuit like solveNodal().
+ * A session isn't thread safe, give each thread its own.
+ * @author Isaac Assegai
+ *
+ */
+public class SolverSession {
+	/* Member Variables */
+	private int maxUpdateRank; //Changed resistors corrected for before refactoring.
+
+	private Topology planTopology; //The last topology we tried to compile, null if none.
+	private ReductionPlan plan; //Its plan, null if it isn't series/parallel.
+	private PlanWorkspace workspace;
+	private boolean nodalOnly; //A circuit wasn't series/parallel, don't try to compile plans any more.
+
+	private CircuitGraph model; //The base circuit's resistors, then the ones added since.
+	private int baseCount; //How many of model's resistors are the base circuit's.
+	private int[] supplyNodes; //The base circuit's supply terminals, +node then -node.
+	private NodalSolver solver; //Solves model, null until the first nodal solve.
+	private HashMap<String, Integer>nodeIds; //The base circuit's node names -> model node ids.
+	private HashMap<Long, Integer>byEnds; //nodeA,nodeB -> the first model slot between them.
+	private int[] sameEnds; //The next model slot between the same nodes, -1 at the end.
+	private int[] nodeOf; //Scratch, the model node of each of the circuit's nodes.
+	private int[] slotOf; //Scratch, the model slot of each of the circuit's resistors.
+	private boolean[] used; //Scratch, which model slots the circuit has.
+	private double[] supplyAmps;
+
+	private long planned; //Circuits solved by executing a kept plan.
+	private long compiled; //Plans compiled.
+	private long rebased; //Circuits that became a new base, factored from scratch.
+	private long reused; //Nodal solves that reused the factorization as it was.
+	private long updated; //Nodal solves corrected with a low rank update.
+	private long refactored; //Nodal solves that refactored, with or without the symbolic analysis.
+
+	/**
+	 * Constructor - An empty session, the first circuit solved is the base.
+	 */
+	public SolverSession(){
+		maxUpdateRank = NodalSolver.DEFAULT_MAX_UPDATE_RANK;
+		supplyAmps = new double[0];
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Solve a circuit with whatever the session kept from the circuits before it, and fill in
+	 * every node's voltage and every resistor's amps, voltage drop and watts.
+	 * A resistor with infinite ohms is open. Use Circuit.solveNodal(session) to fill in the supplies too.
+	 * @return The current drawn from the first supply.
+	 */
+	public double solve(Circuit circuit){
+		ArrayList<PowerSupply>supplies = circuit.getSupplies();
+		if(supplies.isEmpty()){
+			throw new IllegalStateException("circuit " + circuit.getName() + " has no connected power supply");
+		}
+		for(int k = 0; k < supplies.size(); k++){
+			PowerSupply supply = supplies.get(k);
+			if(supply.getPosNode() == null || supply.getNegNode() == null){
+				throw new IllegalStateException("power supply " + supply.getName() + " in circuit " + circuit.getName() + " is not connected");
+			}
+		}
+		if(supplies.size() == 1 && !nodalOnly && usable(circuit.getGraph())){
+			Topology topology = new Topology(circuit);
+			if(!topology.equals(planTopology)){
+				planTopology = topology;
+				compiled++;
+				try{
+					plan = new ReductionPlan(circuit);
+					workspace = plan.newWorkspace();
+				}catch(IllegalStateException e){
+					plan = null; //a bridge, nodal analysis will do it
+					nodalOnly = true;
+				}
+			}
+			if(plan != null){
+				plan.execute(circuit.getGraph().getOhmsArray(), supplies.get(0).getVoltage(), workspace);
+				plan.writeBack(workspace, circuit.getGraph());
+				supplyAmps = new double[]{workspace.supplyAmps};
+				planned++;
+				return supplyAmps[0];
+			}
+		}
+		boolean fresh = solver == null || !match(circuit);
+		if(fresh){
+			rebase(circuit);
+			match(circuit);
+		}
+		solver.setMaxUpdateRank(maxUpdateRank);
+		for(int k = 0; k < supplies.size(); k++){
+			solver.setVolts(k, supplies.get(k).getVoltage());
+		}
+		int factorizations = solver.getFactorizations() + solver.getRefactorizations();
+		solver.solve();
+		if(fresh){
+			rebased++;
+		}else if(solver.getFactorizations() + solver.getRefactorizations() != factorizations){
+			refactored++;
+		}else if(solver.getUpdateRank() > 0){
+			updated++;
+		}else{
+			reused++;
+		}
+		writeBack(circuit.getGraph());
+		supplyAmps = new double[supplies.size()];
+		for(int k = 0; k < supplyAmps.length; k++){
+			supplyAmps[k] = solver.getSupplyAmps(k);
+		}
+		return supplyAmps[0];
+	}
+
+	/**
+	 * The current out of supply k's +node in the last circuit solved.
+	 */
+	public double getSupplyAmps(int k){
+		return k < supplyAmps.length ? supplyAmps[k] : 0;
+	}
+
+	/**
+	 * The most changed resistors corrected with a low rank update before the factorization is redone.
+	 */
+	public void setMaxUpdateRank(int rank){
+		if(rank < 0){
+			throw new IllegalArgumentException("update rank can't be " + rank);
+		}
+		maxUpdateRank = rank;
+	}
+
+	public int getMaxUpdateRank(){
+		return maxUpdateRank;
+	}
+
+	/**
+	 * Forget everything, the next circuit starts cold.
+	 */
+	public void reset(){
+		planTopology = null;
+		plan = null;
+		workspace = null;
+		nodalOnly = false;
+		model = null;
+		solver = null;
+	}
+
+	public long getPlanned(){
+		return planned;
+	}
+
+	public long getCompiled(){
+		return compiled;
+	}
+
+	public long getRebased(){
+		return rebased;
+	}
+
+	public long getReused(){
+		return reused;
+	}
+
+	public long getUpdated(){
+		return updated;
+	}
+
+	public long getRefactored(){
+		return refactored;
+	}
+
+	public String toString(){
+		return "planned " + planned + " (" + compiled + " compiled), nodal: rebased " + rebased + ", reused "
+				+ reused + ", updated " + updated + ", refactored " + refactored;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Make this circuit the base, a fresh model and solver.
+	 */
+	private void rebase(Circuit circuit){
+		CircuitGraph graph = circuit.getGraph();
+		int r = graph.getResistorCount();
+		int n = graph.getNodeCount();
+		model = new CircuitGraph(r + maxUpdateRank, n);
+		model.ensureNodes(n);
+		nodeIds = new HashMap<String, Integer>(2*n);
+		ArrayList<Node>nodes = circuit.getNodes();
+		for(int i = 0; i < nodes.size(); i++){
+			nodeIds.put(nodes.get(i).getName(), nodes.get(i).getId());
+		}
+		byEnds = new HashMap<Long, Integer>(2*r);
+		sameEnds = new int[Math.max(1, r + maxUpdateRank)];
+		for(int s = 0; s < r; s++){
+			model.addResistor(graph.getOhms(s));
+			model.setEndpoints(s, graph.getNodeA(s), graph.getNodeB(s));
+			index(s);
+		}
+		baseCount = r;
+		ArrayList<PowerSupply>supplies = circuit.getSupplies();
+		supplyNodes = new int[2*supplies.size()];
+		solver = new NodalSolver(model);
+		for(int k = 0; k < supplies.size(); k++){
+			PowerSupply supply = supplies.get(k);
+			supplyNodes[2*k] = supply.getPosNode().getId();
+			supplyNodes[2*k+1] = supply.getNegNode().getId();
+			solver.addSupply(supplyNodes[2*k], supplyNodes[2*k+1], supply.getVoltage());
+		}
+		nodeOf = new int[n];
+		slotOf = new int[r];
+		used = new boolean[r];
+	}
+
+	/**
+	 * Set the model's ohms to this circuit's, opening what it doesn't have and adding what's new.
+	 * @return false if the circuit is too far from the base and has to be a new one.
+	 */
+	private boolean match(Circuit circuit){
+		CircuitGraph graph = circuit.getGraph();
+		int n = graph.getNodeCount();
+		if(nodeOf.length < n){
+			nodeOf = new int[n];
+		}
+		Arrays.fill(nodeOf, 0, n, -1);
+		ArrayList<Node>nodes = circuit.getNodes();
+		for(int i = 0; i < nodes.size(); i++){
+			Integer id = nodeIds.get(nodes.get(i).getName());
+			if(id == null){
+				return false; //a node the base doesn't have
+			}
+			nodeOf[nodes.get(i).getId()] = id;
+		}
+		ArrayList<PowerSupply>supplies = circuit.getSupplies();
+		if(2*supplies.size() != supplyNodes.length){
+			return false;
+		}
+		for(int k = 0; k < supplies.size(); k++){
+			if(nodeOf[supplies.get(k).getPosNode().getId()] != supplyNodes[2*k]
+					|| nodeOf[supplies.get(k).getNegNode().getId()] != supplyNodes[2*k+1]){
+				return false;
+			}
+		}
+		int r = graph.getResistorCount();
+		if(slotOf.length < r){
+			slotOf = new int[Math.max(r, 2*slotOf.length)];
+		}
+		int m = model.getResistorCount();
+		if(used.length < m + r){
+			used = new boolean[m + r];
+		}
+		for(int s = 0; s < m; s++){
+			used[s] = false;
+		}
+
+		//the same slot between the same nodes first, it's the usual case and needs no lookup
+		int pending = 0;
+		for(int s = 0; s < r; s++){
+			int a = graph.getNodeA(s);
+			int b = graph.getNodeB(s);
+			if(a == -1 || b == -1){
+				throw new IllegalStateException("resistor R" + s + " is not connected at both ends");
+			}
+			a = nodeOf[a];
+			b = nodeOf[b];
+			if(a == -1 || b == -1){
+				return false;
+			}
+			if(s < m && model.getNodeA(s) == a && model.getNodeB(s) == b){
+				slotOf[s] = s;
+				used[s] = true;
+			}else{
+				slotOf[s] = -1;
+				pending++;
+			}
+		}
+		//then any free slot between the same nodes, or a new one
+		for(int s = 0; s < r && pending > 0; s++){
+			if(slotOf[s] != -1){
+				continue;
+			}
+			int a = nodeOf[graph.getNodeA(s)];
+			int b = nodeOf[graph.getNodeB(s)];
+			Integer first = byEnds.get(key(a, b));
+			int slot = first == null ? -1 : first;
+			while(slot != -1 && used[slot]){
+				slot = sameEnds[slot];
+			}
+			if(slot == -1){
+				if(model.getResistorCount() - baseCount == baseCount/2 + maxUpdateRank){
+					return false; //the model would be mostly additions
+				}
+				slot = model.addResistor(Double.POSITIVE_INFINITY);
+				model.setEndpoints(slot, a, b);
+				index(slot);
+			}
+			slotOf[s] = slot;
+			used[slot] = true;
+		}
+		double[] ohms = model.getOhmsArray();
+		for(int s = 0; s < model.getResistorCount(); s++){
+			if(!used[s]){
+				ohms[s] = Double.POSITIVE_INFINITY;
+			}
+		}
+		for(int s = 0; s < r; s++){
+			ohms[slotOf[s]] = graph.getOhms(s);
+		}
+		return true;
+	}
+
+	/**
+	 * Put a model slot at the end of the list of slots between its nodes.
+	 */
+	private void index(int slot){
+		if(slot == sameEnds.length){
+			sameEnds = Arrays.copyOf(sameEnds, 2*sameEnds.length);
+		}
+		sameEnds[slot] = -1;
+		Long key = key(model.getNodeA(slot), model.getNodeB(slot));
+		Integer first = byEnds.get(key);
+		if(first == null){
+			byEnds.put(key, slot);
+			return;
+		}
+		int last = first;
+		while(sameEnds[last] != -1){
+			last = sameEnds[last];
+		}
+		sameEnds[last] = slot;
+	}
+
+	private static long key(int a, int b){
+		return ((long)a << 32) | (b & 0xffffffffL);
+	}
+
+	/**
+	 * Copy the model's results into the circuit.
+	 */
+	private void writeBack(CircuitGraph graph){
+		int n = graph.getNodeCount();
+		double[] voltage = graph.getVoltageArray();
+		for(int i = 0; i < n; i++){
+			voltage[i] = nodeOf[i] == -1 ? Double.NaN : model.getVoltage(nodeOf[i]);
+		}
+		int r = graph.getResistorCount();
+		double[] amps = graph.getAmpsArray();
+		double[] watts = graph.getWattsArray();
+		double[] vdrop = graph.getVoltageDropArray();
+		for(int s = 0; s < r; s++){
+			int slot = slotOf[s];
+			amps[s] = model.getAmps(slot);
+			watts[s] = model.getWatts(slot);
+			vdrop[s] = model.getVoltageDrop(slot);
+		}
+	}
+
+	/**
+	 * Plans assume nothing shorts or opens.
+	 */
+	private static boolean usable(CircuitGraph graph){
+		double[] ohms = graph.getOhmsArray();
+		for(int s = 0; s < graph.getResistorCount(); s++){
+			if(!(ohms[s] > 0) || Double.isInfinite(ohms[s])){
+				return false;
+			}
+		}
+		return true;
+	}
+}
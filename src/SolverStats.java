@@ -0,0 +1,279 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Keeps running totals of what the solvers did, and a histogram of solve latencies for percentiles.
+ * Set one on a circuit with Circuit.setMetrics(), or on every new circuit with Circuit.setDefaultMetrics(),
+ * and register() it to read it from JConsole or any other JMX client.
+ * Everything is a LongAdder or an atomic bucket, so many threads can record at once without a lock.
+ * The histogram buckets are 1/16th of a power of two wide, so a percentile is good to about 6%.
+ * @author Isaac Assegai
+ *
+ */
+public class SolverStats implements SolverMetrics, SolverStatsMBean {
+	/* Member Variables */
+	private static final int SUB_BUCKETS = 16; //Buckets per power of two.
+	private static final int SUB_BITS = 4;
+
+	private LongAdder solves;
+	private LongAdder nodalSolves;
+	private LongAdder seriesMerges;
+	private LongAdder parallelMerges;
+	private LongAdder starEliminations;
+	private LongAdder danglingDrops;
+	private LongAdder staleCandidates;
+	private LongAdder indexNanos;
+	private LongAdder reduceNanos;
+	private LongAdder backNanos;
+	private LongAdder totalNanos; //simplify() and solveNodal() together.
+	private LongAdder copies;
+	private LongAdder copiedResistors;
+	private LongAdder allocatedBytes;
+	private AtomicLongArray latency; //How many solves took nanos in each bucket.
+	private LongAccumulator maxNanos;
+	private ObjectName registeredAs; //null unless register() was called.
+
+	public SolverStats(){
+		latency = new AtomicLongArray(64*SUB_BUCKETS);
+		maxNanos = new LongAccumulator(Math::max, 0);
+		solves = new LongAdder();
+		nodalSolves = new LongAdder();
+		seriesMerges = new LongAdder();
+		parallelMerges = new LongAdder();
+		starEliminations = new LongAdder();
+		danglingDrops = new LongAdder();
+		staleCandidates = new LongAdder();
+		indexNanos = new LongAdder();
+		reduceNanos = new LongAdder();
+		backNanos = new LongAdder();
+		totalNanos = new LongAdder();
+		copies = new LongAdder();
+		copiedResistors = new LongAdder();
+		allocatedBytes = new LongAdder();
+		registeredAs = null;
+	}
+
+	/* Public Methods */
+	public void simplified(SolveSample sample){
+		solves.increment();
+		seriesMerges.add(sample.seriesMerges);
+		parallelMerges.add(sample.parallelMerges);
+		starEliminations.add(sample.starEliminations);
+		danglingDrops.add(sample.danglingDrops);
+		staleCandidates.add(sample.staleCandidates);
+		indexNanos.add(sample.indexNanos);
+		reduceNanos.add(sample.reduceNanos);
+		backNanos.add(sample.backNanos);
+		if(sample.allocatedBytes > 0){
+			allocatedBytes.add(sample.allocatedBytes);
+		}
+		recordLatency(sample.totalNanos);
+	}
+
+	public void copied(int resistors){
+		copies.increment();
+		copiedResistors.add(resistors);
+	}
+
+	public void solvedNodal(long nanos, long bytes){
+		nodalSolves.increment();
+		if(bytes > 0){
+			allocatedBytes.add(bytes);
+		}
+		recordLatency(nanos);
+	}
+
+	/**
+	 * Show these stats over JMX, as circuit:type=SolverStats,name=<name>.
+	 */
+	public synchronized void register(String name){
+		if(registeredAs != null){
+			throw new IllegalStateException("these stats are already registered as " + registeredAs);
+		}
+		try{
+			ObjectName objectName = new ObjectName("circuit:type=SolverStats,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			registeredAs = objectName;
+		}catch(JMException e){
+			throw new IllegalStateException("couldn't register solver stats " + name, e);
+		}
+	}
+
+	/**
+	 * Take these stats back off JMX, if they were registered.
+	 */
+	public synchronized void unregister(){
+		if(registeredAs == null){
+			return;
+		}
+		try{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+		}catch(JMException e){
+			throw new IllegalStateException("couldn't unregister solver stats " + registeredAs, e);
+		}
+		registeredAs = null;
+	}
+
+	/**
+	 * Start counting again from nothing. Solves that finish while this runs may be half counted.
+	 */
+	public void reset(){
+		solves.reset();
+		nodalSolves.reset();
+		seriesMerges.reset();
+		parallelMerges.reset();
+		starEliminations.reset();
+		danglingDrops.reset();
+		staleCandidates.reset();
+		indexNanos.reset();
+		reduceNanos.reset();
+		backNanos.reset();
+		totalNanos.reset();
+		copies.reset();
+		copiedResistors.reset();
+		allocatedBytes.reset();
+		maxNanos.reset();
+		for(int i = 0; i < latency.length(); i++){
+			latency.set(i, 0);
+		}
+	}
+
+	public long getSolves(){
+		return solves.sum();
+	}
+
+	public long getNodalSolves(){
+		return nodalSolves.sum();
+	}
+
+	public long getSeriesMerges(){
+		return seriesMerges.sum();
+	}
+
+	public long getParallelMerges(){
+		return parallelMerges.sum();
+	}
+
+	public long getStarEliminations(){
+		return starEliminations.sum();
+	}
+
+	public long getDanglingDrops(){
+		return danglingDrops.sum();
+	}
+
+	public long getStaleCandidates(){
+		return staleCandidates.sum();
+	}
+
+	public double getIndexMillis(){
+		return indexNanos.sum()/1e6;
+	}
+
+	public double getReduceMillis(){
+		return reduceNanos.sum()/1e6;
+	}
+
+	public double getBackSubstitutionMillis(){
+		return backNanos.sum()/1e6;
+	}
+
+	public double getTotalMillis(){
+		return totalNanos.sum()/1e6;
+	}
+
+	public long getCopies(){
+		return copies.sum();
+	}
+
+	public long getCopiedResistors(){
+		return copiedResistors.sum();
+	}
+
+	public long getAllocatedBytes(){
+		return allocatedBytes.sum();
+	}
+
+	public double getMeanLatencyMicros(){
+		long count = solves.sum() + nodalSolves.sum();
+		return count == 0 ? 0 : totalNanos.sum()/1e3/count;
+	}
+
+	public double getLatencyP50Micros(){
+		return percentile(0.5)/1e3;
+	}
+
+	public double getLatencyP90Micros(){
+		return percentile(0.9)/1e3;
+	}
+
+	public double getLatencyP99Micros(){
+		return percentile(0.99)/1e3;
+	}
+
+	public double getLatencyP999Micros(){
+		return percentile(0.999)/1e3;
+	}
+
+	public double getMaxLatencyMicros(){
+		return maxNanos.get()/1e3;
+	}
+
+	/**
+	 * The latency q of the solves were at or under, in nanoseconds, the top of its bucket.
+	 * @param q From 0 to 1, 0.99 for the 99th percentile.
+	 */
+	public long percentile(double q){
+		long count = 0;
+		for(int i = 0; i < latency.length(); i++){
+			count += latency.get(i);
+		}
+		if(count == 0){
+			return 0;
+		}
+		long target = Math.max(1, (long)Math.ceil(q*count));
+		long seen = 0;
+		for(int i = 0; i < latency.length(); i++){
+			seen += latency.get(i);
+			if(seen >= target){
+				return Math.min(bucketTop(i), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	/* Private Methods */
+	private void recordLatency(long nanos){
+		nanos = Math.max(0, nanos);
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+		latency.incrementAndGet(bucket(nanos));
+	}
+
+	/**
+	 * Values under SUB_BUCKETS get a bucket each, past that each power of two is split
+	 * into SUB_BUCKETS by the bits just under the top one.
+	 */
+	private static int bucket(long nanos){
+		if(nanos < SUB_BUCKETS){
+			return (int)nanos;
+		}
+		int power = 63 - Long.numberOfLeadingZeros(nanos);
+		int top = (int)(nanos >>> (power - SUB_BITS)); //SUB_BUCKETS..2*SUB_BUCKETS-1
+		return (power - SUB_BITS + 1)*SUB_BUCKETS + top - SUB_BUCKETS;
+	}
+
+	private static long bucketTop(int bucket){
+		if(bucket < SUB_BUCKETS){
+			return bucket;
+		}
+		int power = bucket/SUB_BUCKETS + SUB_BITS - 1;
+		long top = bucket%SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << (power - SUB_BITS)) - 1;
+	}
+}
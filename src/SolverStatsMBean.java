@@ -0,0 +1,29 @@
+/**
+ * What SolverStats shows over JMX, see SolverStats.register().
+ * Latencies are in microseconds and cover simplify() and solveNodal() together.
+ * @author Isaac Assegai
+ *
+ */
+public interface SolverStatsMBean {
+	public long getSolves();
+	public long getNodalSolves();
+	public long getSeriesMerges();
+	public long getParallelMerges();
+	public long getStarEliminations();
+	public long getDanglingDrops();
+	public long getStaleCandidates();
+	public double getIndexMillis();
+	public double getReduceMillis();
+	public double getBackSubstitutionMillis();
+	public double getTotalMillis();
+	public long getCopies();
+	public long getCopiedResistors();
+	public long getAllocatedBytes();
+	public double getMeanLatencyMicros();
+	public double getLatencyP50Micros();
+	public double getLatencyP90Micros();
+	public double getLatencyP99Micros();
+	public double getLatencyP999Micros();
+	public double getMaxLatencyMicros();
+	public void reset();
+}
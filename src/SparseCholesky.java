@@ -0,0 +1,277 @@
+import java.util.Arrays;
+
+/**
+ * A sparse Cholesky factorization P*A*P' = L*L' of a symmetric positive definite matrix.
+ * The rows and columns are first permuted by a fill reducing ordering, then the
+ * symbolic pass works out the elimination tree and how many entries each column of L
+ * needs, and the numeric pass fills L in one row at a time (up-looking).
+ * Once factored we can solve for as many right hand sides as we like, and a matrix with the
+ * same pattern but new values can be refactored with only the numeric pass.
+ * @author Isaac Assegai
+ *
+ */
+public class SparseCholesky {
+	/* Member Variables */
+	private int n; //The size of the matrix.
+	private int[] perm; //perm[k] is the original index of row/column k of L.
+	private int[] pinv; //The inverse of perm.
+	private int[] parent; //The elimination tree.
+	private int[] lp; //Column pointers of L, the diagonal is stored first in each column.
+	private int[] li; //Row indices of L.
+	private double[] lx; //Values of L.
+	private double[] work; //Scratch for solve(), so solving doesn't allocate.
+	private int[] upperPtr; //The pattern of the permuted upper triangle the analysis was done for.
+	private int[] upperIdx;
+
+	/**
+	 * Constructor - Order, analyze and factor the matrix.
+	 * @param a The matrix, both triangles must be stored.
+	 * @param perm The ordering to use, see MinimumDegree.
+	 */
+	public SparseCholesky(SparseMatrix a, int[] perm){
+		n = a.size();
+		this.perm = perm;
+		pinv = new int[n];
+		for(int k = 0; k < n; k++){
+			pinv[perm[k]] = k;
+		}
+		work = new double[n];
+		SparseMatrix c = permuteUpper(a);
+		analyze(c);
+		factor(c);
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Solve A*x = b in place, b is overwritten with x.
+	 */
+	public void solve(double[] b){
+		solve(b, work);
+	}
+
+	/**
+	 * Solve A*x = b in place with our own scratch, size() long, so threads can solve at once.
+	 */
+	public void solve(double[] b, double[] x){
+		for(int k = 0; k < n; k++){
+			x[k] = b[perm[k]];
+		}
+		//L*y = P*b, a right hand side with few entries stays mostly zero, only the
+		//elimination tree ancestors of its entries fill in, so skip the columns that don't
+		for(int j = 0; j < n; j++){
+			if(x[j] == 0){
+				continue;
+			}
+			x[j] /= lx[lp[j]];
+			double xj = x[j];
+			for(int p = lp[j]+1; p < lp[j+1]; p++){
+				x[li[p]] -= lx[p]*xj;
+			}
+		}
+		//L'*z = y
+		for(int j = n-1; j >= 0; j--){
+			double xj = x[j];
+			for(int p = lp[j]+1; p < lp[j+1]; p++){
+				xj -= lx[p]*x[li[p]];
+			}
+			x[j] = xj/lx[lp[j]];
+		}
+		for(int k = 0; k < n; k++){
+			b[perm[k]] = x[k];
+		}
+	}
+
+	/**
+	 * Factor a matrix with exactly the pattern this one was made with, only the values are new.
+	 * The ordering and the symbolic analysis are kept, so this is just the numeric pass.
+	 * @param a The matrix, both triangles stored, in the same order as before.
+	 */
+	public void refactor(SparseMatrix a){
+		if(a.size() != n){
+			throw new IllegalArgumentException("matrix is " + a.size() + " by " + a.size() + ", the factorization is " + n + " by " + n);
+		}
+		SparseMatrix c = permuteUpper(a);
+		if(!Arrays.equals(c.getColPtr(), upperPtr) || !Arrays.equals(c.getRowIdx(), upperIdx)){
+			throw new IllegalArgumentException("matrix doesn't have the pattern the factorization was analyzed for");
+		}
+		factor(c);
+	}
+
+	public int size(){
+		return n;
+	}
+
+	/**
+	 * The number of entries in L, including the diagonal.
+	 */
+	public int nonZeros(){
+		return lp[n];
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Builds the upper triangle of P*A*P', the only part the factorization reads.
+	 */
+	private SparseMatrix permuteUpper(SparseMatrix a){
+		int[] ap = a.getColPtr();
+		int[] ai = a.getRowIdx();
+		double[] ax = a.getValues();
+		int[] cp = new int[n+1];
+		for(int j = 0; j < n; j++){
+			int j2 = pinv[j];
+			for(int p = ap[j]; p < ap[j+1]; p++){
+				if(ai[p] > j){
+					continue; //the lower triangle mirrors the upper one
+				}
+				int i2 = pinv[ai[p]];
+				cp[Math.max(i2, j2)+1]++;
+			}
+		}
+		for(int j = 0; j < n; j++){
+			cp[j+1] += cp[j];
+		}
+		int[] next = new int[n];
+		System.arraycopy(cp, 0, next, 0, n);
+		int[] ci = new int[cp[n]];
+		double[] cx = new double[cp[n]];
+		for(int j = 0; j < n; j++){
+			int j2 = pinv[j];
+			for(int p = ap[j]; p < ap[j+1]; p++){
+				if(ai[p] > j){
+					continue;
+				}
+				int i2 = pinv[ai[p]];
+				int q = next[Math.max(i2, j2)]++;
+				ci[q] = Math.min(i2, j2);
+				cx[q] = ax[p];
+			}
+		}
+		return new SparseMatrix(n, cp, ci, cx);
+	}
+
+	/**
+	 * Symbolic analysis, finds the elimination tree and the column pointers of L.
+	 */
+	private void analyze(SparseMatrix c){
+		int[] cp = c.getColPtr();
+		int[] ci = c.getRowIdx();
+		upperPtr = cp;
+		upperIdx = ci;
+		parent = new int[n];
+		int[] ancestor = new int[n];
+		for(int k = 0; k < n; k++){
+			parent[k] = -1;
+			ancestor[k] = -1;
+			for(int p = cp[k]; p < cp[k+1]; p++){
+				int i = ci[p];
+				while(i != -1 && i < k){
+					int inext = ancestor[i];
+					ancestor[i] = k;
+					if(inext == -1){
+						parent[i] = k;
+					}
+					i = inext;
+				}
+			}
+		}
+
+		//count the entries of each column of L by walking the pattern of every row
+		int[] count = new int[n];
+		int[] stack = new int[n];
+		int[] flag = ancestor; //reuse as the visited marks for ereach
+		for(int k = 0; k < n; k++){
+			flag[k] = -1;
+		}
+		for(int k = 0; k < n; k++){
+			int top = ereach(c, k, stack, flag);
+			for(; top < n; top++){
+				count[stack[top]]++;
+			}
+			count[k]++; //the diagonal
+		}
+		lp = new int[n+1];
+		for(int k = 0; k < n; k++){
+			lp[k+1] = lp[k] + count[k];
+		}
+	}
+
+	/**
+	 * Numeric factorization, row k of L is found by a sparse triangular solve
+	 * against the rows above it.
+	 */
+	private void factor(SparseMatrix c){
+		int[] cp = c.getColPtr();
+		int[] ci = c.getRowIdx();
+		double[] cx = c.getValues();
+		if(li == null){
+			li = new int[lp[n]];
+			lx = new double[lp[n]];
+		}
+		int[] fill = new int[n]; //the next free slot in each column of L
+		int[] stack = new int[n];
+		int[] flag = new int[n];
+		double[] x = work;
+		for(int k = 0; k < n; k++){
+			fill[k] = lp[k];
+			flag[k] = -1;
+			x[k] = 0;
+		}
+		for(int k = 0; k < n; k++){
+			int top = ereach(c, k, stack, flag);
+			x[k] = 0;
+			for(int p = cp[k]; p < cp[k+1]; p++){
+				x[ci[p]] += cx[p];
+			}
+			double d = x[k];
+			x[k] = 0;
+			for(; top < n; top++){
+				int i = stack[top];
+				double lki = x[i]/lx[lp[i]];
+				x[i] = 0;
+				for(int p = lp[i]+1; p < fill[i]; p++){
+					x[li[p]] -= lx[p]*lki;
+				}
+				d -= lki*lki;
+				int p = fill[i]++;
+				li[p] = k;
+				lx[p] = lki;
+			}
+			if(d <= 0){
+				throw new IllegalStateException("matrix is not positive definite at column " + perm[k]);
+			}
+			int p = fill[k]++;
+			li[p] = k;
+			lx[p] = Math.sqrt(d);
+		}
+	}
+
+	/**
+	 * Finds the nonzero pattern of row k of L by walking up the elimination tree from
+	 * every entry in column k of the upper triangle.
+	 * @return top, the pattern is in stack[top..n-1] in topological order.
+	 */
+	private int ereach(SparseMatrix c, int k, int[] stack, int[] flag){
+		int[] cp = c.getColPtr();
+		int[] ci = c.getRowIdx();
+		int top = n;
+		flag[k] = k;
+		for(int p = cp[k]; p < cp[k+1]; p++){
+			int i = ci[p];
+			if(i > k){
+				continue;
+			}
+			int len = 0;
+			while(flag[i] != k){
+				stack[len++] = i;
+				flag[i] = k;
+				i = parent[i];
+			}
+			while(len > 0){
+				stack[--top] = stack[--len];
+			}
+		}
+		return top;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * A square sparse matrix stored in compressed sparse column (CSC) form.
+ * Column j keeps its row indices in rowIdx[colPtr[j]..colPtr[j+1]-1] and the
+ * matching values in values[], all primitive arrays so the solver loops never box.
+ * Our conductance matrices are symmetric, so CSC and CSR are the same arrays.
+ * @author Isaac Assegai
+ *
+ */
+public class SparseMatrix {
+	/* Member Variables */
+	private int n; //The number of rows and columns.
+	private int[] colPtr; //Where each column starts in rowIdx and values, colPtr[n] is the number of entries.
+	private int[] rowIdx; //The row of each entry.
+	private double[] values; //The value of each entry.
+
+	/**
+	 * Constructor - Wrap already compressed arrays, they are not copied.
+	 */
+	public SparseMatrix(int n, int[] colPtr, int[] rowIdx, double[] values){
+		this.n = n;
+		this.colPtr = colPtr;
+		this.rowIdx = rowIdx;
+		this.values = values;
+	}
+
+	/**
+	 * Build a matrix from (row, col, value) triplets, duplicate entries are summed
+	 * the way a conductance matrix is stamped one resistor at a time.
+	 * @param n The size of the matrix.
+	 * @param count How many triplets to read from the arrays.
+	 */
+	public static SparseMatrix fromTriplets(int n, int[] rows, int[] cols, double[] vals, int count){
+		int[] colPtr = new int[n+1];
+		for(int k = 0; k < count; k++){
+			colPtr[cols[k]+1]++;
+		}
+		for(int j = 0; j < n; j++){
+			colPtr[j+1] += colPtr[j];
+		}
+		int[] next = new int[n];
+		System.arraycopy(colPtr, 0, next, 0, n);
+		int[] rowIdx = new int[count];
+		double[] values = new double[count];
+		for(int k = 0; k < count; k++){
+			int p = next[cols[k]]++;
+			rowIdx[p] = rows[k];
+			values[p] = vals[k];
+		}
+
+		//sum duplicates, compacting every column in place
+		int[] seen = new int[n]; //seen[i] is where row i was last stored in the current column
+		for(int i = 0; i < n; i++){
+			seen[i] = -1;
+		}
+		int nz = 0;
+		for(int j = 0; j < n; j++){
+			int start = nz;
+			for(int p = colPtr[j]; p < colPtr[j+1]; p++){
+				int i = rowIdx[p];
+				if(seen[i] >= start){
+					values[seen[i]] += values[p];
+				}else{
+					seen[i] = nz;
+					rowIdx[nz] = i;
+					values[nz] = values[p];
+					nz++;
+				}
+			}
+			colPtr[j] = start;
+		}
+		colPtr[n] = nz;
+		return new SparseMatrix(n, colPtr, rowIdx, values);
+	}
+
+	/* Public Methods */
+	public int size(){
+		return n;
+	}
+
+	public int nonZeros(){
+		return colPtr[n];
+	}
+
+	public int[] getColPtr(){
+		return colPtr;
+	}
+
+	public int[] getRowIdx(){
+		return rowIdx;
+	}
+
+	public double[] getValues(){
+		return values;
+	}
+
+	/**
+	 * y = A*x, y is overwritten.
+	 */
+	public void multiply(double[] x, double[] y){
+		for(int i = 0; i < n; i++){
+			y[i] = 0;
+		}
+		for(int j = 0; j < n; j++){
+			double xj = x[j];
+			for(int p = colPtr[j]; p < colPtr[j+1]; p++){
+				y[rowIdx[p]] += values[p]*xj;
+			}
+		}
+	}
+}
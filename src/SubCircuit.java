@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A two terminal series/parallel network that gets used over and over, like a filter leg or a
+ * divider ladder. Build it once from a template circuit whose power supply marks the two terminals,
+ * then place as many copies as you like with Circuit.addSubCircuit().
+ * Its shape, the tree of series and parallel combines with the ohms at the leaves, is hashed into a
+ * structural key, so two sub-circuits built separately from the same network get the same key.
+ * simplify() looks each copy up in an EquivalentCache by that key and reduces it as a single resistor,
+ * then hands voltages back out to the copy's nodes with the cached ratios. Identical sub-circuits are
+ * solved once, however many copies there are and whichever circuits they are in.
+ * The template is copied, changing it afterwards doesn't change the sub-circuit.
+ * @author Isaac Assegai
+ *
+ */
+public class SubCircuit {
+	/* Member Variables */
+	private static final long SEED_HI = 0x243F6A8885A308D3L; //Two seeds give a 128 bit key, so collisions don't happen in practice.
+	private static final long SEED_LO = 0x13198A2E03707344L;
+	private static final long BASE_HI = 0xA4093822299F31D1L; //Odd, the chain polynomials are in these.
+	private static final long BASE_LO = 0x082EFA98EC4E6C89L;
+	private static final byte LEAF = 1;
+	private static final byte SERIES = 2;
+	private static final byte PARALLEL = 3;
+
+	private Circuit shape; //Our own copy of the template, with a 1 volt supply across the terminals.
+	private int plus; //Node id of the + terminal in shape.
+	private int minus;
+	private double[] ohms; //The template's resistors, in order.
+	private int[] nodeA; //Node id in shape at each resistor's nodeA.
+	private int[] nodeB;
+	private EquivalentCache.Key key;
+	private int[] order; //Node id in shape of each inner node, in the order the key walks the tree.
+
+	/**
+	 * Constructor - Copy a template and work out its key.
+	 * @param template A circuit with one power supply, its +node and -node are the terminals. Every resistor
+	 *                 has to reduce into a single resistor across them by series and parallel combines alone.
+	 */
+	public SubCircuit(Circuit template){
+		if(template.getSupplies().size() != 1){
+			throw new IllegalArgumentException("a sub-circuit's terminals are marked by one power supply, circuit "
+					+ template.getName() + " has " + template.getSupplies().size());
+		}
+		PowerSupply supply = template.getSupply();
+		if(supply.getPosNode() == null || supply.getNegNode() == null || supply.getPosNode().getId() == supply.getNegNode().getId()){
+			throw new IllegalArgumentException("circuit " + template.getName() + " doesn't have two terminals");
+		}
+		ArrayList<Node>nodes = template.getNodes();
+		int[] ids = new int[template.getNodeIdCount()];
+		shape = new Circuit();
+		for(int i = 0; i < nodes.size(); i++){
+			ids[nodes.get(i).getId()] = shape.newNode().getId();
+		}
+		plus = ids[supply.getPosNode().getId()];
+		minus = ids[supply.getNegNode().getId()];
+		ArrayList<Resistor>resistors = template.getResistors();
+		ohms = new double[resistors.size()];
+		nodeA = new int[resistors.size()];
+		nodeB = new int[resistors.size()];
+		for(int i = 0; i < resistors.size(); i++){
+			Resistor r = resistors.get(i);
+			if(r.getNodeA() == null || r.getNodeB() == null){
+				throw new IllegalArgumentException("resistor " + r.getName() + " is not connected at both ends");
+			}
+			ohms[i] = r.getOhms();
+			nodeA[i] = ids[r.getNodeA().getId()];
+			nodeB[i] = ids[r.getNodeB().getId()];
+			shape.newResistor(ohms[i], shape.getNode(nodeA[i]), shape.getNode(nodeB[i]));
+		}
+		PowerSupply unit = new PowerSupply(1.0);
+		unit.setPosNode(shape.getNode(plus));
+		unit.setNegNode(shape.getNode(minus));
+		shape.getNode(plus).addConnection(unit);
+		shape.getNode(minus).addConnection(unit);
+		shape.addSupply(unit);
+
+		Reducer reducer = new Reducer(shape);
+		Resistor root = reducer.reduce();
+		ArrayList<Replacement>log = reducer.getLog();
+		for(int i = 0; i < log.size(); i++){
+			if(log.get(i).kind != Replacement.SERIES && log.get(i).kind != Replacement.PARALLEL){
+				throw new IllegalArgumentException("circuit " + template.getName() + " isn't a series/parallel network");
+			}
+		}
+		if(root == null){
+			throw new IllegalArgumentException("nothing connects the terminals of circuit " + template.getName());
+		}
+		walk(log, root);
+		if(order.length != nodes.size() - 2){
+			throw new IllegalArgumentException("circuit " + template.getName() + " has nodes that aren't between its terminals");
+		}
+	}
+
+	/* Public Methods */
+
+	/**
+	 * The structural key, equal for sub-circuits with the same series/parallel tree and ohms.
+	 */
+	public EquivalentCache.Key getKey(){
+		return key;
+	}
+
+	public int getNodeCount(){
+		return shape.getNodeIdCount();
+	}
+
+	public int getResistorCount(){
+		return ohms.length;
+	}
+
+	/**
+	 * Node numbers run from 0 to getNodeCount()-1, these are the terminals.
+	 */
+	public int getPlus(){
+		return plus;
+	}
+
+	public int getMinus(){
+		return minus;
+	}
+
+	public double getOhms(int i){
+		return ohms[i];
+	}
+
+	public int getNodeA(int i){
+		return nodeA[i];
+	}
+
+	public int getNodeB(int i){
+		return nodeB[i];
+	}
+
+	/**
+	 * The inner nodes, in the order the cached ratios are in.
+	 */
+	public int[] getOrder(){
+		return order;
+	}
+
+	/**
+	 * Solve our copy with 1 volt across the terminals. Each inner node's voltage is then its ratio
+	 * between the terminals, the same for every copy whatever voltages it sees.
+	 * @return The equivalent ohms and the ratios, ready for an EquivalentCache.
+	 */
+	public synchronized EquivalentCache.Entry solve(){
+		shape.simplify();
+		double[] ratios = new double[order.length];
+		for(int j = 0; j < order.length; j++){
+			ratios[j] = shape.getGraph().getVoltage(order[j]);
+		}
+		return new EquivalentCache.Entry(shape.getEquivalent().getOhms(), ratios);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Hash the reduction tree bottom up into the key, then walk it top down for the order of the inner nodes.
+	 * The reducer can combine a chain or a bundle in any order, so the key mustn't depend on it:
+	 * a series chain is hashed as a polynomial over its pieces in order, (A+B)+C and A+(B+C) come out
+	 * the same, and a parallel bundle as the sum of its branches, which doesn't care about order at all.
+	 * Every resistor gets a key for each way round, a chain read backwards is a different chain.
+	 * The walk takes chains in order and each bundle's branches sorted by key, so sub-circuits with
+	 * the same key list their nodes the same way.
+	 */
+	private void walk(ArrayList<Replacement>log, Resistor root){
+		int size = root.getId()+1;
+		for(int i = 0; i < log.size(); i++){
+			size = Math.max(size, log.get(i).result.getId()+1);
+		}
+		long[] seed = {SEED_HI, SEED_LO};
+		long[] base = {BASE_HI, BASE_LO};
+		byte[] kind = new byte[size]; //LEAF, SERIES or PARALLEL by resistor id.
+		long[][][] keys = new long[2][2][size]; //[hi or lo][forward or reverse][resistor id], forward is nodeA to nodeB.
+		long[][][] chain = new long[2][2][size]; //For a series result, the polynomial hash of its whole chain.
+		long[][] power = new long[2][size]; //For a series result, base to the length of its chain.
+		long[][][] bundle = new long[2][2][size]; //For a parallel result, the sum over all its branches.
+		ArrayList<Resistor>resistors = shape.getResistors();
+		for(int i = 0; i < resistors.size(); i++){
+			int id = resistors.get(i).getId();
+			long bits = Double.doubleToLongBits(ohms[i]);
+			kind[id] = LEAF;
+			for(int h = 0; h < 2; h++){
+				keys[h][0][id] = keys[h][1][id] = mix(seed[h], LEAF, bits, 0);
+			}
+		}
+		for(int i = 0; i < log.size(); i++){
+			Replacement replacement = log.get(i);
+			int r = replacement.result.getId();
+			int a = replacement.a.getId();
+			int b = replacement.b.getId();
+			int da = aligned(replacement.a, replacement.result, replacement) ? 0 : 1;
+			int db = aligned(replacement.b, replacement.result, replacement) ? 0 : 1;
+			kind[r] = replacement.isSeries ? SERIES : PARALLEL;
+			for(int h = 0; h < 2; h++){
+				for(int d = 0; d < 2; d++){
+					if(replacement.isSeries){
+						//forwards it's a then b, backwards b then a
+						int first = d == 0 ? a : b;
+						int second = d == 0 ? b : a;
+						int df = (d == 0 ? da : db) ^ d;
+						int ds = (d == 0 ? db : da) ^ d;
+						long head = kind[first] == SERIES ? chain[h][df][first] : finish(keys[h][df][first]);
+						long tail = kind[second] == SERIES ? chain[h][ds][second] : finish(keys[h][ds][second]);
+						long shift = kind[second] == SERIES ? power[h][second] : base[h];
+						chain[h][d][r] = head*shift + tail;
+						power[h][r] = (kind[first] == SERIES ? power[h][first] : base[h])*shift;
+						keys[h][d][r] = mix(seed[h], SERIES, chain[h][d][r], power[h][r]);
+					}else{
+						int ca = da ^ d;
+						int cb = db ^ d;
+						long left = kind[a] == PARALLEL ? bundle[h][ca][a] : finish(keys[h][ca][a] + PARALLEL);
+						long right = kind[b] == PARALLEL ? bundle[h][cb][b] : finish(keys[h][cb][b] + PARALLEL);
+						bundle[h][d][r] = left + right;
+						keys[h][d][r] = mix(seed[h], PARALLEL, bundle[h][d][r], 0);
+					}
+				}
+			}
+		}
+		int rootDir = root.getNodeA().getId() == plus ? 0 : 1;
+		key = new EquivalentCache.Key(keys[0][rootDir][root.getId()], keys[1][rootDir][root.getId()]);
+
+		//top down on a stack, so deep ladders don't overflow. Each resistor goes on once, and each middle node
+		//goes on between the two sides of its chain so it comes off in order.
+		int[] found = new int[shape.getNodeIdCount()];
+		int count = 0;
+		Resistor[] stack = new Resistor[size + log.size() + 1];
+		int[] dir = new int[stack.length];
+		int[] middle = new int[stack.length]; //A node id to record, or -1 for a resistor to open up.
+		Resistor[] group = new Resistor[size]; //The branches of one bundle, and the parallel results still to open.
+		int[] groupDir = new int[size];
+		int top = 0;
+		stack[top] = root;
+		dir[top] = rootDir;
+		middle[top++] = -1;
+		while(top > 0){
+			top--;
+			if(middle[top] != -1){
+				found[count++] = middle[top];
+				continue;
+			}
+			Resistor x = stack[top];
+			int d = dir[top];
+			Replacement replacement = x.getReplacement();
+			if(replacement == null){
+				continue; //one of the template's own resistors
+			}
+			int da = (aligned(replacement.a, x, replacement) ? 0 : 1) ^ d;
+			int db = (aligned(replacement.b, x, replacement) ? 0 : 1) ^ d;
+			if(replacement.isSeries){
+				top = push(stack, dir, middle, top, d == 0 ? replacement.b : replacement.a, d == 0 ? db : da, -1);
+				top = push(stack, dir, middle, top, null, 0, replacement.node.getId());
+				top = push(stack, dir, middle, top, d == 0 ? replacement.a : replacement.b, d == 0 ? da : db, -1);
+				continue;
+			}
+			//open up the whole bundle, then take its branches smallest key first
+			int branches = 0;
+			int open = size;
+			group[--open] = replacement.a;
+			groupDir[open] = da;
+			group[--open] = replacement.b;
+			groupDir[open] = db;
+			while(open < size){
+				Resistor y = group[open];
+				int e = groupDir[open++];
+				Replacement inner = y.getReplacement();
+				if(kind[y.getId()] != PARALLEL){
+					group[branches] = y;
+					groupDir[branches++] = e;
+					continue;
+				}
+				group[--open] = inner.a;
+				groupDir[open] = (aligned(inner.a, y, inner) ? 0 : 1) ^ e;
+				group[--open] = inner.b;
+				groupDir[open] = (aligned(inner.b, y, inner) ? 0 : 1) ^ e;
+			}
+			Integer[] sorted = new Integer[branches];
+			for(int j = 0; j < branches; j++){
+				sorted[j] = j;
+			}
+			Arrays.sort(sorted, new Comparator<Integer>(){
+				public int compare(Integer p, Integer q){
+					return SubCircuit.compare(keys[0][groupDir[p]][group[p].getId()], keys[1][groupDir[p]][group[p].getId()],
+							keys[0][groupDir[q]][group[q].getId()], keys[1][groupDir[q]][group[q].getId()]);
+				}
+			});
+			for(int j = branches-1; j >= 0; j--){
+				top = push(stack, dir, middle, top, group[sorted[j]], groupDir[sorted[j]], -1);
+			}
+		}
+		order = new int[count];
+		System.arraycopy(found, 0, order, 0, count);
+	}
+
+	private static int push(Resistor[] stack, int[] dir, int[] middle, int top, Resistor r, int d, int node){
+		stack[top] = r;
+		dir[top] = d;
+		middle[top] = node;
+		return top+1;
+	}
+
+	/**
+	 * Does child run the same way as the resistor it went into, for a series combine that's from
+	 * the result's nodeA to the middle node or from the middle node to the result's nodeB.
+	 */
+	private static boolean aligned(Resistor child, Resistor result, Replacement replacement){
+		int start = child == replacement.b && replacement.isSeries ? replacement.node.getId() : result.getNodeA().getId();
+		return child.getNodeA().getId() == start;
+	}
+
+	private static int compare(long aHi, long aLo, long bHi, long bLo){
+		int c = Long.compareUnsigned(aHi, bHi);
+		return c != 0 ? c : Long.compareUnsigned(aLo, bLo);
+	}
+
+	private static long mix(long seed, long kind, long x, long y){
+		long h = seed ^ kind*0x9E3779B97F4A7C15L;
+		h = finish(h ^ x);
+		return finish(h*0xC2B2AE3D27D4EB4FL ^ y);
+	}
+
+	/**
+	 * The 64 bit finalizer from MurmurHash3, every input bit affects every output bit.
+	 */
+	private static long finish(long h){
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
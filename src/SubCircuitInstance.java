@@ -0,0 +1,24 @@
+/**
+ * One copy of a SubCircuit placed in a circuit by Circuit.addSubCircuit().
+ * Its resistors sit together in the circuit's resistor list, from first to first+count-1,
+ * in the same order as the sub-circuit's.
+ * @author Isaac Assegai
+ *
+ */
+public class SubCircuitInstance {
+	public final SubCircuit sub;
+	public final int first; //Where the copy's resistors start in Circuit.getResistors().
+	public final int count;
+	public final int[] nodeIds; //sub-circuit node number -> the node id it became in the circuit.
+	public final Node plus; //The circuit nodes the terminals were placed on.
+	public final Node minus;
+
+	public SubCircuitInstance(SubCircuit sub, int first, int count, int[] nodeIds, Node plus, Node minus){
+		this.sub = sub;
+		this.first = first;
+		this.count = count;
+		this.nodeIds = nodeIds;
+		this.plus = plus;
+		this.minus = minus;
+	}
+}
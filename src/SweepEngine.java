@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a ReductionPlan over millions of sets of ohms, like a tolerance analysis.
+ * Rather than one case at a time, the cases are solved a block at a time with every slot and
+ * node stored as a column of BLOCK doubles. Each step of the plan then becomes a plain loop down
+ * a column, r1+r2 or r1*r2/(r1+r2), with no branches or indirection inside it, which the JIT
+ * turns into SIMD instructions on its own.
+ * Blocks are handed out to the threads from a shared counter, each thread has its own columns
+ * and SweepStats, and the stats are merged at the end.
+ * @author Isaac Assegai
+ *
+ */
+public class SweepEngine {
+	/* Member Variables */
+	public static final int BLOCK = 256; //Cases solved together.
+	private ReductionPlan plan;
+	private ExecutorService executor;
+	private int threads;
+	private boolean ownsExecutor; //We made the executor, so we shut it down.
+
+	/**
+	 * Constructor - Sweep on a ForkJoinPool with a thread for every core.
+	 */
+	public SweepEngine(ReductionPlan plan){
+		this(plan, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor - Sweep on a ForkJoinPool with this many threads.
+	 */
+	public SweepEngine(ReductionPlan plan, int threads){
+		if(threads < 1){
+			throw new IllegalArgumentException("a sweep needs at least 1 thread, not " + threads);
+		}
+		this.plan = plan;
+		this.threads = threads;
+		executor = new ForkJoinPool(threads);
+		ownsExecutor = true;
+	}
+
+	/**
+	 * Constructor - Sweep on an executor someone else owns, split into this many tasks.
+	 */
+	public SweepEngine(ReductionPlan plan, ExecutorService executor, int threads){
+		if(threads < 1){
+			throw new IllegalArgumentException("a sweep needs at least 1 thread, not " + threads);
+		}
+		this.plan = plan;
+		this.threads = threads;
+		this.executor = executor;
+		ownsExecutor = false;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Solve cases 0..cases-1 and gather the distribution of every resistor's amps and watts.
+	 * @param source Gives the ohms of each case.
+	 * @param volts The supply voltage, the same for every case.
+	 */
+	public SweepStats run(SweepSource source, long cases, double volts){
+		AtomicLong next = new AtomicLong(0);
+		ArrayList<Future<SweepStats>> futures = new ArrayList<Future<SweepStats>>(threads);
+		for(int t = 0; t < threads; t++){
+			futures.add(executor.submit(new SweepTask(source, cases, volts, next)));
+		}
+		SweepStats stats = new SweepStats(plan.getResistorCount());
+		try{
+			for(int t = 0; t < threads; t++){
+				stats.merge(futures.get(t).get());
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			cancel(futures);
+			throw new IllegalStateException("interrupted waiting for the sweep", e);
+		}catch(ExecutionException e){
+			cancel(futures);
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("a sweep task failed", e.getCause());
+		}
+		return stats;
+	}
+
+	/**
+	 * Shut down the executor if we made it.
+	 */
+	public void shutdown(){
+		if(ownsExecutor){
+			executor.shutdown();
+		}
+	}
+
+	/* Private Methods */
+	private static void cancel(ArrayList<Future<SweepStats>> futures){
+		for(int t = 0; t < futures.size(); t++){
+			futures.get(t).cancel(true);
+		}
+	}
+
+	/* Private Classes */
+
+	/**
+	 * One thread's share of a sweep, it takes blocks until there are none left.
+	 */
+	private class SweepTask implements Callable<SweepStats> {
+		private SweepSource source;
+		private long cases;
+		private double volts;
+		private AtomicLong next; //The first case of the next block nobody has taken.
+		private double[] o; //Ohms, slot s is o[s*BLOCK..s*BLOCK+BLOCK-1]
+		private double[] a; //Amps, laid out the same way.
+		private double[] v; //Voltages, node n is v[n*BLOCK..n*BLOCK+BLOCK-1]
+
+		SweepTask(SweepSource source, long cases, double volts, AtomicLong next){
+			this.source = source;
+			this.cases = cases;
+			this.volts = volts;
+			this.next = next;
+		}
+
+		public SweepStats call(){
+			int slots = plan.getSlotA().length;
+			o = new double[slots*BLOCK];
+			a = new double[slots*BLOCK]; //slots that are never reduced stay at 0 amps
+			v = new double[plan.getNodeCount()*BLOCK];
+			SweepStats stats = new SweepStats(plan.getResistorCount());
+			long first;
+			while((first = next.getAndAdd(BLOCK)) < cases){
+				int count = (int)Math.min(BLOCK, cases - first);
+				source.fill(first, count, o, BLOCK);
+				solveBlock(count);
+				int eq = plan.getEquivalent();
+				if(eq == -1){
+					stats.addSupply(new double[count], 0, count); //no resistors, nothing flows
+				}else{
+					stats.addSupply(a, eq*BLOCK, count);
+				}
+				for(int s = 0; s < plan.getResistorCount(); s++){
+					stats.addResistor(s, a, o, s*BLOCK, count);
+				}
+			}
+			return stats;
+		}
+
+		/**
+		 * ReductionPlan.execute(), with every scalar turned into a column.
+		 */
+		private void solveBlock(int count){
+			int r0 = plan.getResistorCount();
+			boolean[] series = plan.getSeries();
+			int[] left = plan.getLeft();
+			int[] right = plan.getRight();
+			int[] middle = plan.getMiddle();
+			int[] slotA = plan.getSlotA();
+			int[] slotB = plan.getSlotB();
+			int ops = series.length;
+
+			//forward, the ohms of every combined resistor
+			for(int k = 0; k < ops; k++){
+				int r = (r0+k)*BLOCK;
+				int x = left[k]*BLOCK;
+				int y = right[k]*BLOCK;
+				if(series[k]){
+					for(int i = 0; i < count; i++){
+						o[r+i] = o[x+i] + o[y+i];
+					}
+				}else{
+					for(int i = 0; i < count; i++){
+						o[r+i] = (o[x+i]*o[y+i])/(o[x+i]+o[y+i]);
+					}
+				}
+			}
+
+			//backward, from the supply out to the original resistors
+			int eq = plan.getEquivalent();
+			if(eq == -1){
+				return;
+			}
+			int p = plan.getPos()*BLOCK;
+			int n = plan.getNeg()*BLOCK;
+			for(int i = 0; i < count; i++){
+				v[p+i] = volts;
+				v[n+i] = 0;
+			}
+			ohmsLaw(eq, slotA, slotB, count);
+			for(int k = ops-1; k >= 0; k--){
+				if(series[k]){
+					int r = (r0+k)*BLOCK;
+					int m = middle[k]*BLOCK;
+					int ra = slotA[r0+k]*BLOCK;
+					int x = left[k]*BLOCK;
+					for(int i = 0; i < count; i++){
+						v[m+i] = v[ra+i] - a[r+i]*o[x+i];
+					}
+				}
+				ohmsLaw(left[k], slotA, slotB, count);
+				ohmsLaw(right[k], slotA, slotB, count);
+			}
+		}
+
+		private void ohmsLaw(int slot, int[] slotA, int[] slotB, int count){
+			int s = slot*BLOCK;
+			int va = slotA[slot]*BLOCK;
+			int vb = slotB[slot]*BLOCK;
+			for(int i = 0; i < count; i++){
+				a[s+i] = (v[va+i] - v[vb+i])/o[s+i];
+			}
+		}
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * Supplies the ohms for each case of a sweep. The SweepEngine asks for a block of cases at a time,
+ * laid out in columns: the ohms of resistor slot s in case first+i go in ohms[s*stride + i].
+ * fill() is called from several threads at once, so it can't keep any state between calls,
+ * and it should give the same values for a case no matter which block asks for it.
+ * @author Isaac Assegai
+ *
+ */
+public interface SweepSource {
+	void fill(long first, int count, double[] ohms, int stride);
+}
@@ -0,0 +1,152 @@
+/**
+ * The distribution of each resistor's amps and watts over a sweep, kept as running
+ * min, max and sum, so nothing from the individual cases has to be stored.
+ * Each sweep thread fills in its own, then they are merged.
+ * @author Isaac Assegai
+ *
+ */
+public class SweepStats {
+	/* Member Variables */
+	private long cases;
+	private double[] minAmps; //By resistor slot.
+	private double[] maxAmps;
+	private double[] sumAmps;
+	private double[] minWatts;
+	private double[] maxWatts;
+	private double[] sumWatts;
+	private double minSupplyAmps;
+	private double maxSupplyAmps;
+	private double sumSupplyAmps;
+
+	/**
+	 * Constructor - No cases yet.
+	 */
+	public SweepStats(int resistors){
+		cases = 0;
+		minAmps = filled(resistors, Double.POSITIVE_INFINITY);
+		maxAmps = filled(resistors, Double.NEGATIVE_INFINITY);
+		sumAmps = new double[resistors];
+		minWatts = filled(resistors, Double.POSITIVE_INFINITY);
+		maxWatts = filled(resistors, Double.NEGATIVE_INFINITY);
+		sumWatts = new double[resistors];
+		minSupplyAmps = Double.POSITIVE_INFINITY;
+		maxSupplyAmps = Double.NEGATIVE_INFINITY;
+		sumSupplyAmps = 0;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Add the amps of a resistor in a run of cases.
+	 * @param amps The amps through each of the resistor's cases in amps[from..from+count-1].
+	 * @param ohms The ohms of the resistor in those cases, at the same positions.
+	 */
+	public void addResistor(int slot, double[] amps, double[] ohms, int from, int count){
+		double lowA = minAmps[slot];
+		double highA = maxAmps[slot];
+		double sumA = 0;
+		double lowW = minWatts[slot];
+		double highW = maxWatts[slot];
+		double sumW = 0;
+		for(int i = from; i < from+count; i++){
+			double a = amps[i];
+			double w = a*a*ohms[i];
+			lowA = Math.min(lowA, a);
+			highA = Math.max(highA, a);
+			sumA += a;
+			lowW = Math.min(lowW, w);
+			highW = Math.max(highW, w);
+			sumW += w;
+		}
+		minAmps[slot] = lowA;
+		maxAmps[slot] = highA;
+		sumAmps[slot] += sumA;
+		minWatts[slot] = lowW;
+		maxWatts[slot] = highW;
+		sumWatts[slot] += sumW;
+	}
+
+	/**
+	 * Add the supply current of a run of cases, this is what counts the cases.
+	 */
+	public void addSupply(double[] amps, int from, int count){
+		for(int i = from; i < from+count; i++){
+			double a = Math.abs(amps[i]);
+			minSupplyAmps = Math.min(minSupplyAmps, a);
+			maxSupplyAmps = Math.max(maxSupplyAmps, a);
+			sumSupplyAmps += a;
+		}
+		cases += count;
+	}
+
+	/**
+	 * Fold another thread's stats into these.
+	 */
+	public void merge(SweepStats other){
+		cases += other.cases;
+		for(int s = 0; s < minAmps.length; s++){
+			minAmps[s] = Math.min(minAmps[s], other.minAmps[s]);
+			maxAmps[s] = Math.max(maxAmps[s], other.maxAmps[s]);
+			sumAmps[s] += other.sumAmps[s];
+			minWatts[s] = Math.min(minWatts[s], other.minWatts[s]);
+			maxWatts[s] = Math.max(maxWatts[s], other.maxWatts[s]);
+			sumWatts[s] += other.sumWatts[s];
+		}
+		minSupplyAmps = Math.min(minSupplyAmps, other.minSupplyAmps);
+		maxSupplyAmps = Math.max(maxSupplyAmps, other.maxSupplyAmps);
+		sumSupplyAmps += other.sumSupplyAmps;
+	}
+
+	public long getCases(){
+		return cases;
+	}
+
+	public int getResistorCount(){
+		return minAmps.length;
+	}
+
+	public double getMinAmps(int slot){
+		return minAmps[slot];
+	}
+
+	public double getMaxAmps(int slot){
+		return maxAmps[slot];
+	}
+
+	public double getMeanAmps(int slot){
+		return sumAmps[slot]/cases;
+	}
+
+	public double getMinWatts(int slot){
+		return minWatts[slot];
+	}
+
+	public double getMaxWatts(int slot){
+		return maxWatts[slot];
+	}
+
+	public double getMeanWatts(int slot){
+		return sumWatts[slot]/cases;
+	}
+
+	public double getMinSupplyAmps(){
+		return minSupplyAmps;
+	}
+
+	public double getMaxSupplyAmps(){
+		return maxSupplyAmps;
+	}
+
+	public double getMeanSupplyAmps(){
+		return sumSupplyAmps/cases;
+	}
+
+	/* Private Methods */
+	private static double[] filled(int length, double value){
+		double[] d = new double[length];
+		for(int i = 0; i < length; i++){
+			d[i] = value;
+		}
+		return d;
+	}
+}
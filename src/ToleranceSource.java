@@ -0,0 +1,64 @@
+/**
+ * A Monte Carlo sweep source, every resistor is drawn uniformly from its nominal ohms plus or
+ * minus a tolerance, like every resistor at 5%.
+ * Each value is a hash of the seed, the case and the slot, so there's no random number generator
+ * to share between threads, and a case always gets the same ohms.
+ * @author Isaac Assegai
+ *
+ */
+public class ToleranceSource implements SweepSource {
+	/* Member Variables */
+	private double[] nominal; //The ohms of each slot at the middle of its range.
+	private double tolerance; //0.05 for 5%.
+	private long seed;
+
+	/**
+	 * Constructor - Sweep around the ohms a circuit has now.
+	 */
+	public ToleranceSource(Circuit circuit, double tolerance, long seed){
+		this(copy(circuit.getGraph()), tolerance, seed);
+	}
+
+	/**
+	 * Constructor - Sweep around these ohms, by CircuitGraph slot.
+	 */
+	public ToleranceSource(double[] nominal, double tolerance, long seed){
+		if(!(tolerance >= 0 && tolerance < 1)){
+			throw new IllegalArgumentException("a tolerance of " + tolerance + " could make the ohms 0 or less");
+		}
+		this.nominal = nominal;
+		this.tolerance = tolerance;
+		this.seed = seed;
+	}
+
+	/* Public Methods */
+	public void fill(long first, int count, double[] ohms, int stride){
+		int slots = nominal.length;
+		for(int s = 0; s < slots; s++){
+			double low = nominal[s]*(1-tolerance);
+			double span = 2*nominal[s]*tolerance;
+			long base = seed + s*0xD1B54A32D192ED03L;
+			int row = s*stride;
+			for(int i = 0; i < count; i++){
+				ohms[row+i] = low + span*uniform(base + (first+i)*0x9E3779B97F4A7C15L);
+			}
+		}
+	}
+
+	/* Private Methods */
+	private static double[] copy(CircuitGraph graph){
+		double[] ohms = new double[graph.getResistorCount()];
+		System.arraycopy(graph.getOhmsArray(), 0, ohms, 0, ohms.length);
+		return ohms;
+	}
+
+	/**
+	 * The splitmix64 finalizer, turned into a double in [0, 1).
+	 */
+	private static double uniform(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+}
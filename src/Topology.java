@@ -0,0 +1,48 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Which nodes each resistor and supply of a circuit connects, without the ohms and volts.
+ * Two circuits with equal topologies reduce the same way whatever their values, so a
+ * ReductionPlan compiled for one works for the other.
+ * @author Isaac Assegai
+ *
+ */
+public final class Topology {
+	/* Member Variables */
+	private final int[] shape; //Node count, resistor count, supply count, then each supply's and each resistor's node ids.
+	private final int hash;
+
+	/**
+	 * Constructor - The topology of a circuit as it is now.
+	 */
+	public Topology(Circuit circuit){
+		CircuitGraph graph = circuit.getGraph();
+		ArrayList<PowerSupply>supplies = circuit.getSupplies();
+		int r = graph.getResistorCount();
+		shape = new int[3 + 2*supplies.size() + 2*r];
+		int i = 0;
+		shape[i++] = graph.getNodeCount();
+		shape[i++] = r;
+		shape[i++] = supplies.size();
+		for(int k = 0; k < supplies.size(); k++){
+			PowerSupply supply = supplies.get(k);
+			shape[i++] = supply.getPosNode() == null ? -1 : supply.getPosNode().getId();
+			shape[i++] = supply.getNegNode() == null ? -1 : supply.getNegNode().getId();
+		}
+		for(int s = 0; s < r; s++){
+			shape[i++] = graph.getNodeA(s);
+			shape[i++] = graph.getNodeB(s);
+		}
+		hash = Arrays.hashCode(shape);
+	}
+
+	/* Public Methods */
+	public boolean equals(Object o){
+		return o instanceof Topology && ((Topology)o).hash == hash && Arrays.equals(((Topology)o).shape, shape);
+	}
+
+	public int hashCode(){
+		return hash;
+	}
+}
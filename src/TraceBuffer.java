@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+/**
+ * A tracer that records each combine into primitive arrays: what kind it was,
+ * the ids of the two resistors that went in, the node that was removed (series only),
+ * and the id and ohms of the resistor that came out.
+ * A star-mesh is recorded as one STAR entry for each mesh resistor, with the two star
+ * resistors it came from and the eliminated node. A dropped DANGLING resistor is inputA,
+ * with inputB and result -1. A sub-circuit copy that went in whole is an INSTANCE, with only a result.
+ * Nothing is printed, and apart from the arrays growing nothing is allocated per combine.
+ * @author Isaac Assegai
+ *
+ */
+public class TraceBuffer implements CircuitTracer {
+	public static final int SERIES = 0;
+	public static final int PARALLEL = 1;
+	public static final int STAR = 2;
+	public static final int DANGLING = 3;
+	public static final int INSTANCE = 4;
+	
+	/* Member Variables */
+	private int size; //The number of combines recorded.
+	private int[] kind;
+	private int[] inputA; //Element id of Replacement.a
+	private int[] inputB; //Element id of Replacement.b
+	private int[] node; //Node id of Replacement.node, -1 if there isn't one.
+	private int[] result; //Element id of Replacement.result
+	private double[] ohms; //Ohms of Replacement.result
+	private int steps; //How many stepwise copies we've been told about.
+	
+	/**
+	 * Constructor - An empty buffer.
+	 */
+	public TraceBuffer(){
+		this(64);
+	}
+	
+	public TraceBuffer(int capacity){
+		capacity = Math.max(1, capacity);
+		size = 0;
+		kind = new int[capacity];
+		inputA = new int[capacity];
+		inputB = new int[capacity];
+		node = new int[capacity];
+		result = new int[capacity];
+		ohms = new double[capacity];
+		steps = 0;
+	}
+	
+	/* Public Methods */
+	public void combined(Replacement replacement){
+		if(replacement.kind == Replacement.STAR){
+			int k = 0;
+			for(int i = 0; i < replacement.star.length; i++){
+				for(int j = i+1; j < replacement.star.length; j++){
+					add(STAR, replacement.star[i].getId(), replacement.star[j].getId(), replacement.node, replacement.mesh[k++]);
+				}
+			}
+		}else if(replacement.kind == Replacement.DANGLING){
+			add(DANGLING, replacement.a.getId(), -1, replacement.node, null);
+		}else if(replacement.kind == Replacement.INSTANCE){
+			add(INSTANCE, -1, -1, null, replacement.result);
+		}else{
+			add(replacement.isSeries ? SERIES : PARALLEL, replacement.a.getId(), replacement.b.getId(), replacement.node, replacement.result);
+		}
+	}
+	
+	public void stepped(Circuit circuit){
+		steps++;
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	public int getSteps(){
+		return steps;
+	}
+	
+	public int getKind(int i){
+		return kind[i];
+	}
+	
+	public int getInputA(int i){
+		return inputA[i];
+	}
+	
+	public int getInputB(int i){
+		return inputB[i];
+	}
+	
+	public int getNode(int i){
+		return node[i];
+	}
+	
+	public int getResult(int i){
+		return result[i];
+	}
+	
+	public double getOhms(int i){
+		return ohms[i];
+	}
+	
+	/**
+	 * Forget everything recorded so far.
+	 */
+	public void clear(){
+		size = 0;
+		steps = 0;
+	}
+	
+	/**
+	 * Write the recorded combines out, one per line.
+	 */
+	public void print(){
+		StringBuilder out = new StringBuilder();
+		for(int i = 0; i < size; i++){
+			if(kind[i] == DANGLING){
+				out.append("Dangling: R").append(inputA[i]).append(" at N").append(node[i]).append('\n');
+				continue;
+			}
+			if(kind[i] == INSTANCE){
+				out.append("Instance: -> R").append(result[i]).append(" Ohm: ").append(ohms[i]).append('\n');
+				continue;
+			}
+			out.append(kind[i] == SERIES ? "Series:   " : kind[i] == PARALLEL ? "Parallel: " : "Star:     ");
+			out.append("R").append(inputA[i]).append(" + R").append(inputB[i]);
+			if(node[i] != -1){
+				out.append(" at N").append(node[i]);
+			}
+			out.append(" -> R").append(result[i]).append(" Ohm: ").append(ohms[i]).append('\n');
+		}
+		System.out.print(out);
+	}
+	
+	/* Private Methods */
+	private void add(int k, int a, int b, Node n, Resistor r){
+		if(size == kind.length){
+			grow();
+		}
+		kind[size] = k;
+		inputA[size] = a;
+		inputB[size] = b;
+		node[size] = n == null ? -1 : n.getId();
+		result[size] = r == null ? -1 : r.getId();
+		ohms[size] = r == null ? Double.NaN : r.getGraph().getOhms(r.getIndex());
+		size++;
+	}
+	
+	private void grow(){
+		int capacity = 2*kind.length;
+		kind = Arrays.copyOf(kind, capacity);
+		inputA = Arrays.copyOf(inputA, capacity);
+		inputB = Arrays.copyOf(inputB, capacity);
+		node = Arrays.copyOf(node, capacity);
+		result = Arrays.copyOf(result, capacity);
+		ohms = Arrays.copyOf(ohms, capacity);
+	}
+}
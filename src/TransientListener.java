@@ -0,0 +1,16 @@
+/**
+ * A TransientListener is handed every timestep of a TransientSolver run as soon as it's solved,
+ * so a long run streams its results out instead of keeping them all.
+ * Read what you want from the solver, getTime(), getVoltage() and friends, before returning,
+ * the next step overwrites it. Changing a supply's voltage with setVolts() here is how
+ * a waveform is fed in, it takes effect on the next step.
+ * @author Isaac Assegai
+ *
+ */
+public interface TransientListener {
+	
+	/**
+	 * The solver just finished a timestep.
+	 */
+	public void stepped(TransientSolver solver);
+}
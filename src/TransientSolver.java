@@ -0,0 +1,609 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs a circuit with capacitors and inductors through time, one fixed timestep after another.
+ * At each step every capacitor and inductor is swapped for its companion model, a resistor with a
+ * current source across it that carries its history, and the resulting resistor network is solved
+ * with nodal analysis just like NodalSolver does it.
+ *   capacitor, backward Euler:  i = C/h * (v - v_old)
+ *   capacitor, trapezoidal:     i = 2C/h * (v - v_old) - i_old
+ *   inductor, backward Euler:   i = i_old + h/L * v
+ *   inductor, trapezoidal:      i = i_old + h/2L * (v + v_old)
+ * The companion resistors only depend on the timestep, so the conductance matrix is factored once
+ * and every step is just filling in the current sources and a pair of triangular solves.
+ * Supplies are handled the way NodalSolver does it, with a 1 amp solution per supply and a small
+ * dense system for the supply currents, which is factored once too. Changing the timestep refactors.
+ * Trapezoidal is more accurate but it doesn't know the capacitor currents and inductor voltages
+ * at the start, so its first step is taken as two backward Euler half steps, which need the same matrix.
+ * Each piece of the network that no supply reaches has its first node held at 0 volts.
+ * Steps go to a TransientListener as they're solved, nothing is buffered. When run() finishes the
+ * circuit holds the last step: node voltages, resistor amps, and the volts and amps of every
+ * capacitor, inductor and supply.
+ * @author Isaac Assegai
+ *
+ */
+public class TransientSolver {
+	/* Member Variables */
+	public static final int BACKWARD_EULER = 0;
+	public static final int TRAPEZOIDAL = 1;
+
+	private Circuit circuit;
+	private CircuitGraph graph;
+	private int method; //BACKWARD_EULER or TRAPEZOIDAL.
+	private double timestep; //Seconds per step.
+	private double time; //Seconds since the start, after the last step.
+	private long steps; //Steps taken so far.
+
+	private int[] capA; //Node id at each capacitor's nodeA.
+	private int[] capB;
+	private double[] farads;
+	private double[] capVolts; //voltage(nodeA) - voltage(nodeB) after the last step.
+	private double[] capAmps; //From nodeA to nodeB through the capacitor, after the last step.
+	private int[] indA;
+	private int[] indB;
+	private double[] henries;
+	private double[] indVolts;
+	private double[] indAmps;
+	private int[] supPos; //Node id of each supply's +node.
+	private int[] supNeg;
+	private double[] supVolts;
+	private double[] supAmps; //The current each supply pushes out of its +node, after the last step.
+
+	private int[] row; //The matrix row of each node, -1 for the grounded node of each piece.
+	private int[] piece; //Which connected piece of the network each node is in.
+	private int[] offset; //Each piece's column in the dense system, -1 if it sits at 0.
+	private int size; //Rows in the conductance matrix.
+	private double[] capG; //The companion conductance of each capacitor, for this timestep.
+	private double[] indG;
+	private SparseCholesky factor; //null until the first step, or after the timestep changed.
+	private double[][] unit; //The row voltages with 1 amp through each supply.
+	private double[][] lu; //The dense supply system, factored in place.
+	private int[] pivot; //Row swaps of the dense factorization.
+	private double[] rhs; //Scratch, the history currents into each row, then the row voltages.
+	private double[] dense; //Scratch, the dense system's right hand side and solution.
+	private double[] voltage; //Node voltages after the last step.
+
+	/**
+	 * Constructor - Get ready to run a circuit with the trapezoidal rule.
+	 * @param timestep Seconds per step.
+	 */
+	public TransientSolver(Circuit circuit, double timestep){
+		this(circuit, timestep, TRAPEZOIDAL);
+	}
+
+	/**
+	 * Constructor - Get ready to run a circuit.
+	 * The capacitors start at their getVolts() and the inductors at their getAmps().
+	 * @param timestep Seconds per step.
+	 * @param method BACKWARD_EULER or TRAPEZOIDAL.
+	 */
+	public TransientSolver(Circuit circuit, double timestep, int method){
+		if(method != BACKWARD_EULER && method != TRAPEZOIDAL){
+			throw new IllegalArgumentException("unknown integration method " + method);
+		}
+		this.circuit = circuit;
+		this.method = method;
+		setTimestep(timestep);
+		graph = circuit.getGraph();
+		int n = graph.getNodeCount();
+		double[] ohms = graph.getOhmsArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		for(int i = 0; i < graph.getResistorCount(); i++){
+			if(nodeA[i] == -1 || nodeB[i] == -1){
+				throw new IllegalStateException("resistor R" + i + " is not connected at both ends");
+			}
+			if(!(ohms[i] > 0)){
+				throw new IllegalArgumentException("resistor R" + i + " has " + ohms[i] + " ohms");
+			}
+		}
+
+		ArrayList<Capacitor> capacitors = circuit.getCapacitors();
+		int c = capacitors.size();
+		capA = new int[c];
+		capB = new int[c];
+		farads = new double[c];
+		capVolts = new double[c];
+		capAmps = new double[c];
+		for(int i = 0; i < c; i++){
+			Capacitor cap = capacitors.get(i);
+			if(cap.getNodeA() == null || cap.getNodeB() == null){
+				throw new IllegalStateException("capacitor " + cap.getName() + " is not connected at both ends");
+			}
+			if(!(cap.getFarads() > 0)){
+				throw new IllegalArgumentException("capacitor " + cap.getName() + " has " + cap.getFarads() + " farads");
+			}
+			capA[i] = cap.getNodeA().getId();
+			capB[i] = cap.getNodeB().getId();
+			farads[i] = cap.getFarads();
+			capVolts[i] = cap.getVolts() == null ? 0 : cap.getVolts();
+		}
+		ArrayList<Inductor> inductors = circuit.getInductors();
+		int l = inductors.size();
+		indA = new int[l];
+		indB = new int[l];
+		henries = new double[l];
+		indVolts = new double[l];
+		indAmps = new double[l];
+		for(int i = 0; i < l; i++){
+			Inductor ind = inductors.get(i);
+			if(ind.getNodeA() == null || ind.getNodeB() == null){
+				throw new IllegalStateException("inductor " + ind.getName() + " is not connected at both ends");
+			}
+			if(!(ind.getHenries() > 0)){
+				throw new IllegalArgumentException("inductor " + ind.getName() + " has " + ind.getHenries() + " henries");
+			}
+			indA[i] = ind.getNodeA().getId();
+			indB[i] = ind.getNodeB().getId();
+			henries[i] = ind.getHenries();
+			indAmps[i] = ind.getAmps() == null ? 0 : ind.getAmps();
+		}
+		ArrayList<PowerSupply> supplies = circuit.getSupplies();
+		int m = supplies.size();
+		supPos = new int[m];
+		supNeg = new int[m];
+		supVolts = new double[m];
+		supAmps = new double[m];
+		for(int k = 0; k < m; k++){
+			PowerSupply supply = supplies.get(k);
+			if(supply.getPosNode() == null || supply.getNegNode() == null){
+				throw new IllegalStateException("power supply " + supply.getName() + " in circuit " + circuit.getName() + " is not connected");
+			}
+			supPos[k] = supply.getPosNode().getId();
+			supNeg[k] = supply.getNegNode().getId();
+			supVolts[k] = supply.getVoltage();
+		}
+
+		numberRows();
+		capG = new double[c];
+		indG = new double[l];
+		rhs = new double[size];
+		voltage = new double[n];
+		Arrays.fill(voltage, Double.NaN);
+		time = 0;
+		steps = 0;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Change the timestep, the next step refactors the matrix.
+	 */
+	public void setTimestep(double h){
+		if(!(h > 0)){
+			throw new IllegalArgumentException("the timestep has to be more than 0 seconds, not " + h);
+		}
+		if(h != timestep){
+			timestep = h;
+			factor = null;
+		}
+	}
+
+	public double getTimestep(){
+		return timestep;
+	}
+
+	/**
+	 * Change supply k's voltage, it takes effect on the next step and costs nothing extra.
+	 */
+	public void setVolts(int k, double v){
+		supVolts[k] = v;
+	}
+
+	/**
+	 * Take steps, handing each one to the listener, then write the last one back into the circuit.
+	 * @param listener Told about every step, or null.
+	 */
+	public void run(long count, TransientListener listener){
+		for(long i = 0; i < count; i++){
+			step();
+			if(listener != null){
+				listener.stepped(this);
+			}
+		}
+		writeBack();
+	}
+
+	/**
+	 * Take one timestep.
+	 */
+	public void step(){
+		if(factor == null){
+			factorize();
+		}
+		if(method == TRAPEZOIDAL && steps == 0){
+			solveStep(true);
+			solveStep(true);
+		}else{
+			solveStep(method == BACKWARD_EULER);
+		}
+		steps++;
+		time += timestep;
+	}
+
+	/**
+	 * Copy the last step into the circuit: node voltages, resistor amps, voltage drops and watts,
+	 * and the volts and amps of every capacitor, inductor and supply.
+	 */
+	public void writeBack(){
+		int n = graph.getNodeCount();
+		System.arraycopy(voltage, 0, graph.getVoltageArray(), 0, n);
+		for(int i = 0; i < graph.getResistorCount(); i++){
+			graph.applyOhmsLaw(i);
+		}
+		ArrayList<Capacitor> capacitors = circuit.getCapacitors();
+		for(int i = 0; i < capA.length; i++){
+			capacitors.get(i).setVolts(capVolts[i]);
+			capacitors.get(i).setAmps(capAmps[i]);
+		}
+		ArrayList<Inductor> inductors = circuit.getInductors();
+		for(int i = 0; i < indA.length; i++){
+			inductors.get(i).setVolts(indVolts[i]);
+			inductors.get(i).setAmps(indAmps[i]);
+		}
+		ArrayList<PowerSupply> supplies = circuit.getSupplies();
+		for(int k = 0; k < supPos.length; k++){
+			supplies.get(k).setAmps(supAmps[k]);
+		}
+	}
+
+	/**
+	 * Seconds since the start.
+	 */
+	public double getTime(){
+		return time;
+	}
+
+	public long getSteps(){
+		return steps;
+	}
+
+	/**
+	 * A node's voltage after the last step, NaN before the first.
+	 */
+	public double getVoltage(int node){
+		return voltage[node];
+	}
+
+	/**
+	 * Every node's voltage after the last step, indexed by node id. Don't change it,
+	 * and copy what you need to keep, the next step overwrites it.
+	 */
+	public double[] getVoltageArray(){
+		return voltage;
+	}
+
+	public double getSupplyAmps(int k){
+		return supAmps[k];
+	}
+
+	public double getCapacitorVolts(int i){
+		return capVolts[i];
+	}
+
+	public double getCapacitorAmps(int i){
+		return capAmps[i];
+	}
+
+	public double getInductorVolts(int i){
+		return indVolts[i];
+	}
+
+	public double getInductorAmps(int i){
+		return indAmps[i];
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Split the network into pieces joined by resistors, capacitors and inductors. A piece's
+	 * ground is the first supply terminal found in it, -nodes before +nodes, or its lowest node.
+	 * Pieces that are only joined by supplies float at an offset the dense system solves for.
+	 */
+	private void numberRows(){
+		int n = graph.getNodeCount();
+		int r = graph.getResistorCount();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		int branches = r + capA.length + indA.length;
+		int[] ends = new int[2*branches];
+		for(int i = 0; i < r; i++){
+			ends[2*i] = nodeA[i];
+			ends[2*i+1] = nodeB[i];
+		}
+		for(int i = 0; i < capA.length; i++){
+			ends[2*(r+i)] = capA[i];
+			ends[2*(r+i)+1] = capB[i];
+		}
+		for(int i = 0; i < indA.length; i++){
+			ends[2*(r+capA.length+i)] = indA[i];
+			ends[2*(r+capA.length+i)+1] = indB[i];
+		}
+		int[] start = new int[n+1];
+		for(int e = 0; e < ends.length; e++){
+			start[ends[e]+1]++;
+		}
+		for(int i = 0; i < n; i++){
+			start[i+1] += start[i];
+		}
+		int[] next = Arrays.copyOf(start, n);
+		int[] incident = new int[ends.length];
+		for(int e = 0; e < ends.length; e++){
+			incident[next[ends[e]]++] = e;
+		}
+
+		//breadth first search out from each ground
+		int m = supPos.length;
+		piece = new int[n];
+		Arrays.fill(piece, -1);
+		boolean[] ground = new boolean[n];
+		int[] queue = new int[n];
+		int pieces = 0;
+		for(int s = 0; s < 2*m+n; s++){
+			int g = s < 2*m ? ((s & 1) == 0 ? supNeg[s/2] : supPos[s/2]) : s-2*m;
+			if(piece[g] != -1){
+				continue;
+			}
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = g;
+			piece[g] = pieces;
+			ground[g] = true;
+			while(head < tail){
+				int u = queue[head++];
+				for(int p = start[u]; p < start[u+1]; p++){
+					int w = ends[incident[p] ^ 1];
+					if(piece[w] == -1){
+						piece[w] = pieces;
+						queue[tail++] = w;
+					}
+				}
+			}
+			pieces++;
+		}
+		row = new int[n];
+		size = 0;
+		for(int i = 0; i < n; i++){
+			row[i] = ground[i] ? -1 : size++;
+		}
+
+		//the first piece in each group joined up by supplies sits at 0, the others get an offset
+		int[] group = new int[pieces];
+		for(int c = 0; c < pieces; c++){
+			group[c] = c;
+		}
+		for(int k = 0; k < m; k++){
+			int a = find(group, piece[supPos[k]]);
+			int b = find(group, piece[supNeg[k]]);
+			if(a < b){
+				group[b] = a;
+			}else if(b < a){
+				group[a] = b;
+			}
+		}
+		offset = new int[pieces];
+		int columns = m;
+		for(int c = 0; c < pieces; c++){
+			offset[c] = find(group, c) == c ? -1 : columns++;
+		}
+		dense = new double[columns];
+		pivot = new int[columns];
+	}
+
+	private int find(int[] group, int c){
+		while(group[c] != c){
+			group[c] = group[group[c]];
+			c = group[c];
+		}
+		return c;
+	}
+
+	/**
+	 * Stamp the resistors and companion resistors for this timestep and factor, then work out
+	 * the 1 amp solution of each supply and factor the dense supply system.
+	 */
+	private void factorize(){
+		int r = graph.getResistorCount();
+		double[] ohms = graph.getOhmsArray();
+		int[] nodeA = graph.getNodeAArray();
+		int[] nodeB = graph.getNodeBArray();
+		double scale = method == TRAPEZOIDAL ? 2 : 1;
+		for(int i = 0; i < capA.length; i++){
+			capG[i] = scale*farads[i]/timestep;
+		}
+		for(int i = 0; i < indA.length; i++){
+			indG[i] = timestep/(scale*henries[i]);
+		}
+		int branches = r + capA.length + indA.length;
+		int[] rows = new int[4*branches];
+		int[] cols = new int[4*branches];
+		double[] vals = new double[4*branches];
+		int count = 0;
+		for(int i = 0; i < branches; i++){
+			int a;
+			int b;
+			double g;
+			if(i < r){
+				a = nodeA[i];
+				b = nodeB[i];
+				g = 1.0/ohms[i];
+			}else if(i < r + capA.length){
+				a = capA[i-r];
+				b = capB[i-r];
+				g = capG[i-r];
+			}else{
+				a = indA[i-r-capA.length];
+				b = indB[i-r-capA.length];
+				g = indG[i-r-capA.length];
+			}
+			a = row[a];
+			b = row[b];
+			if(a == b){
+				continue; //both ends on the same node
+			}
+			if(a != -1){
+				rows[count] = a; cols[count] = a; vals[count++] = g;
+			}
+			if(b != -1){
+				rows[count] = b; cols[count] = b; vals[count++] = g;
+			}
+			if(a != -1 && b != -1){
+				rows[count] = a; cols[count] = b; vals[count++] = -g;
+				rows[count] = b; cols[count] = a; vals[count++] = -g;
+			}
+		}
+		SparseMatrix matrix = SparseMatrix.fromTriplets(size, rows, cols, vals, count);
+		factor = new SparseCholesky(matrix, MinimumDegree.order(matrix));
+
+		int m = supPos.length;
+		unit = new double[m][];
+		for(int k = 0; k < m; k++){
+			double[] w = new double[size];
+			if(row[supPos[k]] != -1){
+				w[row[supPos[k]]] += 1;
+			}
+			if(row[supNeg[k]] != -1){
+				w[row[supNeg[k]]] -= 1;
+			}
+			factor.solve(w);
+			unit[k] = w;
+		}
+		int columns = dense.length;
+		lu = new double[columns][columns];
+		for(int k = 0; k < m; k++){
+			int p = supPos[k];
+			int n = supNeg[k];
+			for(int j = 0; j < m; j++){
+				lu[k][j] = rowVolts(unit[j], p) - rowVolts(unit[j], n);
+			}
+			int op = offset[piece[p]];
+			int on = offset[piece[n]];
+			if(op != -1){
+				lu[k][op] += 1;
+				lu[op][k] += 1;
+			}
+			if(on != -1){
+				lu[k][on] -= 1;
+				lu[on][k] -= 1;
+			}
+		}
+		factorDense();
+	}
+
+	private double rowVolts(double[] v, int node){
+		return row[node] == -1 ? 0 : v[row[node]];
+	}
+
+	/**
+	 * One step with the companion models, backward Euler or trapezoidal, then update the history.
+	 */
+	private void solveStep(boolean euler){
+		Arrays.fill(rhs, 0);
+		for(int i = 0; i < capA.length; i++){
+			double j = capG[i]*capVolts[i] + (euler ? 0 : capAmps[i]); //flows into nodeA
+			inject(capA[i], j);
+			inject(capB[i], -j);
+		}
+		for(int i = 0; i < indA.length; i++){
+			double j = indAmps[i] + (euler ? 0 : indG[i]*indVolts[i]); //flows out of nodeA
+			inject(indA[i], -j);
+			inject(indB[i], j);
+		}
+		factor.solve(rhs);
+
+		int m = supPos.length;
+		Arrays.fill(dense, 0);
+		for(int k = 0; k < m; k++){
+			dense[k] = supVolts[k] - (rowVolts(rhs, supPos[k]) - rowVolts(rhs, supNeg[k]));
+		}
+		solveDense(dense);
+		for(int k = 0; k < m; k++){
+			double a = dense[k];
+			supAmps[k] = a;
+			double[] w = unit[k];
+			for(int i = 0; i < size; i++){
+				rhs[i] += a*w[i];
+			}
+		}
+		for(int i = 0; i < voltage.length; i++){
+			double v = row[i] == -1 ? 0 : rhs[row[i]];
+			int o = offset[piece[i]];
+			voltage[i] = o == -1 ? v : v + dense[o];
+		}
+
+		for(int i = 0; i < capA.length; i++){
+			double v = voltage[capA[i]] - voltage[capB[i]];
+			capAmps[i] = capG[i]*(v - capVolts[i]) - (euler ? 0 : capAmps[i]);
+			capVolts[i] = v;
+		}
+		for(int i = 0; i < indA.length; i++){
+			double v = voltage[indA[i]] - voltage[indB[i]];
+			indAmps[i] += indG[i]*(euler ? v : v + indVolts[i]);
+			indVolts[i] = v;
+		}
+	}
+
+	private void inject(int node, double amps){
+		int r = row[node];
+		if(r != -1){
+			rhs[r] += amps;
+		}
+	}
+
+	/**
+	 * LU with partial pivoting of the dense supply system, it's only a row per supply.
+	 * A pivot that vanishes next to its column means the supplies fight each other in a loop.
+	 */
+	private void factorDense(){
+		int columns = dense.length;
+		double[] scale = new double[columns];
+		for(int i = 0; i < columns; i++){
+			for(int j = 0; j < columns; j++){
+				scale[j] = Math.max(scale[j], Math.abs(lu[i][j]));
+			}
+		}
+		for(int c = 0; c < columns; c++){
+			int best = c;
+			for(int i = c+1; i < columns; i++){
+				if(Math.abs(lu[i][c]) > Math.abs(lu[best][c])){
+					best = i;
+				}
+			}
+			if(!(Math.abs(lu[best][c]) > 1e-12*scale[c])){
+				throw new IllegalStateException("the power supplies form a loop with no resistance in it, or one is shorted");
+			}
+			pivot[c] = best;
+			double[] swap = lu[c]; lu[c] = lu[best]; lu[best] = swap;
+			for(int i = c+1; i < columns; i++){
+				double f = lu[i][c] /= lu[c][c];
+				if(f == 0){
+					continue;
+				}
+				for(int j = c+1; j < columns; j++){
+					lu[i][j] -= f*lu[c][j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve the factored dense system in place.
+	 */
+	private void solveDense(double[] b){
+		int columns = b.length;
+		for(int c = 0; c < columns; c++){
+			double t = b[c]; b[c] = b[pivot[c]]; b[pivot[c]] = t;
+			for(int i = c+1; i < columns; i++){
+				b[i] -= lu[i][c]*b[c];
+			}
+		}
+		for(int i = columns-1; i >= 0; i--){
+			double sum = b[i];
+			for(int j = i+1; j < columns; j++){
+				sum -= lu[i][j]*b[j];
+			}
+			b[i] = sum/lu[i][i];
+		}
+	}
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Saving circuits as snapshots and reading them back, and turning away snapshots that are cut short or corrupt.
+ * @author Isaac Assegai
+ *
+ */
+public class CircuitSnapshotTest {
+	/* Member Variables */
+	@TempDir
+	Path dir;
+
+	/* Public Methods */
+
+	@Test
+	public void roundTripsAGeneratedCircuit() throws IOException {
+		Circuit circuit = CircuitGenerator.ladder(9, 7);
+		double amps = circuit.solveNodal();
+		Path file = dir.resolve("ladder.snap");
+		CircuitSnapshot.write(circuit, file, true);
+		CircuitSnapshot snapshot = CircuitSnapshot.open(file);
+		assertEquals(9, snapshot.getResistorCount());
+		assertEquals(amps, snapshot.toCircuit().solveNodal(), 1e-12);
+	}
+
+	@Test
+	public void roundTripsMoreThanOneSupply() throws IOException {
+		Circuit circuit = new NetlistLoader().load(Channels.newChannel(new ByteArrayInputStream((
+				"two supplies\n"
+				+ "V1 a 0 10\n"
+				+ "V2 c 0 5\n"
+				+ "R1 a b 100\n"
+				+ "R2 b c 220\n"
+				+ "R3 b 0 330\n"
+				+ ".end\n").getBytes(StandardCharsets.UTF_8))));
+		double amps = circuit.solveNodal();
+		Path file = dir.resolve("two.snap");
+		CircuitSnapshot.write(circuit, file, true);
+		CircuitSnapshot snapshot = CircuitSnapshot.open(file);
+		assertEquals(2, snapshot.getSupplyCount());
+		assertEquals(5, snapshot.getVolts(1), 0);
+		Circuit back = snapshot.toCircuit();
+		assertEquals(2, back.getSupplies().size());
+		assertEquals(amps, back.solveNodal(), 1e-12);
+		assertEquals(circuit.getSupplies().get(1).getAmps(), back.getSupplies().get(1).getAmps(), 1e-12);
+	}
+
+	@Test
+	public void readsVersionOne(){
+		//R0 between nodes 0 and 1, 10 volts across them, as a version 1 snapshot wrote it
+		ByteBuffer bytes = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.putInt(CircuitSnapshot.MAGIC).putInt(1).putInt(0).putInt(2).putInt(1);
+		bytes.putInt(0).putInt(1).putInt(0).putDouble(10);
+		bytes.putInt(0).putInt(1).putDouble(50);
+		bytes.flip();
+		CircuitSnapshot snapshot = new CircuitSnapshot(bytes);
+		assertEquals(1, snapshot.getSupplyCount());
+		assertEquals(1, snapshot.getNegNode());
+		assertEquals(50, snapshot.getOhms(0), 0);
+		assertEquals(0.2, snapshot.toCircuit().solveNodal(), 1e-12);
+	}
+
+	@Test
+	public void onlyReadsUpToTheLimit() throws IOException {
+		ByteBuffer bytes = snapshot(CircuitGenerator.chain(4, 1));
+		bytes.limit(bytes.limit() - 8); //the rest of the buffer is still there, but it isn't valid
+		rejects(bytes);
+	}
+
+	@Test
+	public void rejectsASupplyOnAMissingNode() throws IOException {
+		ByteBuffer bytes = snapshot(CircuitGenerator.chain(4, 1));
+		bytes.order(ByteOrder.LITTLE_ENDIAN).putInt(24, 1000); //the first supply's +node
+		rejects(bytes);
+	}
+
+	/* Private Methods */
+
+	private static void rejects(ByteBuffer bytes){
+		try{
+			new CircuitSnapshot(bytes);
+			fail("a bad snapshot was read");
+		}catch(IllegalArgumentException e){
+			//what the loader says about any bad file
+		}
+	}
+
+	private ByteBuffer snapshot(Circuit circuit) throws IOException {
+		Path file = dir.resolve("circuit.snap");
+		CircuitSnapshot.write(circuit, file, false);
+		return ByteBuffer.wrap(Files.readAllBytes(file));
+	}
+}
@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Solving again with a NodalSolver that's already factored, when nothing or only the supplies changed.
+ * @author Isaac Assegai
+ *
+ */
+public class NodalSolverTest {
+	/* Member Variables */
+	private static final String BRIDGE = "bridge\n"
+			+ "V1 top 0 10\n"
+			+ "R1 top a 100\n"
+			+ "R2 top b 220\n"
+			+ "R3 a b 330\n"
+			+ "R4 a 0 470\n"
+			+ "R5 b 0 560\n"
+			+ ".end\n";
+
+	/* Public Methods */
+
+	@Test
+	public void solvesTwiceWithNothingChanged(){
+		Circuit circuit = load(BRIDGE);
+		NodalSolver solver = new NodalSolver(circuit);
+		solver.solve();
+		double amps = solver.getSupplyAmps();
+		double[] volts = circuit.getGraph().getVoltageArray().clone();
+		solver.solve();
+		assertEquals(amps, solver.getSupplyAmps(), 1e-12);
+		assertArrayEquals(volts, circuit.getGraph().getVoltageArray(), 1e-12);
+		assertEquals(0, solver.getUpdateRank());
+		assertEquals(1, solver.getFactorizations());
+	}
+
+	@Test
+	public void solvesAgainAfterSetVolts(){
+		Circuit circuit = load(BRIDGE);
+		NodalSolver solver = new NodalSolver(circuit);
+		solver.solve();
+		double amps = solver.getSupplyAmps();
+		double[] volts = circuit.getGraph().getVoltageArray().clone();
+		solver.setVolts(0, 20);
+		solver.solve();
+		//it's linear, twice the volts is twice everything
+		assertEquals(2*amps, solver.getSupplyAmps(), 1e-12);
+		double[] doubled = circuit.getGraph().getVoltageArray();
+		for(int i = 0; i < volts.length; i++){
+			assertEquals(2*volts[i], doubled[i], 1e-9);
+		}
+		assertEquals(1, solver.getFactorizations());
+	}
+
+	@Test
+	public void solvesAgainAfterAddSupply(){
+		Circuit circuit = load(BRIDGE);
+		NodalSolver solver = new NodalSolver(circuit);
+		solver.solve();
+		int top = node(circuit, "top");
+		int b = node(circuit, "b");
+		solver.addSupply(b, top, 0); //no volts across b and top, it only ties them together
+		solver.solve();
+
+		Circuit tied = load(BRIDGE.replace("R2 top b 220\n", "R2 top b 220\nV2 b top 0\n"));
+		assertEquals(tied.solveNodal(), solver.getSupplyAmps(), 1e-9);
+	}
+
+	/* Private Methods */
+
+	private static Circuit load(String netlist){
+		try{
+			return new NetlistLoader().load(Channels.newChannel(new ByteArrayInputStream(netlist.getBytes(StandardCharsets.UTF_8))));
+		}catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static int node(Circuit circuit, String name){
+		for(Node node : circuit.getNodes()){
+			if(node.getName().equals(name)){
+				return node.getId();
+			}
+		}
+		throw new IllegalArgumentException("no node called " + name);
+	}
+}
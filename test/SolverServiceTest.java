@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The service answering the same bridge twice in one batch, the second time from the kept NodalSolver.
+ * @author Isaac Assegai
+ *
+ */
+public class SolverServiceTest {
+	/* Member Variables */
+	private static final String BRIDGE = "bridge\n"
+			+ "V1 top 0 10\n"
+			+ "R1 top a 100\n"
+			+ "R2 top b 220\n"
+			+ "R3 a b 330\n"
+			+ "R4 a 0 470\n"
+			+ "R5 b 0 560\n"
+			+ ".end\n";
+
+	/* Public Methods */
+
+	@Test
+	public void answersTheSameBridgeTwice() throws Exception {
+		//a long window, so both requests land in one batch and share a solver
+		SolverService service = new SolverService(0, 16, 16, 500000);
+		service.start();
+		try{
+			HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + service.getPort() + "/solve"))
+					.POST(HttpRequest.BodyPublishers.ofString(BRIDGE)).build();
+			CompletableFuture<HttpResponse<String>> first = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+			CompletableFuture<HttpResponse<String>> second = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+			HttpResponse<String> a = first.get();
+			HttpResponse<String> b = second.get();
+			assertEquals(200, a.statusCode(), a.body());
+			assertEquals(200, b.statusCode(), b.body());
+			assertEquals(a.body(), b.body());
+			assertEquals(1, service.getBatches());
+			assertEquals(0, service.getFailed());
+
+			Circuit circuit = new NetlistLoader().load(Channels.newChannel(new ByteArrayInputStream(BRIDGE.getBytes(StandardCharsets.UTF_8))));
+			assertEquals(circuit.solveNodal(), supplyAmps(b.body()), 1e-9);
+		}finally{
+			service.stop();
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * The first supply's amps out of an answer.
+	 */
+	private static double supplyAmps(String json) throws IOException {
+		int start = json.indexOf("\"supplyAmps\":[");
+		if(start == -1){
+			throw new IOException("no supplyAmps in " + json);
+		}
+		start += "\"supplyAmps\":[".length();
+		int end = start;
+		while(",]".indexOf(json.charAt(end)) == -1){
+			end++;
+		}
+		return Double.parseDouble(json.substring(start, end));
+	}
+}
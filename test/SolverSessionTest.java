@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A session solving a run of bridges, where some steps change a resistor and some change nothing.
+ * @author Isaac Assegai
+ *
+ */
+public class SolverSessionTest {
+	/* Member Variables */
+	private static final String BRIDGE = "bridge\n"
+			+ "V1 top 0 10\n"
+			+ "R1 top a 100\n"
+			+ "R2 top b 220\n"
+			+ "R3 a b %s\n"
+			+ "R4 a 0 470\n"
+			+ "R5 b 0 560\n"
+			+ ".end\n";
+
+	/* Public Methods */
+
+	@Test
+	public void reusesTheFactorizationWhenNothingChanged(){
+		SolverSession session = new SolverSession();
+		//the first is the base, a step back to its ohms reuses the factorization as it is
+		String[] middle = {"330", "330", "390", "330", "330"};
+		long reused = 0;
+		for(int i = 0; i < middle.length; i++){
+			Circuit circuit = load(String.format(BRIDGE, middle[i]));
+			double amps = circuit.solveNodal(session);
+			if(i > 0 && middle[i].equals(middle[0])){
+				reused++;
+			}
+			assertEquals(reused, session.getReused());
+
+			Circuit fresh = load(String.format(BRIDGE, middle[i]));
+			assertEquals(fresh.solveNodal(), amps, 1e-12);
+			double[] expected = fresh.getGraph().getVoltageArray();
+			double[] actual = circuit.getGraph().getVoltageArray();
+			for(int n = 0; n < expected.length; n++){
+				assertEquals(expected[n], actual[n], 1e-9);
+			}
+		}
+		assertEquals(3, session.getReused());
+		assertEquals(1, session.getUpdated());
+	}
+
+	/* Private Methods */
+
+	private static Circuit load(String netlist){
+		try{
+			return new NetlistLoader().load(Channels.newChannel(new ByteArrayInputStream(netlist.getBytes(StandardCharsets.UTF_8))));
+		}catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+}